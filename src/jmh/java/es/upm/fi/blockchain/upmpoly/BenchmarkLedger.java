@@ -0,0 +1,132 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.InMemoryChaincodeStub;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.hyperledger.fabric.contract.Context;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * World state shared by the benchmarks, populated with the configured number of assets.
+ *
+ * Half of the assets are players and half are faculties; every other faculty is
+ * owned by a player. The values are encoded in the format configured with
+ * UPMPOLY_STATE_FORMAT, as the contract writes them, and the player indexes are
+ * built by a MigrateLedger transaction. On top of that the ledger
+ * holds the fixtures of the benchmarked moves:
+ *
+ * <ul>
+ * <li>{@link #RICH} and {@link #OWNER}, players with plenty of credit, and
+ * {@link #OWNED}, a faculty owned by {@link #OWNER};</li>
+ * <li>{@link #BROKE}, a player without credit owning {@link #BROKE_FACULTIES}
+ * faculties, who is liquidated when visiting {@link #OWNED};</li>
+ * <li>{@link #FREE}, a faculty without owner.</li>
+ * </ul>
+ *
+ * Every benchmark runs a transaction on its own {@link InMemoryChaincodeStub},
+ * whose writes are never committed, so all invocations start from the same state.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkLedger {
+
+    public static final String RICH = "rich";
+
+    public static final String OWNER = "owner";
+
+    public static final String BROKE = "broke";
+
+    public static final String OWNED = "owned";
+
+    public static final String FREE = "free";
+
+    public static final int BROKE_FACULTIES = 3;
+
+    private static final int CREDIT = 1000000000;
+
+    private static final int SALE_PRICE = 1000;
+
+    private static final int RENTAL_FEE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int assets;
+
+    private final UpmPoly contract = new UpmPoly();
+
+    private WorldState state;
+
+    @Setup(Level.Trial)
+    public final void populate() {
+        state = new WorldState(false);
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "setup", "setup", Collections.<String>emptyList());
+        AssetCodec codec = AssetCodec.fromEnvironment();
+
+        int players = assets / 2;
+        for (int i = 0; i < players; i++) {
+            putPlayer(stub, codec, new Player("player" + i, "Player " + i, CREDIT, false));
+        }
+        for (int i = 0; i < assets - players; i++) {
+            String owner = i % 2 == 0 ? "player" + (i % players) : null;
+            putFaculty(stub, codec, new Faculty("faculty" + i, "Faculty " + i, SALE_PRICE, RENTAL_FEE, owner));
+        }
+
+        putPlayer(stub, codec, new Player(RICH, "Rich", CREDIT, false));
+        putPlayer(stub, codec, new Player(OWNER, "Owner", CREDIT, false));
+        putPlayer(stub, codec, new Player(BROKE, "Broke", 0, false));
+        putFaculty(stub, codec, new Faculty(OWNED, "Owned", SALE_PRICE, RENTAL_FEE, OWNER));
+        putFaculty(stub, codec, new Faculty(FREE, "Free", SALE_PRICE, RENTAL_FEE, null));
+        for (int i = 0; i < BROKE_FACULTIES; i++) {
+            putFaculty(stub, codec, new Faculty(BROKE + i, "Broke " + i, SALE_PRICE, RENTAL_FEE, BROKE));
+        }
+
+        // let the contract build its indexes over the players written above
+        try (BlockSimulator simulator = new BlockSimulator(contract, state, 1)) {
+            simulator.submit(Collections.singletonList(new Proposal("MigrateLedger")));
+        }
+    }
+
+    public final UpmPoly getContract() {
+        return contract;
+    }
+
+    /**
+     * @param function the name of the transaction function
+     * @param args the arguments of the transaction function
+     * @return the context of a new transaction on the ledger, started
+     */
+    public final Context transaction(final String function, final String... args) {
+        Context ctx = contract.createContext(new InMemoryChaincodeStub(state, function, function, Arrays.asList(args)));
+        contract.beforeTransaction(ctx);
+        return ctx;
+    }
+
+    /**
+     * @param ctx the context of the transaction
+     * @param result the result of the transaction function
+     * @return the result of the transaction function
+     */
+    public final Object complete(final Context ctx, final Object result) {
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+
+    private void putPlayer(final InMemoryChaincodeStub stub, final AssetCodec codec, final Player player) {
+        state.put(LedgerKeys.player(stub, UpmPolyContext.DEFAULT_GAME, player.getPlayerID()), codec.encodePlayer(player));
+    }
+
+    private void putFaculty(final InMemoryChaincodeStub stub, final AssetCodec codec, final Faculty faculty) {
+        Faculty entry = new Faculty(faculty.getFacultyID(), faculty.getName(), faculty.getSalePrice(), faculty.getRentalFee(), null);
+        state.put(LedgerKeys.catalog(stub, UpmPolyContext.DEFAULT_GAME, faculty.getFacultyID()), codec.encodeFaculty(entry));
+        state.put(LedgerKeys.faculty(stub, UpmPolyContext.DEFAULT_GAME, faculty.getFacultyID()), codec.encodeOwnership(faculty.getOwner()));
+        if (faculty.getOwner() != null) {
+            state.put(LedgerKeys.ownedFaculty(stub, UpmPolyContext.DEFAULT_GAME, faculty.getOwner(), faculty.getFacultyID()), new byte[] {0x00});
+        }
+    }
+}
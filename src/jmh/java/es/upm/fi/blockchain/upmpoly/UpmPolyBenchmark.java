@@ -0,0 +1,87 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.contract.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every transaction of the contract, run as the peer runs them:
+ * on a new context, between beforeTransaction and afterTransaction.
+ *
+ * Run with the gc profiler, as configured in build.gradle, to get the
+ * allocation rate of every transaction next to its throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpmPolyBenchmark {
+
+    @Benchmark
+    public final Object createPlayer(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("Player", "new", "New", "1000");
+        return ledger.complete(ctx, ledger.getContract().Player(ctx, "new", "New", 1000));
+    }
+
+    @Benchmark
+    public final Object createFaculty(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("Faculty", "new", "New", "1000", "100");
+        return ledger.complete(ctx, ledger.getContract().Faculty(ctx, "new", "New", 1000, 100));
+    }
+
+    @Benchmark
+    public final Object readPlayer(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("ReadPlayer", BenchmarkLedger.RICH);
+        return ledger.complete(ctx, ledger.getContract().ReadPlayer(ctx, BenchmarkLedger.RICH));
+    }
+
+    @Benchmark
+    public final Object buyFaculty(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("buyFaculty", BenchmarkLedger.RICH, BenchmarkLedger.FREE);
+        return ledger.complete(ctx, ledger.getContract().buyFaculty(ctx, BenchmarkLedger.RICH, BenchmarkLedger.FREE));
+    }
+
+    @Benchmark
+    public final Object payRental(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("payRental", BenchmarkLedger.OWNED, BenchmarkLedger.RICH);
+        return ledger.complete(ctx, ledger.getContract().payRental(ctx, BenchmarkLedger.OWNED, BenchmarkLedger.RICH));
+    }
+
+    @Benchmark
+    public final Object payRentalBankruptcy(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("payRental", BenchmarkLedger.OWNED, BenchmarkLedger.BROKE);
+        return ledger.complete(ctx, ledger.getContract().payRental(ctx, BenchmarkLedger.OWNED, BenchmarkLedger.BROKE));
+    }
+
+    @Benchmark
+    public final Object tradeFaculty(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("tradeFaculty", BenchmarkLedger.OWNED, BenchmarkLedger.RICH, "500");
+        return ledger.complete(ctx, ledger.getContract().tradeFaculty(ctx, BenchmarkLedger.OWNED, BenchmarkLedger.RICH, 500));
+    }
+
+    @Benchmark
+    public final Object getPlayers(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("getPlayers");
+        return ledger.complete(ctx, ledger.getContract().getPlayers(ctx));
+    }
+
+    @Benchmark
+    public final Object getAllPlayers(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("GetAllPlayers");
+        return ledger.complete(ctx, ledger.getContract().GetAllPlayers(ctx));
+    }
+
+    @Benchmark
+    public final Object getAllFaculties(final BenchmarkLedger ledger) {
+        Context ctx = ledger.transaction("GetAllFaculties");
+        return ledger.complete(ctx, ledger.getContract().GetAllFaculties(ctx));
+    }
+}
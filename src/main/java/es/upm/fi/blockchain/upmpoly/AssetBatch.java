@@ -0,0 +1,166 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.JsonBindingException;
+import com.owlike.genson.annotation.JsonProperty;
+import com.owlike.genson.stream.JsonStreamException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Players and faculties created together by {@link UpmPoly#BulkCreate}.
+ *
+ * A batch travels as JSON, {"players":[...],"faculties":[...]} with the fields
+ * of {@link Player} and {@link Faculty}, either as it is or base64 encoded.
+ * The base64 form may hold gzip compressed JSON, which is recognized by the
+ * gzip magic bytes, so large batches stay small on the wire.
+ */
+public final class AssetBatch {
+
+    private static final Genson GENSON = new GensonBuilder().setSkipNull(true).create();
+
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private final List<Player> players;
+
+    private final List<Faculty> faculties;
+
+    public AssetBatch(@JsonProperty("players") final List<Player> players, @JsonProperty("faculties") final List<Faculty> faculties) {
+        this.players = players == null ? new ArrayList<Player>() : players;
+        this.faculties = faculties == null ? new ArrayList<Faculty>() : faculties;
+    }
+
+    /**
+     * @param payload the batch as JSON, or as base64 encoded JSON, optionally gzip compressed
+     * @param maxLength the most bytes the JSON may take once decoded
+     * @return the batch
+     * @throws IllegalArgumentException if the payload is no batch, holds a null asset or its JSON is longer than maxLength
+     */
+    public static AssetBatch decode(final String payload, final int maxLength) {
+        if (payload == null) {
+            throw new IllegalArgumentException("The payload is missing");
+        }
+
+        byte[] json;
+        String trimmed = payload.trim();
+        if (trimmed.startsWith("{")) {
+            json = trimmed.getBytes(StandardCharsets.UTF_8);
+        } else {
+            json = Base64.getDecoder().decode(trimmed);
+            if (json.length > 1 && (json[0] & 0xFF) == GZIP_MAGIC_FIRST && (json[1] & 0xFF) == GZIP_MAGIC_SECOND) {
+                json = inflate(json, maxLength);
+            }
+        }
+        if (json.length > maxLength) {
+            throw new IllegalArgumentException(String.format("The batch takes more than %d bytes", maxLength));
+        }
+
+        AssetBatch batch;
+        try {
+            batch = GENSON.deserialize(new String(json, StandardCharsets.UTF_8), AssetBatch.class);
+        } catch (JsonBindingException | JsonStreamException e) {
+            throw new IllegalArgumentException("The payload is no asset batch", e);
+        }
+        if (batch == null) {
+            throw new IllegalArgumentException("The payload is no asset batch");
+        }
+        if (batch.getPlayers().contains(null) || batch.getFaculties().contains(null)) {
+            throw new IllegalArgumentException("The batch holds a null asset");
+        }
+        return batch;
+    }
+
+    /**
+     * @return the batch as base64 encoded, gzip compressed JSON
+     */
+    public String encode() {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(compressed.toByteArray());
+    }
+
+    /**
+     * @return the batch as JSON
+     */
+    public String toJson() {
+        return GENSON.serialize(this);
+    }
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    public List<Faculty> getFaculties() {
+        return faculties;
+    }
+
+    /**
+     * @return the number of assets of the batch
+     */
+    public int size() {
+        return players.size() + faculties.size();
+    }
+
+    private static byte[] inflate(final byte[] compressed, final int maxLength) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            int read;
+            while ((read = gzip.read(buffer)) > 0) {
+                json.write(buffer, 0, read);
+                // stop early, a small payload may inflate to a huge one
+                if (json.size() > maxLength) {
+                    throw new IllegalArgumentException(String.format("The batch takes more than %d bytes", maxLength));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The payload is no gzip stream", e);
+        }
+        return json.toByteArray();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        AssetBatch other = (AssetBatch) obj;
+
+        return Objects.equals(getPlayers(), other.getPlayers())
+                && Objects.equals(getFaculties(), other.getFaculties());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getPlayers(), getFaculties());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [players=" + players.size()
+                + ", faculties=" + faculties.size() + "]";
+    }
+}
@@ -0,0 +1,317 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes players and faculties into world state values.
+ *
+ * Two formats are supported. The JSON format is the Genson serialization used
+ * since the first version of the contract. The binary format starts with a
+ * type/version tag, followed by the fixed size fields and the length prefixed
+ * UTF-8 strings:
+ *
+ * <pre>
+ * player    v1: 0x01 | flags (bit 0 eliminated) | credit int32 | playerID | name
+ * faculty   v1: 0x02 | flags (bit 0 owned) | salePrice int32 | rentalFee int32 | facultyID | name | [owner]
+ * ownership v1: 0x03 | owner
+ * string:       length uint16 | UTF-8 bytes, length 0xFFFF marks a null string
+ * </pre>
+ *
+ * The catalog entry of a faculty is a faculty without owner, in the configured
+ * format. Its owner is kept apart in an ownership value, which is always binary
+ * and only a few bytes long.
+ *
+ * Decoding looks at the first byte, so values written in either format are
+ * always readable whatever format the deployment writes. Because the tag and the
+ * fixed size fields sit at fixed offsets, {@link AssetReader} can check the type
+ * of a binary value and read single fields from it without decoding it.
+ */
+public final class AssetCodec {
+
+    public enum Format {
+        JSON,
+        BINARY
+    }
+
+    public static final String FORMAT_ENV = "UPMPOLY_STATE_FORMAT";
+
+    public static final byte PLAYER_V1 = 0x01;
+
+    public static final byte FACULTY_V1 = 0x02;
+
+    public static final byte OWNERSHIP_V1 = 0x03;
+
+    static final int FLAGS_OFFSET = 1;
+
+    static final int PLAYER_CREDIT_OFFSET = 2;
+
+    static final int PLAYER_STRINGS_OFFSET = 6;
+
+    static final int FACULTY_SALE_PRICE_OFFSET = 2;
+
+    static final int FACULTY_RENTAL_FEE_OFFSET = 6;
+
+    static final int FACULTY_STRINGS_OFFSET = 10;
+
+    static final int OWNERSHIP_OWNER_OFFSET = 1;
+
+    static final int FLAG = 0x01;
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private static final int MAX_STRING_LENGTH = NULL_STRING - 1;
+
+    private final Genson genson = new Genson();
+
+    private final Format format;
+
+    public AssetCodec(final Format format) {
+        this.format = format;
+    }
+
+    /**
+     * @return codec writing the format configured in the chaincode environment, JSON by default or when the value names no format
+     */
+    public static AssetCodec fromEnvironment() {
+        String configured = System.getenv(FORMAT_ENV);
+        if (configured == null || configured.trim().isEmpty()) {
+            return new AssetCodec(Format.JSON);
+        }
+        try {
+            return new AssetCodec(Format.valueOf(configured.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            Log.getInstance().log(Log.Level.WARN, "%1$s=%2$s names no format, writing JSON", FORMAT_ENV, configured);
+            return new AssetCodec(Format.JSON);
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @param player the player to encode
+     * @return the state value of the player
+     */
+    public byte[] encodePlayer(final Player player) {
+        if (format == Format.JSON) {
+            return genson.serialize(player).getBytes(StandardCharsets.UTF_8);
+        }
+
+        int idLength = utf8Length(player.getPlayerID());
+        int nameLength = utf8Length(player.getName());
+        byte[] value = new byte[PLAYER_STRINGS_OFFSET + 2 + idLength + 2 + nameLength];
+
+        value[0] = PLAYER_V1;
+        value[FLAGS_OFFSET] = (byte) (player.getIsEliminated() ? FLAG : 0);
+        writeInt(value, PLAYER_CREDIT_OFFSET, player.getCredit());
+        int offset = writeString(value, PLAYER_STRINGS_OFFSET, player.getPlayerID(), idLength);
+        writeString(value, offset, player.getName(), nameLength);
+
+        return value;
+    }
+
+    /**
+     * @param faculty the faculty to encode
+     * @return the state value of the faculty
+     */
+    public byte[] encodeFaculty(final Faculty faculty) {
+        if (format == Format.JSON) {
+            return genson.serialize(faculty).getBytes(StandardCharsets.UTF_8);
+        }
+
+        boolean owned = faculty.getOwner() != null;
+        int idLength = utf8Length(faculty.getFacultyID());
+        int nameLength = utf8Length(faculty.getName());
+        int ownerLength = owned ? utf8Length(faculty.getOwner()) : 0;
+        byte[] value = new byte[FACULTY_STRINGS_OFFSET + 2 + idLength + 2 + nameLength + (owned ? 2 + ownerLength : 0)];
+
+        value[0] = FACULTY_V1;
+        value[FLAGS_OFFSET] = (byte) (owned ? FLAG : 0);
+        writeInt(value, FACULTY_SALE_PRICE_OFFSET, faculty.getSalePrice());
+        writeInt(value, FACULTY_RENTAL_FEE_OFFSET, faculty.getRentalFee());
+        int offset = writeString(value, FACULTY_STRINGS_OFFSET, faculty.getFacultyID(), idLength);
+        offset = writeString(value, offset, faculty.getName(), nameLength);
+        if (owned) {
+            writeString(value, offset, faculty.getOwner(), ownerLength);
+        }
+
+        return value;
+    }
+
+    /**
+     * @param value the state value
+     * @return the decoded player, null if the value holds no player
+     */
+    public Player decodePlayer(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        if (value[0] == PLAYER_V1) {
+            int idLength = readLength(value, PLAYER_STRINGS_OFFSET);
+            int nameOffset = PLAYER_STRINGS_OFFSET + 2 + idLength;
+            return new Player(
+                    readString(value, PLAYER_STRINGS_OFFSET),
+                    readString(value, nameOffset),
+                    readInt(value, PLAYER_CREDIT_OFFSET),
+                    (value[FLAGS_OFFSET] & FLAG) != 0);
+        }
+        if (!isJson(value)) {
+            return null;
+        }
+
+        Player player = genson.deserialize(new String(value, StandardCharsets.UTF_8), Player.class);
+        return player.getPlayerID() == null ? null : player;
+    }
+
+    /**
+     * @param value the state value
+     * @return the decoded faculty, null if the value holds no faculty
+     */
+    public Faculty decodeFaculty(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        if (value[0] == FACULTY_V1) {
+            int nameOffset = FACULTY_STRINGS_OFFSET + 2 + readLength(value, FACULTY_STRINGS_OFFSET);
+            int ownerOffset = nameOffset + 2 + readLength(value, nameOffset);
+            return new Faculty(
+                    readString(value, FACULTY_STRINGS_OFFSET),
+                    readString(value, nameOffset),
+                    readInt(value, FACULTY_SALE_PRICE_OFFSET),
+                    readInt(value, FACULTY_RENTAL_FEE_OFFSET),
+                    (value[FLAGS_OFFSET] & FLAG) != 0 ? readString(value, ownerOffset) : null);
+        }
+        if (!isJson(value)) {
+            return null;
+        }
+
+        Faculty faculty = genson.deserialize(new String(value, StandardCharsets.UTF_8), Faculty.class);
+        return faculty.getFacultyID() == null ? null : faculty;
+    }
+
+    /**
+     * @param owner the Id of the owning player, null for no owner
+     * @return the ownership value of a faculty
+     */
+    public byte[] encodeOwnership(final String owner) {
+        int ownerLength = utf8Length(owner);
+        byte[] value = new byte[OWNERSHIP_OWNER_OFFSET + 2 + ownerLength];
+
+        value[0] = OWNERSHIP_V1;
+        writeString(value, OWNERSHIP_OWNER_OFFSET, owner, ownerLength);
+
+        return value;
+    }
+
+    /**
+     * @param value the state value
+     * @return true if the value is the ownership value of a faculty
+     */
+    public static boolean isOwnership(final byte[] value) {
+        return value != null && value.length > 0 && value[0] == OWNERSHIP_V1;
+    }
+
+    /**
+     * @param value an ownership value
+     * @return the Id of the owning player, null for no owner
+     */
+    public static String decodeOwner(final byte[] value) {
+        return readString(value, OWNERSHIP_OWNER_OFFSET);
+    }
+
+    static boolean isJson(final byte[] value) {
+        return value[0] == '{';
+    }
+
+    static int readInt(final byte[] value, final int offset) {
+        return ((value[offset] & 0xFF) << 24)
+                | ((value[offset + 1] & 0xFF) << 16)
+                | ((value[offset + 2] & 0xFF) << 8)
+                | (value[offset + 3] & 0xFF);
+    }
+
+    static int readLength(final byte[] value, final int offset) {
+        int length = ((value[offset] & 0xFF) << 8) | (value[offset + 1] & 0xFF);
+        return length == NULL_STRING ? 0 : length;
+    }
+
+    static String readString(final byte[] value, final int offset) {
+        if ((((value[offset] & 0xFF) << 8) | (value[offset + 1] & 0xFF)) == NULL_STRING) {
+            return null;
+        }
+        return new String(value, offset + 2, readLength(value, offset), StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(final byte[] value, final int offset, final int number) {
+        value[offset] = (byte) (number >>> 24);
+        value[offset + 1] = (byte) (number >>> 16);
+        value[offset + 2] = (byte) (number >>> 8);
+        value[offset + 3] = (byte) number;
+    }
+
+    private static int writeString(final byte[] value, final int offset, final String text, final int length) {
+        if (text == null) {
+            value[offset] = (byte) (NULL_STRING >>> 8);
+            value[offset + 1] = (byte) NULL_STRING;
+            return offset + 2;
+        }
+
+        value[offset] = (byte) (length >>> 8);
+        value[offset + 1] = (byte) length;
+
+        int position = offset + 2;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                value[position++] = (byte) c;
+            } else if (c < 0x800) {
+                value[position++] = (byte) (0xC0 | (c >> 6));
+                value[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                value[position++] = (byte) (0xF0 | (codePoint >> 18));
+                value[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                value[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                value[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                value[position++] = (byte) '?';
+            } else {
+                value[position++] = (byte) (0xE0 | (c >> 12));
+                value[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                value[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    private static int utf8Length(final String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException(String.format("Binary asset fields are limited to %d bytes", MAX_STRING_LENGTH));
+        }
+        return length;
+    }
+}
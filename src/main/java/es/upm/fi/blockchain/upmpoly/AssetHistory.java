@@ -0,0 +1,126 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Turns the history of one key into a page of changes, one per write.
+ *
+ * The peer returns the history newest first, so the change of a write is only
+ * known once the next, older, write has been read: the history is walked with
+ * one write of lookahead, and nothing else is kept but the changes of the page.
+ * Writes at or after the end of the time window are skipped, and the walk stops
+ * at the first write before its start.
+ *
+ * A page ends with the bookmark of its last change, the txId of its write, and a
+ * page resumes after the write of the given bookmark. The history only grows at
+ * its newest end, so a bookmark keeps its place; an unknown bookmark gives an
+ * empty page. The peer can not seek into a history, so resuming walks past the
+ * writes of the previous pages again, without decoding them.
+ *
+ * @param <S> the state decoded from a value
+ * @param <C> the change reported for a write
+ */
+final class AssetHistory<S, C> {
+
+    /**
+     * Builds the change of a write from the state it wrote and the state before it.
+     */
+    interface Differ<S, C> {
+
+        /**
+         * @param write the write
+         * @param state the state written, null if the write deleted the key
+         * @param previous the state before the write, null if there was none
+         * @return the change of the write
+         */
+        C diff(KeyModification write, S state, S previous);
+    }
+
+    private final Function<byte[], S> decoder;
+
+    private final Differ<S, C> differ;
+
+    private final Instant from;
+
+    private final Instant to;
+
+    /**
+     * @param decoder decodes the value of a write into its state
+     * @param differ builds the change of a write
+     * @param from the start of the time window, inclusive, null for no start
+     * @param to the end of the time window, exclusive, null for no end
+     */
+    AssetHistory(final Function<byte[], S> decoder, final Differ<S, C> differ, final Instant from, final Instant to) {
+        this.decoder = decoder;
+        this.differ = differ;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param history the history of the key, newest first
+     * @param pageSize the maximum number of changes of the page
+     * @param bookmark the bookmark of the previous page, empty for the first page
+     * @return the changes of the page, newest first, with the bookmark of the next page, empty if it is the last
+     */
+    QueryPage<C> page(final Iterable<KeyModification> history, final int pageSize, final String bookmark) {
+        List<C> changes = new ArrayList<C>();
+        boolean resumed = bookmark == null || bookmark.isEmpty();
+        String next = "";
+
+        KeyModification newer = null;
+        S newerState = null;
+        for (KeyModification write : history) {
+            if (!resumed) {
+                resumed = write.getTxId().equals(bookmark);
+                continue;
+            }
+            if (newer == null && isAfterWindow(write)) {
+                continue;
+            }
+
+            S state = write.isDeleted() ? null : decoder.apply(write.getValue());
+            if (newer != null) {
+                changes.add(differ.diff(newer, newerState, state));
+                String txId = newer.getTxId();
+                newer = null;
+                if (changes.size() == pageSize) {
+                    next = isBeforeWindow(write) ? "" : txId;
+                    break;
+                }
+            }
+
+            if (isBeforeWindow(write)) {
+                break;
+            }
+            newer = write;
+            newerState = state;
+        }
+        if (newer != null) {
+            changes.add(differ.diff(newer, newerState, null));
+        }
+
+        return new QueryPage<C>(changes, next, changes.size());
+    }
+
+    private boolean isAfterWindow(final KeyModification write) {
+        return to != null && write.getTimestamp() != null && !write.getTimestamp().isBefore(to);
+    }
+
+    private boolean isBeforeWindow(final KeyModification write) {
+        return from != null && write.getTimestamp() != null && write.getTimestamp().isBefore(from);
+    }
+
+    /**
+     * @param write a write
+     * @return the timestamp of the write in ISO-8601, null if the peer gave none
+     */
+    static String timestamp(final KeyModification write) {
+        return write.getTimestamp() == null ? null : write.getTimestamp().toString();
+    }
+}
@@ -0,0 +1,164 @@
+package es.upm.fi.blockchain.upmpoly;
+
+/**
+ * Reads single fields out of encoded state values without decoding the whole asset.
+ *
+ * A reader is positioned on one value at a time with {@link #readPlayer(byte[])}
+ * or {@link #readFaculty(byte[])}, which only look at the type tag. The field
+ * accessors then read the fixed size fields at their fixed offsets and walk the
+ * length prefixes to reach a string. Values in the legacy JSON format are
+ * decoded once and served from the decoded asset.
+ *
+ * Readers are meant to be reused for every record of one scan and are not
+ * thread safe.
+ */
+public final class AssetReader {
+
+    private final AssetCodec codec;
+
+    private byte[] value;
+
+    private Player player;
+
+    private Faculty faculty;
+
+    public AssetReader(final AssetCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @param state the state value to read
+     * @return true if the value holds a player
+     */
+    public boolean readPlayer(final byte[] state) {
+        reset(state);
+        if (state == null || state.length == 0) {
+            return false;
+        }
+        if (state[0] == AssetCodec.PLAYER_V1) {
+            return true;
+        }
+        if (!AssetCodec.isJson(state)) {
+            return false;
+        }
+
+        player = codec.decodePlayer(state);
+        return player != null;
+    }
+
+    /**
+     * @param state the state value to read
+     * @return true if the value holds a faculty
+     */
+    public boolean readFaculty(final byte[] state) {
+        reset(state);
+        if (state == null || state.length == 0) {
+            return false;
+        }
+        if (state[0] == AssetCodec.FACULTY_V1) {
+            return true;
+        }
+        if (!AssetCodec.isJson(state)) {
+            return false;
+        }
+
+        faculty = codec.decodeFaculty(state);
+        return faculty != null;
+    }
+
+    public String playerId() {
+        if (player != null) {
+            return player.getPlayerID();
+        }
+        return AssetCodec.readString(value, AssetCodec.PLAYER_STRINGS_OFFSET);
+    }
+
+    public String playerName() {
+        if (player != null) {
+            return player.getName();
+        }
+        return AssetCodec.readString(value, skipString(AssetCodec.PLAYER_STRINGS_OFFSET));
+    }
+
+    public int playerCredit() {
+        if (player != null) {
+            return player.getCredit();
+        }
+        return AssetCodec.readInt(value, AssetCodec.PLAYER_CREDIT_OFFSET);
+    }
+
+    public boolean playerIsEliminated() {
+        if (player != null) {
+            return player.getIsEliminated();
+        }
+        return (value[AssetCodec.FLAGS_OFFSET] & AssetCodec.FLAG) != 0;
+    }
+
+    /**
+     * @return the whole player the reader is positioned on
+     */
+    public Player toPlayer() {
+        if (player == null) {
+            player = codec.decodePlayer(value);
+        }
+        return player;
+    }
+
+    public String facultyId() {
+        if (faculty != null) {
+            return faculty.getFacultyID();
+        }
+        return AssetCodec.readString(value, AssetCodec.FACULTY_STRINGS_OFFSET);
+    }
+
+    public String facultyName() {
+        if (faculty != null) {
+            return faculty.getName();
+        }
+        return AssetCodec.readString(value, skipString(AssetCodec.FACULTY_STRINGS_OFFSET));
+    }
+
+    public int facultySalePrice() {
+        if (faculty != null) {
+            return faculty.getSalePrice();
+        }
+        return AssetCodec.readInt(value, AssetCodec.FACULTY_SALE_PRICE_OFFSET);
+    }
+
+    public int facultyRentalFee() {
+        if (faculty != null) {
+            return faculty.getRentalFee();
+        }
+        return AssetCodec.readInt(value, AssetCodec.FACULTY_RENTAL_FEE_OFFSET);
+    }
+
+    public String facultyOwner() {
+        if (faculty != null) {
+            return faculty.getOwner();
+        }
+        if ((value[AssetCodec.FLAGS_OFFSET] & AssetCodec.FLAG) == 0) {
+            return null;
+        }
+        return AssetCodec.readString(value, skipString(skipString(AssetCodec.FACULTY_STRINGS_OFFSET)));
+    }
+
+    /**
+     * @return the whole faculty the reader is positioned on
+     */
+    public Faculty toFaculty() {
+        if (faculty == null) {
+            faculty = codec.decodeFaculty(value);
+        }
+        return faculty;
+    }
+
+    private void reset(final byte[] state) {
+        value = state;
+        player = null;
+        faculty = null;
+    }
+
+    private int skipString(final int offset) {
+        return offset + 2 + AssetCodec.readLength(value, offset);
+    }
+}
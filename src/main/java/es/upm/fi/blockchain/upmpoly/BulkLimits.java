@@ -0,0 +1,70 @@
+package es.upm.fi.blockchain.upmpoly;
+
+/**
+ * Size bounds of one {@link UpmPoly#BulkCreate} transaction.
+ *
+ * The number of assets bounds the read set: every asset reads its player and
+ * faculty keys to check that the id is free, and a faculty its catalog key as
+ * well. The write set is bounded in bytes, counting the key and the value of
+ * every written key, so that a bulk transaction stays below the preferred block
+ * size of the ordering service. Both bounds are read from the environment, by
+ * the chaincode and by the bulkImport tool, which splits its input so that
+ * every chunk fits.
+ */
+public final class BulkLimits {
+
+    public static final String MAX_ASSETS_ENV = "UPMPOLY_BULK_MAX_ASSETS";
+
+    public static final String MAX_BYTES_ENV = "UPMPOLY_BULK_MAX_BYTES";
+
+    public static final int DEFAULT_MAX_ASSETS = 1000;
+
+    public static final int DEFAULT_MAX_BYTES = 512 * 1024;
+
+    private final int maxAssets;
+
+    private final int maxBytes;
+
+    public BulkLimits(final int maxAssets, final int maxBytes) {
+        this.maxAssets = maxAssets;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the limits configured in the environment, the defaults for the unset ones and the ones that are no positive number
+     */
+    public static BulkLimits fromEnvironment() {
+        return new BulkLimits(configured(MAX_ASSETS_ENV, DEFAULT_MAX_ASSETS), configured(MAX_BYTES_ENV, DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * @return the most assets a bulk transaction may create
+     */
+    public int getMaxAssets() {
+        return maxAssets;
+    }
+
+    /**
+     * @return the most bytes of keys and values a bulk transaction may write
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static int configured(final String variable, final int defaultValue) {
+        String configured = System.getenv(variable);
+        if (configured == null || configured.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(configured.trim());
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below, like a value out of range
+        }
+        Log.getInstance().log(Log.Level.WARN, "%1$s=%2$s is no positive number, using %3$d", variable, configured, defaultValue);
+        return defaultValue;
+    }
+}
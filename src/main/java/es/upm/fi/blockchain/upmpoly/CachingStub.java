@@ -0,0 +1,576 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Chaincode stub that remembers the world state read during one transaction.
+ *
+ * Every key is fetched from the peer at most once; later reads of the same key,
+ * and reads of keys written by the transaction itself, are answered locally.
+ * The decoded asset of a key can be kept next to its raw value and is dropped
+ * as soon as the key is written again.
+ *
+ * Writes are buffered as well: only the last value of every key is sent to the
+ * peer, in key order, when {@link #flush()} is called at the end of the transaction.
+ * Range and partial composite key scans overlay the buffered writes on the
+ * committed state, so a transaction that runs several moves sees the effects of
+ * the earlier ones. A savepoint lets a failed move undo its buffered writes.
+ */
+public final class CachingStub implements ChaincodeStub {
+
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+
+    private final ChaincodeStub delegate;
+
+    private final Map<String, byte[]> values = new HashMap<String, byte[]>();
+
+    private final Map<String, Object> assets = new HashMap<String, Object>();
+
+    private final TreeMap<String, byte[]> writes = new TreeMap<String, byte[]>();
+
+    private Map<String, Undo> savepoint;
+
+    private long hits;
+
+    private long misses;
+
+    private long flushedKeys;
+
+    private long flushedBytes;
+
+    public CachingStub(final ChaincodeStub delegate) {
+        this.delegate = delegate;
+    }
+
+    public ChaincodeStub getDelegate() {
+        return delegate;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getFlushedKeys() {
+        return flushedKeys;
+    }
+
+    public long getFlushedBytes() {
+        return flushedBytes;
+    }
+
+    /**
+     * @param key the state key
+     * @return the asset decoded from the current value of the key, null if none was kept
+     */
+    public Object getAsset(final String key) {
+        return assets.get(key);
+    }
+
+    /**
+     * Keeps the asset decoded from the current value of the key.
+     *
+     * @param key the state key
+     * @param asset the decoded asset
+     */
+    public void putAsset(final String key, final Object asset) {
+        assets.put(key, asset);
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        byte[] value = values.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+
+        misses++;
+        value = delegate.getState(key);
+        if (value == null) {
+            value = NO_VALUE;
+        }
+        values.put(key, value);
+        return value;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        remember(key);
+        writes.put(key, value);
+        values.put(key, value);
+        assets.remove(key);
+    }
+
+    @Override
+    public void delState(final String key) {
+        remember(key);
+        writes.put(key, null);
+        values.put(key, NO_VALUE);
+        assets.remove(key);
+    }
+
+    /**
+     * Starts recording the writes that {@link #rollbackSavepoint()} undoes.
+     */
+    public void beginSavepoint() {
+        savepoint = new HashMap<String, Undo>();
+    }
+
+    /**
+     * Keeps the writes made since {@link #beginSavepoint()}.
+     */
+    public void releaseSavepoint() {
+        savepoint = null;
+    }
+
+    /**
+     * Undoes the writes made since {@link #beginSavepoint()}.
+     */
+    public void rollbackSavepoint() {
+        for (Map.Entry<String, Undo> entry : savepoint.entrySet()) {
+            Undo undo = entry.getValue();
+            if (undo.buffered) {
+                writes.put(entry.getKey(), undo.write);
+            } else {
+                writes.remove(entry.getKey());
+            }
+            if (undo.value != null) {
+                values.put(entry.getKey(), undo.value);
+            } else {
+                values.remove(entry.getKey());
+            }
+        }
+        assets.clear();
+        savepoint = null;
+    }
+
+    /**
+     * @return the bytes of the keys and values of the buffered writes
+     */
+    public long getPendingBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            bytes += write.getKey().getBytes(StandardCharsets.UTF_8).length;
+            if (write.getValue() != null) {
+                bytes += write.getValue().length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param partialKey the partial composite key of the written keys
+     * @return the buffered writes of the keys under the partial key, in key order, deletes hold null
+     */
+    public Map<String, byte[]> getWrites(final CompositeKey partialKey) {
+        return prefixed(partialKey.toString());
+    }
+
+    /**
+     * Sends the buffered writes to the peer, one call per key in key order.
+     */
+    public void flush() {
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            if (write.getValue() == null) {
+                delegate.delState(write.getKey());
+            } else {
+                delegate.putState(write.getKey(), write.getValue());
+                flushedBytes += write.getValue().length;
+            }
+            flushedKeys++;
+        }
+        writes.clear();
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return delegate.getArgs();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return delegate.getStringArgs();
+    }
+
+    @Override
+    public String getFunction() {
+        return delegate.getFunction();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return delegate.getParameters();
+    }
+
+    @Override
+    public String getTxId() {
+        return delegate.getTxId();
+    }
+
+    @Override
+    public String getChannelId() {
+        return delegate.getChannelId();
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        return delegate.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return delegate.getStateValidationParameter(key);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        delegate.setStateValidationParameter(key, value);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        String start = startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey;
+        Map<String, byte[]> pending = endKey.isEmpty() ? writes.tailMap(start) : writes.subMap(start, endKey);
+
+        return overlay(delegate.getStateByRange(startKey, endKey), pending);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey,
+                                                                                    final int pageSize, final String bookmark) {
+        return delegate.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        CompositeKey partialKey = compositeKey.startsWith(CompositeKey.NAMESPACE)
+                ? CompositeKey.parseCompositeKey(compositeKey) : new CompositeKey(compositeKey);
+
+        return overlay(delegate.getStateByPartialCompositeKey(compositeKey), prefixed(partialKey.toString()));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        String prefix = createCompositeKey(objectType, attributes).toString();
+
+        return overlay(delegate.getStateByPartialCompositeKey(objectType, attributes), prefixed(prefix));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return overlay(delegate.getStateByPartialCompositeKey(compositeKey), prefixed(compositeKey.toString()));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey,
+                                                                                                  final int pageSize, final String bookmark) {
+        return delegate.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return delegate.createCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return delegate.splitCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        return delegate.getQueryResult(query);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize,
+                                                                                   final String bookmark) {
+        return delegate.getQueryResultWithPagination(query, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return delegate.getHistoryForKey(key);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return delegate.getPrivateData(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        return delegate.getPrivateDataHash(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        return delegate.getPrivateDataValidationParameter(collection, key);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        delegate.putPrivateData(collection, key, value);
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        delegate.setPrivateDataValidationParameter(collection, key, value);
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        delegate.delPrivateData(collection, key);
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        delegate.purgePrivateData(collection, key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        return delegate.getPrivateDataByRange(collection, startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType,
+                                                                              final String... attributes) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, objectType, attributes);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        return delegate.getPrivateDataQueryResult(collection, query);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        delegate.setEvent(name, payload);
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return delegate.getEvent();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return delegate.getSignedProposal();
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return delegate.getTxTimestamp();
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return delegate.getCreator();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return delegate.getTransient();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return delegate.getBinding();
+    }
+
+    @Override
+    public String getMspId() {
+        return delegate.getMspId();
+    }
+
+    private void remember(final String key) {
+        if (savepoint != null && !savepoint.containsKey(key)) {
+            savepoint.put(key, new Undo(writes.containsKey(key), writes.get(key), values.get(key)));
+        }
+    }
+
+    private Map<String, byte[]> prefixed(final String prefix) {
+        Map<String, byte[]> pending = new TreeMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> write : writes.tailMap(prefix).entrySet()) {
+            if (!write.getKey().startsWith(prefix)) {
+                break;
+            }
+            pending.put(write.getKey(), write.getValue());
+        }
+        return pending;
+    }
+
+    private QueryResultsIterator<KeyValue> overlay(final QueryResultsIterator<KeyValue> committed, final Map<String, byte[]> pending) {
+        if (pending.isEmpty()) {
+            return committed;
+        }
+        // copy the pending writes, the scan must not see writes made while it is iterated
+        return new OverlayIterator(committed, new TreeMap<String, byte[]>(pending));
+    }
+
+    private static final class Undo {
+
+        private final boolean buffered;
+
+        private final byte[] write;
+
+        private final byte[] value;
+
+        Undo(final boolean buffered, final byte[] write, final byte[] value) {
+            this.buffered = buffered;
+            this.write = write;
+            this.value = value;
+        }
+    }
+
+    private static final class BufferedKeyValue implements KeyValue {
+
+        private final String key;
+
+        private final byte[] value;
+
+        BufferedKeyValue(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Merges the committed results of a scan with the buffered writes in its key range.
+     */
+    private static final class OverlayIterator implements QueryResultsIterator<KeyValue>, Iterator<KeyValue> {
+
+        private final QueryResultsIterator<KeyValue> committed;
+
+        private final Iterator<KeyValue> committedResults;
+
+        private final Iterator<Map.Entry<String, byte[]>> pendingWrites;
+
+        private KeyValue committedHead;
+
+        private Map.Entry<String, byte[]> pendingHead;
+
+        private KeyValue next;
+
+        OverlayIterator(final QueryResultsIterator<KeyValue> committed, final TreeMap<String, byte[]> pending) {
+            this.committed = committed;
+            this.committedResults = committed.iterator();
+            this.pendingWrites = pending.entrySet().iterator();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public KeyValue next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            KeyValue result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() throws Exception {
+            committed.close();
+        }
+
+        private KeyValue advance() {
+            while (true) {
+                if (committedHead == null && committedResults.hasNext()) {
+                    committedHead = committedResults.next();
+                }
+                if (pendingHead == null && pendingWrites.hasNext()) {
+                    pendingHead = pendingWrites.next();
+                }
+                if (committedHead == null && pendingHead == null) {
+                    return null;
+                }
+
+                int order;
+                if (committedHead == null) {
+                    order = 1;
+                } else if (pendingHead == null) {
+                    order = -1;
+                } else {
+                    order = committedHead.getKey().compareTo(pendingHead.getKey());
+                }
+
+                if (order < 0) {
+                    KeyValue result = committedHead;
+                    committedHead = null;
+                    return result;
+                }
+
+                Map.Entry<String, byte[]> write = pendingHead;
+                pendingHead = null;
+                if (order == 0) {
+                    committedHead = null;
+                }
+                if (write.getValue() != null) {
+                    return new BufferedKeyValue(write.getKey(), write.getValue());
+                }
+            }
+        }
+    }
+}
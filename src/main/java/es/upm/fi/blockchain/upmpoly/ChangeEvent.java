@@ -0,0 +1,111 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Payload of the chaincode event set by every transaction that changes the game.
+ *
+ * The event lists the new value of every player and faculty record written by
+ * the transaction, so an off-chain consumer can keep its own copy of the records
+ * without reading the ledger. Records are never deleted, so the event carries
+ * no deletes. Under the delta credit model the event also lists the credit
+ * deltas the transaction left pending, which a consumer adds to the credit of
+ * the player after replacing the records of the event: a record written with
+ * folded deltas already holds them. The event names the game the records belong
+ * to. The payload is JSON without the null fields, a list with no record is left out.
+ */
+@DataType()
+public final class ChangeEvent {
+
+    public static final String NAME = "UpmPolyChanges";
+
+    private static final Genson GENSON = new GensonBuilder().setSkipNull(true).create();
+
+    @Property()
+    private final String gameId;
+
+    @Property()
+    private final List<Player> players;
+
+    @Property()
+    private final List<Faculty> faculties;
+
+    @Property()
+    private final List<CreditDelta> credits;
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    public List<Faculty> getFaculties() {
+        return faculties;
+    }
+
+    public List<CreditDelta> getCredits() {
+        return credits;
+    }
+
+    public ChangeEvent(@JsonProperty("gameId") final String gameId, @JsonProperty("players") final List<Player> players,
+                       @JsonProperty("faculties") final List<Faculty> faculties, @JsonProperty("credits") final List<CreditDelta> credits) {
+        this.gameId = gameId;
+        this.players = players;
+        this.faculties = faculties;
+        this.credits = credits;
+    }
+
+    /**
+     * @param payload the payload of a {@link #NAME} event
+     * @return the decoded event
+     */
+    public static ChangeEvent fromPayload(final byte[] payload) {
+        return GENSON.deserialize(new String(payload, StandardCharsets.UTF_8), ChangeEvent.class);
+    }
+
+    /**
+     * @return the payload of the event
+     */
+    public byte[] toPayload() {
+        return GENSON.serialize(this).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        ChangeEvent other = (ChangeEvent) obj;
+
+        return Objects.equals(getGameId(), other.getGameId())
+                && Objects.equals(getPlayers(), other.getPlayers())
+                && Objects.equals(getFaculties(), other.getFaculties())
+                && Objects.equals(getCredits(), other.getCredits());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getGameId(), getPlayers(), getFaculties(), getCredits());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [gameId=" + gameId + ", players=" + players + ", faculties="
+                + faculties + ", credits=" + credits + "]";
+    }
+}
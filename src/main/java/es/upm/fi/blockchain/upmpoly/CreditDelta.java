@@ -0,0 +1,57 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public final class CreditDelta {
+
+    @Property()
+    private final String playerID;
+
+    @Property()
+    private final int amount;
+
+    public String getPlayerID() {
+        return playerID;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public CreditDelta(@JsonProperty("playerID") final String playerID, @JsonProperty("amount") final int amount) {
+        this.playerID = playerID;
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        CreditDelta other = (CreditDelta) obj;
+
+        return Objects.equals(getPlayerID(), other.getPlayerID())
+                && getAmount() == other.getAmount();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getPlayerID(), getAmount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [playerID=" + playerID + ", amount="
+                + amount + "]";
+    }
+}
@@ -0,0 +1,160 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Composes faculties out of their catalog entry and their ownership value.
+ *
+ * Every catalog entry is read from the ledger by every transaction using it,
+ * so the read set of a transaction does not depend on what the peer endorsing
+ * it read before: peers with more or less warm caches return the same read
+ * set for the same proposal. Only the decoding is saved: the entries decoded
+ * are kept for the life of the chaincode process, keyed by the bytes of their
+ * value, and shared by all transactions, up to {@link #MAX_ENTRIES} of them.
+ * A value decodes to the same entry whoever wrote it, so entries written by
+ * transactions that never commit do no harm.
+ *
+ * Faculty values written before the catalog split hold the whole faculty and
+ * are decoded as they are.
+ */
+final class FacultyCatalog {
+
+    static final int MAX_ENTRIES = 100000;
+
+    private final Map<ByteBuffer, Faculty> entries = new ConcurrentHashMap<ByteBuffer, Faculty>();
+
+    private final AssetCodec codec;
+
+    FacultyCatalog(final AssetCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param facultyId the id of the faculty
+     * @return the catalog entry of the faculty, without owner, null if it has none
+     */
+    Faculty get(final ChaincodeStub stub, final String gameId, final String facultyId) {
+        return decode(stub.getState(LedgerKeys.catalog(stub, gameId, facultyId)));
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param facultyId the id of the faculty
+     * @param state the value of the faculty key
+     * @return the faculty, null if the value holds no faculty
+     */
+    Faculty read(final ChaincodeStub stub, final String gameId, final String facultyId, final byte[] state) {
+        if (!AssetCodec.isOwnership(state)) {
+            return codec.decodeFaculty(state);
+        }
+        return withOwner(get(stub, gameId, facultyId), AssetCodec.decodeOwner(state));
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return a join of the catalog of the game with a scan of its faculty keys in key order
+     */
+    Join join(final ChaincodeStub stub, final String gameId) {
+        return new Join(stub, gameId);
+    }
+
+    /**
+     * @param value the value of a catalog key, null if the key does not exist
+     * @return the catalog entry, null if the value holds none
+     */
+    private Faculty decode(final byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(value);
+        Faculty entry = entries.get(bytes);
+        if (entry == null) {
+            entry = codec.decodeFaculty(value);
+            if (entry != null && entries.size() < MAX_ENTRIES) {
+                entries.put(bytes, entry);
+            }
+        }
+        return entry;
+    }
+
+    static Faculty withOwner(final Faculty entry, final String owner) {
+        if (entry == null) {
+            return null;
+        }
+        return new Faculty(entry.getFacultyID(), entry.getName(), entry.getSalePrice(), entry.getRentalFee(), owner);
+    }
+
+    /**
+     * Merge join of the catalog with a scan of the faculty keys.
+     *
+     * The faculty and catalog keys of a faculty sort in the same order, so the
+     * catalog entries are found by walking a single scan of the catalog
+     * alongside the faculty scan, instead of reading each entry on its own. The
+     * catalog scan is started at the first faculty holding only its owner, and
+     * the entries it passes are decoded through the process cache. Closing the
+     * join closes the catalog scan.
+     */
+    final class Join implements AutoCloseable {
+
+        private final ChaincodeStub stub;
+
+        private final String gameId;
+
+        private Scan<KeyValue> scan;
+
+        private Iterator<KeyValue> catalog;
+
+        private String headKey;
+
+        private Faculty head;
+
+        private Join(final ChaincodeStub stub, final String gameId) {
+            this.stub = stub;
+            this.gameId = gameId;
+        }
+
+        /**
+         * @param facultyId the id of the faculty, not lower than the id of the previous call
+         * @param state the value of the faculty key
+         * @return the faculty, null if the value holds no faculty
+         */
+        Faculty read(final String facultyId, final byte[] state) {
+            if (!AssetCodec.isOwnership(state)) {
+                return codec.decodeFaculty(state);
+            }
+            return withOwner(entry(facultyId), AssetCodec.decodeOwner(state));
+        }
+
+        private Faculty entry(final String facultyId) {
+            String key = LedgerKeys.catalog(stub, gameId, facultyId);
+            if (catalog == null) {
+                scan = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.wholeCatalog(stub, gameId)));
+                catalog = scan.iterator();
+            }
+            while ((headKey == null || headKey.compareTo(key) < 0) && catalog.hasNext()) {
+                KeyValue next = catalog.next();
+                headKey = next.getKey();
+                head = decode(next.getValue());
+            }
+            return key.equals(headKey) ? head : null;
+        }
+
+        @Override
+        public void close() {
+            if (scan != null) {
+                scan.close();
+            }
+        }
+    }
+}
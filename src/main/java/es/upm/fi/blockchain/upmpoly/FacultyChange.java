@@ -0,0 +1,90 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+/**
+ * One write of the owner of a faculty, as reported by GetFacultyHistory: the
+ * owner before and after the write, null for no owner.
+ */
+@DataType()
+public final class FacultyChange {
+
+    @Property()
+    private final String txId;
+
+    @Property()
+    private final String timestamp;
+
+    @Property()
+    private final String owner;
+
+    @Property()
+    private final String previousOwner;
+
+    @Property()
+    private final boolean deleted;
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getPreviousOwner() {
+        return previousOwner;
+    }
+
+    public boolean getDeleted() {
+        return deleted;
+    }
+
+    public FacultyChange(@JsonProperty("txId") final String txId, @JsonProperty("timestamp") final String timestamp,
+                         @JsonProperty("owner") final String owner, @JsonProperty("previousOwner") final String previousOwner,
+                         @JsonProperty("deleted") final boolean deleted) {
+        this.txId = txId;
+        this.timestamp = timestamp;
+        this.owner = owner;
+        this.previousOwner = previousOwner;
+        this.deleted = deleted;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        FacultyChange other = (FacultyChange) obj;
+
+        return Objects.equals(getTxId(), other.getTxId())
+                && Objects.equals(getTimestamp(), other.getTimestamp())
+                && Objects.equals(getOwner(), other.getOwner())
+                && Objects.equals(getPreviousOwner(), other.getPreviousOwner())
+                && getDeleted() == other.getDeleted();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTxId(), getTimestamp(), getOwner(), getPreviousOwner(), getDeleted());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [txId=" + txId + ", timestamp="
+                + timestamp + ", owner=" + owner + ", previousOwner=" + previousOwner + ", deleted=" + deleted + "]";
+    }
+}
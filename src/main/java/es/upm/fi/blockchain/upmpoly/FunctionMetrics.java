@@ -0,0 +1,88 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals of all the transactions of one function, updated concurrently without locks.
+ */
+public final class FunctionMetrics {
+
+    private final LongAdder transactions = new LongAdder();
+
+    private final LongAdder stateReads = new LongAdder();
+
+    private final LongAdder stateWrites = new LongAdder();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder scans = new LongAdder();
+
+    private final LongAdder scannedRecords = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param stub the metering stub of the transaction
+     * @param hits the reads of the transaction answered by its cache
+     * @param nanos the wall-clock time of the transaction
+     */
+    void record(final MeteringStub stub, final long hits, final long nanos) {
+        transactions.increment();
+        stateReads.add(stub.getStateReads());
+        stateWrites.add(stub.getStateWrites());
+        bytesRead.add(stub.getBytesRead());
+        bytesWritten.add(stub.getBytesWritten());
+        scans.add(stub.getScans());
+        scannedRecords.add(stub.getScannedRecords());
+        cacheHits.add(hits);
+        latency.record(nanos);
+    }
+
+    /**
+     * @param function the name of the function
+     * @return the current totals of the function
+     */
+    MetricsSnapshot snapshot(final String function) {
+        return new MetricsSnapshot(function, this);
+    }
+
+    long getTransactions() {
+        return transactions.sum();
+    }
+
+    long getStateReads() {
+        return stateReads.sum();
+    }
+
+    long getStateWrites() {
+        return stateWrites.sum();
+    }
+
+    long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    long getScans() {
+        return scans.sum();
+    }
+
+    long getScannedRecords() {
+        return scannedRecords.sum();
+    }
+
+    long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+}
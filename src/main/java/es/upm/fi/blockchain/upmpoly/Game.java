@@ -0,0 +1,55 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public final class Game {
+
+    @Property()
+    private final String gameID;
+
+    @Property()
+    private final String name;
+
+    public String getGameID() {
+        return gameID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Game(@JsonProperty("gameID") final String gameID, @JsonProperty("name") final String name) {
+        this.gameID = gameID;
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        Game other = (Game) obj;
+
+        return Objects.equals(getGameID(), other.getGameID()) && Objects.equals(getName(), other.getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getGameID(), getName());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [gameID=" + gameID + ", name=" + name + "]";
+    }
+}
@@ -0,0 +1,139 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Folds the records of a game into the totals of a {@link GameSummary}, one record at a time.
+ *
+ * Nothing is kept per record: the owned faculties must arrive grouped by owner,
+ * as the owner index returns them, so only the owner being added up and the
+ * largest landholders found so far are held.
+ */
+final class GameAggregator {
+
+    // most faculties first, then the highest rental income, then the lowest id
+    static final Comparator<Landholder> LARGEST_FIRST = Comparator.comparingInt(Landholder::getFaculties).reversed()
+            .thenComparing(Comparator.comparingLong(Landholder::getRentalIncome).reversed())
+            .thenComparing(Landholder::getOwnerID);
+
+    private final int maxLandholders;
+
+    private final PriorityQueue<Landholder> landholders;
+
+    private long players;
+
+    private long eliminatedPlayers;
+
+    private long totalCredit;
+
+    private double medianCredit;
+
+    private long faculties;
+
+    private long ownedFaculties;
+
+    private long rentalIncome;
+
+    private String owner;
+
+    private int ownerFaculties;
+
+    private long ownerIncome;
+
+    GameAggregator(final int maxLandholders) {
+        this.maxLandholders = maxLandholders;
+        this.landholders = new PriorityQueue<Landholder>(maxLandholders + 1, LARGEST_FIRST.reversed());
+    }
+
+    void addPlayer(final int credit, final boolean eliminated) {
+        players++;
+        totalCredit += credit;
+        if (eliminated) {
+            eliminatedPlayers++;
+        }
+    }
+
+    void addFaculty(final boolean owned) {
+        faculties++;
+        if (owned) {
+            ownedFaculties++;
+        }
+    }
+
+    /**
+     * @param ownerId the owner of the faculty, not lower than the owner of the previous call
+     * @param rentalFee the rental fee of the faculty
+     */
+    void addOwnedFaculty(final String ownerId, final int rentalFee) {
+        if (!ownerId.equals(owner)) {
+            closeOwner();
+            owner = ownerId;
+        }
+        ownerFaculties++;
+        ownerIncome += rentalFee;
+        rentalIncome += rentalFee;
+    }
+
+    void setMedianCredit(final double credit) {
+        medianCredit = credit;
+    }
+
+    long getPlayers() {
+        return players;
+    }
+
+    long getActivePlayers() {
+        return players - eliminatedPlayers;
+    }
+
+    long getEliminatedPlayers() {
+        return eliminatedPlayers;
+    }
+
+    long getTotalCredit() {
+        return totalCredit;
+    }
+
+    double getMedianCredit() {
+        return medianCredit;
+    }
+
+    long getFaculties() {
+        return faculties;
+    }
+
+    long getOwnedFaculties() {
+        return ownedFaculties;
+    }
+
+    long getRentalIncome() {
+        return rentalIncome;
+    }
+
+    /**
+     * @return the largest landholders, largest first
+     */
+    List<Landholder> getLandholders() {
+        closeOwner();
+        List<Landholder> largest = new ArrayList<Landholder>(landholders);
+        Collections.sort(largest, LARGEST_FIRST);
+        return largest;
+    }
+
+    private void closeOwner() {
+        if (owner == null) {
+            return;
+        }
+        landholders.add(new Landholder(owner, ownerFaculties, ownerIncome));
+        if (landholders.size() > maxLandholders) {
+            landholders.poll();
+        }
+        owner = null;
+        ownerFaculties = 0;
+        ownerIncome = 0;
+    }
+}
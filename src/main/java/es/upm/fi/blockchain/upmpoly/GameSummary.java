@@ -0,0 +1,102 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import java.util.List;
+
+/**
+ * Aggregates of one game, as reported by GetGameSummary.
+ *
+ * The total credit adds up the credits getMoney reports: with the delta credit
+ * model the payments not consolidated yet are added to the player records. The
+ * median credit ranks the player records alone, without those payments.
+ */
+public final class GameSummary {
+
+    private final String gameId;
+
+    private final long players;
+
+    private final long activePlayers;
+
+    private final long eliminatedPlayers;
+
+    private final long totalCredit;
+
+    private final double medianCredit;
+
+    private final long faculties;
+
+    private final long ownedFaculties;
+
+    private final long unownedFaculties;
+
+    private final long rentalIncome;
+
+    private final List<Landholder> largestLandholders;
+
+    GameSummary(final String gameId, final GameAggregator aggregator) {
+        this.gameId = gameId;
+        this.players = aggregator.getPlayers();
+        this.activePlayers = aggregator.getActivePlayers();
+        this.eliminatedPlayers = aggregator.getEliminatedPlayers();
+        this.totalCredit = aggregator.getTotalCredit();
+        this.medianCredit = aggregator.getMedianCredit();
+        this.faculties = aggregator.getFaculties();
+        this.ownedFaculties = aggregator.getOwnedFaculties();
+        this.unownedFaculties = aggregator.getFaculties() - aggregator.getOwnedFaculties();
+        this.rentalIncome = aggregator.getRentalIncome();
+        this.largestLandholders = aggregator.getLandholders();
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public long getPlayers() {
+        return players;
+    }
+
+    public long getActivePlayers() {
+        return activePlayers;
+    }
+
+    public long getEliminatedPlayers() {
+        return eliminatedPlayers;
+    }
+
+    public long getTotalCredit() {
+        return totalCredit;
+    }
+
+    /**
+     * @return the median credit of the active players, 0 if there is none
+     */
+    public double getMedianCredit() {
+        return medianCredit;
+    }
+
+    public long getFaculties() {
+        return faculties;
+    }
+
+    public long getOwnedFaculties() {
+        return ownedFaculties;
+    }
+
+    public long getUnownedFaculties() {
+        return unownedFaculties;
+    }
+
+    /**
+     * @return the rental fees of all owned faculties, what the owners earn if every faculty is visited once
+     */
+    public long getRentalIncome() {
+        return rentalIncome;
+    }
+
+    /**
+     * @return the players owning the most faculties, largest first, with the rental fees of their faculties
+     */
+    public List<Landholder> getLargestLandholders() {
+        return largestLandholders;
+    }
+}
@@ -0,0 +1,67 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public final class Landholder {
+
+    @Property()
+    private final String ownerID;
+
+    @Property()
+    private final int faculties;
+
+    @Property()
+    private final long rentalIncome;
+
+    public String getOwnerID() {
+        return ownerID;
+    }
+
+    public int getFaculties() {
+        return faculties;
+    }
+
+    public long getRentalIncome() {
+        return rentalIncome;
+    }
+
+    public Landholder(@JsonProperty("ownerID") final String ownerID, @JsonProperty("faculties") final int faculties,
+                      @JsonProperty("rentalIncome") final long rentalIncome) {
+        this.ownerID = ownerID;
+        this.faculties = faculties;
+        this.rentalIncome = rentalIncome;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        Landholder other = (Landholder) obj;
+
+        return Objects.equals(getOwnerID(), other.getOwnerID())
+                && getFaculties() == other.getFaculties()
+                && getRentalIncome() == other.getRentalIncome();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getOwnerID(), getFaculties(), getRentalIncome());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [ownerID=" + ownerID + ", faculties="
+                + faculties + ", rentalIncome=" + rentalIncome + "]";
+    }
+}
@@ -0,0 +1,335 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the world state keys of the upm poly assets.
+ *
+ * Every asset type lives under its own composite key namespace, so a scan over
+ * one type never touches records of another type. A faculty is split in two:
+ * its name, sale price and rental fee never change and are stored once under
+ * its catalog key, while its faculty key only holds the owner.
+ *
+ * The first attribute of every key is the id of the game the key belongs to,
+ * so the keys of a game are contiguous within each namespace and every scan
+ * covers a single game. Transactions of different games never read or write
+ * the same keys. The games themselves are listed under {@link #GAME}.
+ *
+ * Index entries carry no record, only a tag byte: an empty value would delete
+ * the key. Active index and leaderboard entries add the name of the player
+ * behind it, so the active players can be listed from the index alone.
+ */
+public final class LedgerKeys {
+
+    public static final String GAME = "GAME";
+
+    public static final String PLAYER = "PLAYER";
+
+    public static final String FACULTY = "FACULTY";
+
+    public static final String CATALOG = "CATALOG";
+
+    public static final String OWNER_INDEX = "owner~faculty";
+
+    public static final String CREDIT_DELTA = "credit~player~txid";
+
+    public static final String ACTIVE_INDEX = "active~player";
+
+    public static final String COUNTER = "COUNTER";
+
+    public static final String ACTIVE_PLAYERS = "activePlayers";
+
+    public static final int COUNTER_SHARDS = 64;
+
+    public static final String RANK_INDEX = "rank~credit~player";
+
+    private static final String RANK_FORMAT = "%010d";
+
+    private static final String DELIMITER = "\u0000";
+
+    private static final String MAX_UNICODE_RUNE = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private static final byte[] INDEX_VALUE = new byte[] {0x00};
+
+    private LedgerKeys() {
+    }
+
+    /**
+     * Checks an id the way the shim checks the attributes of a composite key,
+     * so that a bad id can be rejected before any key is built from it.
+     *
+     * @param id the id of an asset
+     * @return whether the id can be an attribute of a composite key
+     */
+    public static boolean isValidId(final String id) {
+        return id != null && !id.contains(DELIMITER) && !id.contains(MAX_UNICODE_RUNE);
+    }
+
+    /**
+     * Appends attributes to a partial key the way the shim builds composite keys.
+     *
+     * The shim compiles a regular expression to check every attribute, which
+     * dominates the cost of building keys in bulk; the attributes are checked
+     * with {@link #isValidId} here instead.
+     *
+     * @param partialKey the partial key of a namespace
+     * @param attributes the attributes to append
+     * @return the key
+     * @throws IllegalArgumentException if an attribute can not be part of a composite key
+     */
+    public static String append(final CompositeKey partialKey, final String... attributes) {
+        StringBuilder key = new StringBuilder(partialKey.toString());
+        for (String attribute : attributes) {
+            if (!isValidId(attribute)) {
+                throw new IllegalArgumentException("Id not allowed in a composite key: " + attribute);
+            }
+            key.append(attribute).append(DELIMITER);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the value of an owner index entry
+     */
+    public static byte[] indexEntry() {
+        return INDEX_VALUE.clone();
+    }
+
+    /**
+     * @param name the name of the player
+     * @return the value of an active index or leaderboard entry of the player
+     */
+    public static byte[] activeEntry(final String name) {
+        byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        byte[] value = new byte[INDEX_VALUE.length + bytes.length];
+        System.arraycopy(INDEX_VALUE, 0, value, 0, INDEX_VALUE.length);
+        System.arraycopy(bytes, 0, value, INDEX_VALUE.length, bytes.length);
+        return value;
+    }
+
+    /**
+     * @param value the value of an active index or leaderboard entry
+     * @return the name of the player
+     */
+    public static String activeName(final byte[] value) {
+        return new String(value, INDEX_VALUE.length, value.length - INDEX_VALUE.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the state key of the game
+     */
+    public static String game(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(GAME, gameId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @return the partial key covering all games
+     */
+    public static CompositeKey allGames(final ChaincodeStub stub) {
+        return stub.createCompositeKey(GAME);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param playerId the id of the player
+     * @return the state key of the player
+     */
+    public static String player(final ChaincodeStub stub, final String gameId, final String playerId) {
+        return stub.createCompositeKey(PLAYER, gameId, playerId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param facultyId the id of the faculty
+     * @return the state key of the faculty
+     */
+    public static String faculty(final ChaincodeStub stub, final String gameId, final String facultyId) {
+        return stub.createCompositeKey(FACULTY, gameId, facultyId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering all players
+     */
+    public static CompositeKey allPlayers(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(PLAYER, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering all faculties
+     */
+    public static CompositeKey allFaculties(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(FACULTY, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param facultyId the id of the faculty
+     * @return the catalog key of the faculty
+     */
+    public static String catalog(final ChaincodeStub stub, final String gameId, final String facultyId) {
+        return stub.createCompositeKey(CATALOG, gameId, facultyId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering the catalog entries of all faculties
+     */
+    public static CompositeKey wholeCatalog(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(CATALOG, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param ownerId the id of the owning player
+     * @param facultyId the id of the owned faculty
+     * @return the owner index key of the faculty
+     */
+    public static String ownedFaculty(final ChaincodeStub stub, final String gameId, final String ownerId, final String facultyId) {
+        return stub.createCompositeKey(OWNER_INDEX, gameId, ownerId, facultyId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering the owner index entries of all players, grouped by owner
+     */
+    public static CompositeKey allOwnedFaculties(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(OWNER_INDEX, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param ownerId the id of the owning player
+     * @return the partial key covering the owner index entries of the player
+     */
+    public static CompositeKey facultiesOwnedBy(final ChaincodeStub stub, final String gameId, final String ownerId) {
+        return stub.createCompositeKey(OWNER_INDEX, gameId, ownerId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param playerId the id of the credited player
+     * @param txId the id of the crediting transaction
+     * @param sequence the number of the credit within the transaction
+     * @return the key of the credit delta
+     */
+    public static String creditDelta(final ChaincodeStub stub, final String gameId, final String playerId, final String txId, final int sequence) {
+        return stub.createCompositeKey(CREDIT_DELTA, gameId, playerId, txId, Integer.toString(sequence)).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param playerId the id of the credited player
+     * @return the partial key covering the credit deltas of the player
+     */
+    public static CompositeKey creditDeltasOf(final ChaincodeStub stub, final String gameId, final String playerId) {
+        return stub.createCompositeKey(CREDIT_DELTA, gameId, playerId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering the credit deltas of all players, grouped by player
+     */
+    public static CompositeKey allCreditDeltas(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(CREDIT_DELTA, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param playerId the id of the active player
+     * @return the active index key of the player
+     */
+    public static String activePlayer(final ChaincodeStub stub, final String gameId, final String playerId) {
+        return stub.createCompositeKey(ACTIVE_INDEX, gameId, playerId).toString();
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering the active index entries of all players
+     */
+    public static CompositeKey activePlayers(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(ACTIVE_INDEX, gameId);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param shard the shard of the counter, from 0 to {@link #COUNTER_SHARDS} - 1
+     * @return the key of one shard of the number of players not eliminated yet
+     */
+    public static String activePlayerCount(final ChaincodeStub stub, final String gameId, final int shard) {
+        return stub.createCompositeKey(COUNTER, gameId, ACTIVE_PLAYERS, Integer.toString(shard)).toString();
+    }
+
+    /**
+     * Spreads the updates of a counter over its shards, so that transactions
+     * counting different players rarely write the same key.
+     *
+     * @param id the id of the counted asset
+     * @return the shard of the counter the asset is counted in
+     */
+    public static int counterShard(final String id) {
+        return Math.floorMod(id.hashCode(), COUNTER_SHARDS);
+    }
+
+    /**
+     * Leaderboard entries sort by credit, richest first: the credit is stored
+     * subtracted from Integer.MAX_VALUE and zero padded, so the key order of the
+     * entries is the descending order of the credits.
+     *
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @param credit the credit of the player
+     * @param playerId the id of the player
+     * @return the leaderboard key of the player
+     */
+    public static String rank(final ChaincodeStub stub, final String gameId, final int credit, final String playerId) {
+        return stub.createCompositeKey(RANK_INDEX, gameId, invertedCredit(credit), playerId).toString();
+    }
+
+    /**
+     * @param credit the credit of a player
+     * @return the credit attribute of the leaderboard key of the player
+     */
+    public static String invertedCredit(final int credit) {
+        return String.format(RANK_FORMAT, (long) Integer.MAX_VALUE - credit);
+    }
+
+    /**
+     * @param stub the chaincode stub
+     * @param gameId the id of the game
+     * @return the partial key covering the whole leaderboard
+     */
+    public static CompositeKey leaderboard(final ChaincodeStub stub, final String gameId) {
+        return stub.createCompositeKey(RANK_INDEX, gameId);
+    }
+
+    /**
+     * @param rank the split leaderboard key of a player
+     * @return the credit of the player
+     */
+    public static int rankedCredit(final CompositeKey rank) {
+        return (int) (Integer.MAX_VALUE - Long.parseLong(rank.getAttributes().get(1)));
+    }
+}
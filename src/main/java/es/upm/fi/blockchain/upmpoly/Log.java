@@ -0,0 +1,261 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Leveled diagnostic log of the chaincode process.
+ *
+ * Logging a record below the configured level costs a comparison: the
+ * arguments are passed as they are and the message is only formatted when the
+ * record is written. Records of enabled levels are stored, unformatted, in a
+ * preallocated ring buffer that a background thread drains to standard output,
+ * so a transaction never formats a message nor waits for the console. When
+ * the buffer is full the record is dropped and counted instead.
+ *
+ * While the buffer is empty the writer parks, and the first record published
+ * after that wakes it up, so an idle log only wakes once a second.
+ *
+ * The level is read from UPMPOLY_LOG_LEVEL, INFO by default or when the value
+ * names no level. Rejected moves are logged at INFO, transaction statistics at
+ * DEBUG and every scanned record at TRACE.
+ */
+public final class Log {
+
+    public enum Level {
+        TRACE,
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR,
+        OFF
+    }
+
+    public static final String LEVEL_ENV = "UPMPOLY_LOG_LEVEL";
+
+    private static final int CAPACITY = 1 << 13;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private static final long IDLE_NANOS = 1000000000;
+
+    private static final Log INSTANCE = new Log(levelFromEnvironment(), System.out);
+
+    private final Level level;
+
+    private final PrintStream out;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final Level[] levels = new Level[CAPACITY];
+
+    private final long[] times = new long[CAPACITY];
+
+    private final String[] formats = new String[CAPACITY];
+
+    private final int[] arities = new int[CAPACITY];
+
+    private final Object[] firstArgs = new Object[CAPACITY];
+
+    private final Object[] secondArgs = new Object[CAPACITY];
+
+    private final Object[] thirdArgs = new Object[CAPACITY];
+
+    private volatile long drained;
+
+    private volatile Thread writer;
+
+    private volatile boolean parked;
+
+    private long reportedDrops;
+
+    private Log(final Level level, final PrintStream out) {
+        this.level = level;
+        this.out = out;
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+
+        if (level != Level.OFF) {
+            writer = new Thread(this::drainForever, "upmpoly-log");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "upmpoly-log-flush"));
+        }
+    }
+
+    /**
+     * @return the log of the process, at the level configured in the chaincode environment
+     */
+    public static Log getInstance() {
+        return INSTANCE;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @param recordLevel the level of a record
+     * @return true if records of that level are written
+     */
+    public boolean isEnabled(final Level recordLevel) {
+        return recordLevel.compareTo(level) >= 0 && recordLevel != Level.OFF;
+    }
+
+    /**
+     * @param recordLevel the level of the record
+     * @param message the message, written as it is
+     */
+    public void log(final Level recordLevel, final String message) {
+        if (isEnabled(recordLevel)) {
+            append(recordLevel, message, 0, null, null, null);
+        }
+    }
+
+    /**
+     * @param recordLevel the level of the record
+     * @param format the {@link String#format} pattern of the message
+     * @param arg the argument of the pattern
+     */
+    public void log(final Level recordLevel, final String format, final Object arg) {
+        if (isEnabled(recordLevel)) {
+            append(recordLevel, format, 1, arg, null, null);
+        }
+    }
+
+    /**
+     * @param recordLevel the level of the record
+     * @param format the {@link String#format} pattern of the message
+     * @param arg1 the first argument of the pattern
+     * @param arg2 the second argument of the pattern
+     */
+    public void log(final Level recordLevel, final String format, final Object arg1, final Object arg2) {
+        if (isEnabled(recordLevel)) {
+            append(recordLevel, format, 2, arg1, arg2, null);
+        }
+    }
+
+    /**
+     * @param recordLevel the level of the record
+     * @param format the {@link String#format} pattern of the message
+     * @param arg1 the first argument of the pattern
+     * @param arg2 the second argument of the pattern
+     * @param arg3 the third argument of the pattern
+     */
+    public void log(final Level recordLevel, final String format, final Object arg1, final Object arg2, final Object arg3) {
+        if (isEnabled(recordLevel)) {
+            append(recordLevel, format, 3, arg1, arg2, arg3);
+        }
+    }
+
+    private static Level levelFromEnvironment() {
+        String configured = System.getenv(LEVEL_ENV);
+        if (configured == null || configured.trim().isEmpty()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(configured.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // the log is not running yet, the warning is written as the writer would
+            System.out.println(String.format("%1$s WARN  %2$s=%3$s names no level, logging at INFO", Instant.now(), LEVEL_ENV, configured));
+            return Level.INFO;
+        }
+    }
+
+    private void append(final Level recordLevel, final String format, final int arity, final Object arg1, final Object arg2,
+                        final Object arg3) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - drained >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & MASK;
+        levels[slot] = recordLevel;
+        times[slot] = System.currentTimeMillis();
+        formats[slot] = format;
+        arities[slot] = arity;
+        firstArgs[slot] = arg1;
+        secondArgs[slot] = arg2;
+        thirdArgs[slot] = arg3;
+        // publishing the sequence makes the slot visible to the writer
+        published.set(slot, sequence);
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drainForever() {
+        while (true) {
+            if (drain() == 0) {
+                parked = true;
+                // a record published before the flag was seen is drained here, later ones unpark the writer
+                if (published.get((int) drained & MASK) != drained) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    private synchronized int drain() {
+        int written = 0;
+        long next = drained;
+        int slot = (int) next & MASK;
+        while (published.get(slot) == next) {
+            out.println(format(slot));
+            formats[slot] = null;
+            firstArgs[slot] = null;
+            secondArgs[slot] = null;
+            thirdArgs[slot] = null;
+            drained = ++next;
+            slot = (int) next & MASK;
+            written++;
+        }
+
+        long drops = dropped.sum();
+        if (drops != reportedDrops) {
+            out.println(String.format("%1$s WARN  %2$d log records dropped, the log buffer was full", Instant.now(), drops - reportedDrops));
+            reportedDrops = drops;
+        }
+        if (written > 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+    private String format(final int slot) {
+        String message;
+        try {
+            switch (arities[slot]) {
+                case 0:
+                    message = formats[slot];
+                    break;
+                case 1:
+                    message = String.format(formats[slot], firstArgs[slot]);
+                    break;
+                case 2:
+                    message = String.format(formats[slot], firstArgs[slot], secondArgs[slot]);
+                    break;
+                default:
+                    message = String.format(formats[slot], firstArgs[slot], secondArgs[slot], thirdArgs[slot]);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            message = formats[slot] + " (" + e + ")";
+        }
+        return String.format("%1$s %2$-5s %3$s", Instant.ofEpochMilli(times[slot]), levels[slot], message);
+    }
+}
@@ -0,0 +1,363 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chaincode stub counting the state traffic of one transaction with the peer.
+ *
+ * Counts the keys read and written, the bytes of their values, the scans run
+ * and the records the scans returned. The counters belong to a single
+ * transaction and are added to the {@link Metrics} of its function when the
+ * transaction ends.
+ */
+public final class MeteringStub implements ChaincodeStub {
+
+    private final ChaincodeStub delegate;
+
+    private long stateReads;
+
+    private long stateWrites;
+
+    private long bytesRead;
+
+    private long bytesWritten;
+
+    private long scans;
+
+    private long scannedRecords;
+
+    public MeteringStub(final ChaincodeStub delegate) {
+        this.delegate = delegate;
+    }
+
+    public long getStateReads() {
+        return stateReads;
+    }
+
+    public long getStateWrites() {
+        return stateWrites;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getScans() {
+        return scans;
+    }
+
+    public long getScannedRecords() {
+        return scannedRecords;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        byte[] value = delegate.getState(key);
+        stateReads++;
+        bytesRead += value == null ? 0 : value.length;
+        return value;
+    }
+
+    @Override
+    public String getStringState(final String key) {
+        return new String(getState(key), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        delegate.putState(key, value);
+        stateWrites++;
+        bytesWritten += value.length;
+    }
+
+    @Override
+    public void putStringState(final String key, final String value) {
+        putState(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void delState(final String key) {
+        delegate.delState(key);
+        stateWrites++;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return delegate.getArgs();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return delegate.getStringArgs();
+    }
+
+    @Override
+    public String getFunction() {
+        return delegate.getFunction();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return delegate.getParameters();
+    }
+
+    @Override
+    public String getTxId() {
+        return delegate.getTxId();
+    }
+
+    @Override
+    public String getChannelId() {
+        return delegate.getChannelId();
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        return delegate.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return delegate.getStateValidationParameter(key);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        delegate.setStateValidationParameter(key, value);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return meter(delegate.getStateByRange(startKey, endKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey,
+                                                                                    final int pageSize, final String bookmark) {
+        return meter(delegate.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return meter(delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        return meter(delegate.getStateByPartialCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return meter(delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey,
+                                                                                                  final int pageSize, final String bookmark) {
+        return meter(delegate.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark));
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return delegate.createCompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return delegate.splitCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        return delegate.getQueryResult(query);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize,
+                                                                                   final String bookmark) {
+        return delegate.getQueryResultWithPagination(query, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return delegate.getHistoryForKey(key);
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        return delegate.getPrivateData(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        return delegate.getPrivateDataHash(collection, key);
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        return delegate.getPrivateDataValidationParameter(collection, key);
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        delegate.putPrivateData(collection, key, value);
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        delegate.setPrivateDataValidationParameter(collection, key, value);
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        delegate.delPrivateData(collection, key);
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        delegate.purgePrivateData(collection, key);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        return delegate.getPrivateDataByRange(collection, startKey, endKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType,
+                                                                              final String... attributes) {
+        return delegate.getPrivateDataByPartialCompositeKey(collection, objectType, attributes);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        return delegate.getPrivateDataQueryResult(collection, query);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        delegate.setEvent(name, payload);
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return delegate.getEvent();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return delegate.getSignedProposal();
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return delegate.getTxTimestamp();
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return delegate.getCreator();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return delegate.getTransient();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return delegate.getBinding();
+    }
+
+    @Override
+    public String getMspId() {
+        return delegate.getMspId();
+    }
+
+    private QueryResultsIterator<KeyValue> meter(final QueryResultsIterator<KeyValue> results) {
+        scans++;
+        return new MeteredIterator(results, null);
+    }
+
+    private QueryResultsIteratorWithMetadata<KeyValue> meter(final QueryResultsIteratorWithMetadata<KeyValue> results) {
+        scans++;
+        return new MeteredIterator(null, results);
+    }
+
+    /**
+     * Counts the records and bytes returned by a scan as they are iterated.
+     */
+    private final class MeteredIterator implements QueryResultsIterator<KeyValue>, QueryResultsIteratorWithMetadata<KeyValue>,
+            Iterator<KeyValue> {
+
+        private final AutoCloseable results;
+
+        private final Iterator<KeyValue> records;
+
+        private final QueryResultsIteratorWithMetadata<KeyValue> paged;
+
+        MeteredIterator(final QueryResultsIterator<KeyValue> plain, final QueryResultsIteratorWithMetadata<KeyValue> paged) {
+            this.results = plain != null ? plain : paged;
+            this.records = plain != null ? plain.iterator() : paged.iterator();
+            this.paged = paged;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
+
+        @Override
+        public KeyValue next() {
+            KeyValue record = records.next();
+            scannedRecords++;
+            bytesRead += record.getValue().length;
+            return record;
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return paged == null ? null : paged.getMetadata();
+        }
+
+        @Override
+        public void close() throws Exception {
+            results.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per function metrics of the transactions run by this chaincode process.
+ *
+ * Every transaction adds the counters of its {@link MeteringStub} and its
+ * latency to the totals of its function when it completes. Transactions
+ * failing with an exception are not counted, as the contract is not called
+ * back for them.
+ *
+ * When UPMPOLY_METRICS_INTERVAL is set to a number of seconds, the totals are
+ * also logged as JSON at that interval by a daemon thread. Any other value is
+ * reported and ignored.
+ */
+public final class Metrics {
+
+    public static final String INTERVAL_ENV = "UPMPOLY_METRICS_INTERVAL";
+
+    private final Genson genson = new Genson();
+
+    private final ConcurrentMap<String, FunctionMetrics> functions = new ConcurrentSkipListMap<String, FunctionMetrics>();
+
+    /**
+     * @return metrics dumped at the interval configured in the chaincode environment, if any
+     */
+    public static Metrics fromEnvironment() {
+        Metrics metrics = new Metrics();
+
+        String configured = System.getenv(INTERVAL_ENV);
+        if (configured == null || configured.trim().isEmpty()) {
+            return metrics;
+        }
+        try {
+            long seconds = Long.parseLong(configured.trim());
+            if (seconds > 0) {
+                metrics.dumpEvery(seconds);
+                return metrics;
+            }
+        } catch (NumberFormatException e) {
+            // reported below, like a value out of range
+        }
+        Log.getInstance().log(Log.Level.WARN, "%1$s=%2$s is no number of seconds, metrics are not dumped", INTERVAL_ENV, configured);
+        return metrics;
+    }
+
+    /**
+     * @param function the name of the transaction function
+     * @param stub the metering stub of the transaction
+     * @param hits the reads of the transaction answered by its cache
+     * @param nanos the wall-clock time of the transaction
+     */
+    public void record(final String function, final MeteringStub stub, final long hits, final long nanos) {
+        functions.computeIfAbsent(function, name -> new FunctionMetrics()).record(stub, hits, nanos);
+    }
+
+    /**
+     * @return the current totals of every function, by function name
+     */
+    public List<MetricsSnapshot> snapshot() {
+        List<MetricsSnapshot> snapshots = new ArrayList<MetricsSnapshot>();
+        for (Map.Entry<String, FunctionMetrics> function : functions.entrySet()) {
+            snapshots.add(function.getValue().snapshot(function.getKey()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return the current totals of every function as JSON
+     */
+    public String toJson() {
+        return genson.serialize(snapshot());
+    }
+
+    private void dumpEvery(final long seconds) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upmpoly-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> Log.getInstance().log(Log.Level.INFO, "Metrics: %s", toJson()), seconds, seconds, TimeUnit.SECONDS);
+    }
+}
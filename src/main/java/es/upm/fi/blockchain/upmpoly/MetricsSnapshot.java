@@ -0,0 +1,105 @@
+package es.upm.fi.blockchain.upmpoly;
+
+/**
+ * Totals of one transaction function at a point in time, as reported by GetMetrics.
+ *
+ * Latencies are in microseconds.
+ */
+public final class MetricsSnapshot {
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final String function;
+
+    private final long transactions;
+
+    private final long stateReads;
+
+    private final long stateWrites;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final long scans;
+
+    private final long scannedRecords;
+
+    private final long cacheHits;
+
+    private final long latencyP50;
+
+    private final long latencyP90;
+
+    private final long latencyP99;
+
+    private final long latencyMax;
+
+    MetricsSnapshot(final String function, final FunctionMetrics metrics) {
+        this.function = function;
+        this.transactions = metrics.getTransactions();
+        this.stateReads = metrics.getStateReads();
+        this.stateWrites = metrics.getStateWrites();
+        this.bytesRead = metrics.getBytesRead();
+        this.bytesWritten = metrics.getBytesWritten();
+        this.scans = metrics.getScans();
+        this.scannedRecords = metrics.getScannedRecords();
+        this.cacheHits = metrics.getCacheHits();
+        this.latencyP50 = metrics.getLatency().getPercentile(50) / NANOS_PER_MICRO;
+        this.latencyP90 = metrics.getLatency().getPercentile(90) / NANOS_PER_MICRO;
+        this.latencyP99 = metrics.getLatency().getPercentile(99) / NANOS_PER_MICRO;
+        this.latencyMax = metrics.getLatency().getMax() / NANOS_PER_MICRO;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public long getStateReads() {
+        return stateReads;
+    }
+
+    public long getStateWrites() {
+        return stateWrites;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getScans() {
+        return scans;
+    }
+
+    public long getScannedRecords() {
+        return scannedRecords;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getLatencyP50() {
+        return latencyP50;
+    }
+
+    public long getLatencyP90() {
+        return latencyP90;
+    }
+
+    public long getLatencyP99() {
+        return latencyP99;
+    }
+
+    public long getLatencyMax() {
+        return latencyMax;
+    }
+}
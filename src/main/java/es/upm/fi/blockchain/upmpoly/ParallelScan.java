@@ -0,0 +1,163 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Decodes and encodes the records of a large scan on a pool of threads.
+ *
+ * The scanning thread pulls the records in batches of {@link #BATCH_SIZE} and
+ * hands every batch to a fork-join pool, which decodes, filters and encodes it
+ * into a chunk of the response. The chunks are appended in the order of their
+ * batches, so the response is the one of a sequential scan. Only the scanning
+ * thread uses the stub, so the read set is the one of a sequential scan too:
+ * records that need more state to be decoded, like faculties joined with their
+ * catalog entries, are prepared by the scanning thread as they are pulled.
+ *
+ * At most {@link #BATCHES_PER_THREAD} batches per thread are in flight, which
+ * bounds the memory of the pipeline. A scan that fits in one batch, and every
+ * scan when the pool has a single thread, is encoded on the scanning thread.
+ * The size of the pool is read from UPMPOLY_DECODE_THREADS, the number of
+ * processors by default or when the value is no positive number.
+ */
+final class ParallelScan {
+
+    static final String THREADS_ENV = "UPMPOLY_DECODE_THREADS";
+
+    static final int BATCH_SIZE = 256;
+
+    static final int BATCHES_PER_THREAD = 2;
+
+    /**
+     * Encodes the records of a batch into a writer, skipping the ones that are
+     * filtered out. Different batches are encoded concurrently, so an encoder
+     * keeps its per batch state on the stack and never touches the stub.
+     */
+    interface BatchEncoder<T> {
+        void encode(List<T> batch, ResponseWriter out);
+    }
+
+    private final int threads;
+
+    private final ForkJoinPool pool;
+
+    ParallelScan(final int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+    }
+
+    /**
+     * @return the pipeline with the pool size configured in the environment
+     */
+    static ParallelScan fromEnvironment() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        String configured = System.getenv(THREADS_ENV);
+        if (configured == null || configured.trim().isEmpty()) {
+            return new ParallelScan(processors);
+        }
+        try {
+            int threads = Integer.parseInt(configured.trim());
+            if (threads > 0) {
+                return new ParallelScan(threads);
+            }
+        } catch (NumberFormatException e) {
+            // reported below, like a value out of range
+        }
+        Log.getInstance().log(Log.Level.WARN, "%1$s=%2$s is no thread count, decoding on %3$d threads", THREADS_ENV, configured, processors);
+        return new ParallelScan(processors);
+    }
+
+    /**
+     * @param records the records to encode, in key order
+     * @param encoder the encoder of a batch of records
+     * @param out the writer the records are appended to, in the order of the scan
+     */
+    <T> void encode(final Iterable<T> records, final BatchEncoder<T> encoder, final ResponseWriter out) {
+        encode(records, Function.identity(), encoder, out);
+    }
+
+    /**
+     * @param records the records to encode, in key order
+     * @param prepare the step run on the scanning thread for every record, null to skip the record
+     * @param encoder the encoder of a batch of prepared records
+     * @param out the writer the records are appended to, in the order of the scan
+     */
+    <S, T> void encode(final Iterable<S> records, final Function<S, T> prepare, final BatchEncoder<T> encoder, final ResponseWriter out) {
+        Iterator<S> iterator = records.iterator();
+        List<T> batch = next(iterator, prepare);
+
+        if (pool == null || !iterator.hasNext()) {
+            while (!batch.isEmpty()) {
+                encoder.encode(batch, out);
+                batch = next(iterator, prepare);
+            }
+            return;
+        }
+
+        Deque<Future<ResponseWriter>> pending = new ArrayDeque<Future<ResponseWriter>>();
+        try {
+            while (!batch.isEmpty()) {
+                if (pending.size() == threads * BATCHES_PER_THREAD) {
+                    out.records(await(pending.poll()));
+                }
+                pending.add(pool.submit(chunk(batch, encoder)));
+                batch = next(iterator, prepare);
+            }
+            while (!pending.isEmpty()) {
+                out.records(await(pending.poll()));
+            }
+        } finally {
+            for (Future<ResponseWriter> chunk : pending) {
+                chunk.cancel(false);
+            }
+        }
+    }
+
+    private static <T> Callable<ResponseWriter> chunk(final List<T> batch, final BatchEncoder<T> encoder) {
+        return () -> {
+            ResponseWriter chunk = new ResponseWriter();
+            encoder.encode(batch, chunk);
+            return chunk;
+        };
+    }
+
+    private static <S, T> List<T> next(final Iterator<S> iterator, final Function<S, T> prepare) {
+        List<T> batch = new ArrayList<T>(BATCH_SIZE);
+        while (batch.size() < BATCH_SIZE && iterator.hasNext()) {
+            T record = prepare.apply(iterator.next());
+            if (record != null) {
+                batch.add(record);
+            }
+        }
+        return batch;
+    }
+
+    private static ResponseWriter await(final Future<ResponseWriter> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChaincodeException("Interrupted while encoding the scan", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // the pool rethrows a copy of an exception raised on another thread, wrapping the original
+            if (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ChaincodeException("Could not encode the scan", cause);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+/**
+ * One write of a player record, as reported by GetPlayerHistory: the credit
+ * after the write and how much it moved.
+ */
+@DataType()
+public final class PlayerChange {
+
+    @Property()
+    private final String txId;
+
+    @Property()
+    private final String timestamp;
+
+    @Property()
+    private final int credit;
+
+    @Property()
+    private final int creditDelta;
+
+    @Property()
+    private final boolean isEliminated;
+
+    @Property()
+    private final boolean deleted;
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public int getCredit() {
+        return credit;
+    }
+
+    public int getCreditDelta() {
+        return creditDelta;
+    }
+
+    public boolean getIsEliminated() {
+        return isEliminated;
+    }
+
+    public boolean getDeleted() {
+        return deleted;
+    }
+
+    public PlayerChange(@JsonProperty("txId") final String txId, @JsonProperty("timestamp") final String timestamp,
+                        @JsonProperty("credit") final int credit, @JsonProperty("creditDelta") final int creditDelta,
+                        @JsonProperty("isEliminated") final boolean isEliminated, @JsonProperty("deleted") final boolean deleted) {
+        this.txId = txId;
+        this.timestamp = timestamp;
+        this.credit = credit;
+        this.creditDelta = creditDelta;
+        this.isEliminated = isEliminated;
+        this.deleted = deleted;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        PlayerChange other = (PlayerChange) obj;
+
+        return Objects.equals(getTxId(), other.getTxId())
+                && Objects.equals(getTimestamp(), other.getTimestamp())
+                && getCredit() == other.getCredit()
+                && getCreditDelta() == other.getCreditDelta()
+                && getIsEliminated() == other.getIsEliminated()
+                && getDeleted() == other.getDeleted();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTxId(), getTimestamp(), getCredit(), getCreditDelta(), getIsEliminated(), getDeleted());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [txId=" + txId + ", timestamp="
+                + timestamp + ", credit=" + credit + ", creditDelta=" + creditDelta + ", isEliminated=" + isEliminated
+                + ", deleted=" + deleted + "]";
+    }
+}
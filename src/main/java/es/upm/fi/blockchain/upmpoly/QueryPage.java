@@ -0,0 +1,68 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.List;
+import java.util.Objects;
+
+@DataType()
+public final class QueryPage<T> {
+
+    @Property()
+    private final List<T> records;
+
+    @Property()
+    private final String bookmark;
+
+    @Property()
+    private final int fetchedRecordsCount;
+
+    public List<T> getRecords() {
+        return records;
+    }
+
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public int getFetchedRecordsCount() {
+        return fetchedRecordsCount;
+    }
+
+    public QueryPage(@JsonProperty("records") final List<T> records, @JsonProperty("bookmark") final String bookmark,
+                     @JsonProperty("fetchedRecordsCount") final int fetchedRecordsCount) {
+        this.records = records;
+        this.bookmark = bookmark;
+        this.fetchedRecordsCount = fetchedRecordsCount;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        QueryPage<?> other = (QueryPage<?>) obj;
+
+        return Objects.equals(getRecords(), other.getRecords())
+                && Objects.equals(getBookmark(), other.getBookmark())
+                && getFetchedRecordsCount() == other.getFetchedRecordsCount();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getRecords(), getBookmark(), getFetchedRecordsCount());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [records=" + records + ", bookmark="
+                + bookmark + ", fetchedRecordsCount=" + fetchedRecordsCount + "]";
+    }
+}
@@ -0,0 +1,275 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the JSON array returned by a listing query, one record at a time, into a growable byte buffer.
+ *
+ * Every record is encoded as soon as the scan reaches it, so a listing never
+ * holds a list of decoded records next to its response: its memory is the size
+ * of the response. The output is the same as the Genson serialization of the
+ * list of records.
+ *
+ * Writers are reused by every query run on a thread. The buffer only grows, a
+ * buffer grown beyond {@link #MAX_RETAINED_BYTES} is dropped once the response
+ * is taken. A writer serves one query at a time and is not thread safe.
+ *
+ * A writer may also hold a chunk of records, written apart by another thread
+ * and appended to the response with {@link #records(ResponseWriter)}.
+ */
+final class ResponseWriter {
+
+    static final int INITIAL_BYTES = 4096;
+
+    static final int MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<ResponseWriter> WRITERS = ThreadLocal.withInitial(ResponseWriter::new);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+
+    private int length;
+
+    private boolean first;
+
+    ResponseWriter() {
+        this(INITIAL_BYTES);
+    }
+
+    /**
+     * @param initialBytes the initial size of the buffer
+     */
+    ResponseWriter(final int initialBytes) {
+        buffer = new byte[initialBytes];
+        first = true;
+    }
+
+    /**
+     * @return the empty writer of the calling thread, positioned before an array
+     */
+    static ResponseWriter get() {
+        ResponseWriter writer = WRITERS.get();
+        writer.length = 0;
+        writer.first = true;
+        return writer;
+    }
+
+    ResponseWriter beginArray() {
+        append('[');
+        first = true;
+        return this;
+    }
+
+    ResponseWriter endArray() {
+        append(']');
+        return this;
+    }
+
+    /**
+     * @param value the string to add to the array
+     * @return this writer
+     */
+    ResponseWriter string(final String value) {
+        separate();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * @param reader a reader positioned on the player to add to the array
+     * @return this writer
+     */
+    ResponseWriter player(final AssetReader reader) {
+        separate();
+        writeName("{\"credit\":");
+        writeLong(reader.playerCredit());
+        writeName(",\"isEliminated\":");
+        append(reader.playerIsEliminated() ? TRUE : FALSE);
+        writeName(",\"name\":");
+        writeString(reader.playerName());
+        writeName(",\"playerID\":");
+        writeString(reader.playerId());
+        append('}');
+        return this;
+    }
+
+    /**
+     * @param faculty the faculty to add to the array
+     * @return this writer
+     */
+    ResponseWriter faculty(final Faculty faculty) {
+        separate();
+        writeName("{\"facultyID\":");
+        writeString(faculty.getFacultyID());
+        writeName(",\"name\":");
+        writeString(faculty.getName());
+        writeName(",\"owner\":");
+        writeString(faculty.getOwner());
+        writeName(",\"rentalFee\":");
+        writeLong(faculty.getRentalFee());
+        writeName(",\"salePrice\":");
+        writeLong(faculty.getSalePrice());
+        append('}');
+        return this;
+    }
+
+    /**
+     * @param chunk a writer holding records written outside of an array
+     * @return this writer
+     */
+    ResponseWriter records(final ResponseWriter chunk) {
+        if (chunk.length > 0) {
+            separate();
+            append(chunk.buffer, chunk.length);
+        }
+        return this;
+    }
+
+    /**
+     * @return the response written so far, the writer is empty afterwards
+     */
+    String finish() {
+        String response = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        length = 0;
+        if (buffer.length > MAX_RETAINED_BYTES) {
+            buffer = new byte[INITIAL_BYTES];
+        }
+        return response;
+    }
+
+    private void separate() {
+        if (!first) {
+            append(',');
+        }
+        first = false;
+    }
+
+    private void writeName(final String ascii) {
+        ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[length++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void writeLong(final long value) {
+        if (value == Long.MIN_VALUE) {
+            writeName(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        long rest = value;
+        if (rest < 0) {
+            buffer[length++] = '-';
+            rest = -rest;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    /**
+     * Writes a string as UTF-8, escaped like Genson: quote, backslash, control
+     * characters and the line and paragraph separators.
+     */
+    private void writeString(final String value) {
+        if (value == null) {
+            append(NULL);
+            return;
+        }
+
+        // at most 6 bytes per char, for an escaped control character
+        ensure(2 + 6 * value.length());
+        buffer[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer[length++] = '\\';
+                buffer[length++] = (byte) c;
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                writeEscape(c);
+            } else if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is replaced, as String.getBytes does
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    private void writeEscape(final char c) {
+        buffer[length++] = '\\';
+        switch (c) {
+            case '\b':
+                buffer[length++] = 'b';
+                break;
+            case '\t':
+                buffer[length++] = 't';
+                break;
+            case '\n':
+                buffer[length++] = 'n';
+                break;
+            case '\f':
+                buffer[length++] = 'f';
+                break;
+            case '\r':
+                buffer[length++] = 'r';
+                break;
+            default:
+                buffer[length++] = 'u';
+                buffer[length++] = HEX[(c >> 12) & 0xF];
+                buffer[length++] = HEX[(c >> 8) & 0xF];
+                buffer[length++] = HEX[(c >> 4) & 0xF];
+                buffer[length++] = HEX[c & 0xF];
+        }
+    }
+
+    private void append(final char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void append(final byte[] bytes) {
+        append(bytes, bytes.length);
+    }
+
+    private void append(final byte[] bytes, final int count) {
+        ensure(count);
+        System.arraycopy(bytes, 0, buffer, length, count);
+        length += count;
+    }
+
+    private void ensure(final int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
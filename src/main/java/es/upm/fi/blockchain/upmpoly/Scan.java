@@ -0,0 +1,59 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.util.Iterator;
+
+/**
+ * Results of a state scan that are closed by a try-with-resources block.
+ *
+ * The peer keeps an open query iterator for every scan until it is closed or
+ * the transaction ends. Closing the scan as soon as the loop over it is left,
+ * also when the loop breaks early or throws, frees the iterator at once:
+ *
+ * <pre>
+ * try (Scan&lt;KeyValue&gt; results = Scan.of(stub.getStateByPartialCompositeKey(key))) {
+ *     for (KeyValue result : results) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * Plain and paginated scans are both wrapped, the paginated one stays at hand
+ * for its metadata.
+ */
+final class Scan<T> implements Iterable<T>, AutoCloseable {
+
+    private final Iterable<T> results;
+
+    private final AutoCloseable closeable;
+
+    private Scan(final Iterable<T> results, final AutoCloseable closeable) {
+        this.results = results;
+        this.closeable = closeable;
+    }
+
+    /**
+     * @param results the query iterator returned by the stub
+     * @return the scan of the iterator
+     */
+    static <T, I extends Iterable<T> & AutoCloseable> Scan<T> of(final I results) {
+        return new Scan<T>(results, results);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return results.iterator();
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeable.close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ChaincodeException("Could not close the state scan", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Walks a scan whose second key attribute is an asset id alongside a scan of the assets, in the same order.
+ *
+ * Composite keys sort by the UTF-8 bytes of their attributes, so the credit
+ * deltas or catalog entries of the assets come in the order of the assets
+ * themselves, and both scans are joined holding a single entry.
+ */
+public final class ScanJoin {
+
+    private final ChaincodeStub stub;
+
+    private final Iterator<KeyValue> results;
+
+    private KeyValue current;
+
+    private byte[] currentId;
+
+    /**
+     * @param stub the stub the scan was run on
+     * @param results the scan to join, grouped by asset id
+     */
+    public ScanJoin(final ChaincodeStub stub, final Iterable<KeyValue> results) {
+        this.stub = stub;
+        this.results = results.iterator();
+    }
+
+    /**
+     * @param assetId the id of the asset, never lower than the id of the previous call
+     * @return the next entry of the asset, null once it has no more
+     */
+    public KeyValue next(final String assetId) {
+        byte[] id = assetId.getBytes(StandardCharsets.UTF_8);
+        while (current == null || compareIds(currentId, id) < 0) {
+            if (!results.hasNext()) {
+                return null;
+            }
+            current = results.next();
+            currentId = stub.splitCompositeKey(current.getKey()).getAttributes().get(1).getBytes(StandardCharsets.UTF_8);
+        }
+        if (compareIds(currentId, id) != 0) {
+            return null;
+        }
+
+        KeyValue entry = current;
+        current = null;
+        return entry;
+    }
+
+    /**
+     * Orders ids by their UTF-8 bytes, unsigned, which is the order of the peer's keys.
+     */
+    private static int compareIds(final byte[] first, final byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+}
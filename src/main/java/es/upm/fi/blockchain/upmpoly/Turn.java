@@ -0,0 +1,58 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.List;
+import java.util.Objects;
+
+@DataType()
+public final class Turn {
+
+    @Property()
+    private final String function;
+
+    @Property()
+    private final List<String> args;
+
+    public String getFunction() {
+        return function;
+    }
+
+    public List<String> getArgs() {
+        return args;
+    }
+
+    public Turn(@JsonProperty("function") final String function, @JsonProperty("args") final List<String> args) {
+        this.function = function;
+        this.args = args;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        Turn other = (Turn) obj;
+
+        return Objects.equals(getFunction(), other.getFunction())
+                && Objects.equals(getArgs(), other.getArgs());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getFunction(), getArgs());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [function=" + function + ", args="
+                + args + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public final class TurnResult {
+
+    @Property()
+    private final String function;
+
+    @Property()
+    private final boolean success;
+
+    @Property()
+    private final String error;
+
+    @Property()
+    private final String message;
+
+    public String getFunction() {
+        return function;
+    }
+
+    public boolean getSuccess() {
+        return success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public TurnResult(@JsonProperty("function") final String function, @JsonProperty("success") final boolean success,
+                      @JsonProperty("error") final String error, @JsonProperty("message") final String message) {
+        this.function = function;
+        this.success = success;
+        this.error = error;
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        TurnResult other = (TurnResult) obj;
+
+        return Objects.deepEquals(
+                new String[] {getFunction(), getError(), getMessage()},
+                new String[] {other.getFunction(), other.getError(), other.getMessage()})
+                && getSuccess() == other.getSuccess();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getFunction(), getSuccess(), getError(), getMessage());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [function=" + function + ", success="
+                + success + ", error=" + error + ", message=" + message + "]";
+    }
+}
@@ -1,6 +1,8 @@
 package es.upm.fi.blockchain.upmpoly;
 
 import com.owlike.genson.Genson;
+import com.owlike.genson.JsonBindingException;
+import com.owlike.genson.stream.JsonStreamException;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
 import org.hyperledger.fabric.contract.annotation.Contact;
@@ -11,11 +13,20 @@ import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
-import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Contract(
         name = "upmpoly",
@@ -33,8 +44,28 @@ import java.util.List;
 @Default
 public final class UpmPoly implements ContractInterface {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_LANDHOLDERS = 10;
+
+    private static final String CREDIT_MODEL_ENV = "UPMPOLY_CREDIT_MODEL";
+
     private final Genson genson = new Genson();
 
+    private final AssetCodec codec = AssetCodec.fromEnvironment();
+
+    private final FacultyCatalog catalog = new FacultyCatalog(codec);
+
+    private final boolean creditDeltas;
+
+    private final BulkLimits bulkLimits;
+
+    private final Metrics metrics = Metrics.fromEnvironment();
+
+    private final ParallelScan scans = ParallelScan.fromEnvironment();
+
+    private final Log log = Log.getInstance();
+
     private enum AssetTransferErrors {
         ASSET_NOT_FOUND,
         ASSET_ALREADY_EXISTS,
@@ -43,7 +74,181 @@ public final class UpmPoly implements ContractInterface {
         WRONG_ASSET,
         FACULTY_HAS_NO_OWNER,
         PLAYER_ELIMINATED,
-        OWN_FACULTY
+        OWN_FACULTY,
+        INVALID_PAGE_SIZE,
+        INVALID_TURN,
+        INVALID_BATCH,
+        BATCH_TOO_LARGE,
+        GAME_NOT_FOUND,
+        INVALID_TIME_WINDOW,
+        INVALID_GAME_ID
+    }
+
+    public UpmPoly() {
+        this("delta".equalsIgnoreCase(System.getenv(CREDIT_MODEL_ENV)));
+    }
+
+    /**
+     * @param creditDeltas whether owners are credited with credit deltas instead of writes to their record
+     */
+    UpmPoly(final boolean creditDeltas) {
+        this(creditDeltas, BulkLimits.fromEnvironment());
+    }
+
+    /**
+     * @param creditDeltas whether owners are credited with credit deltas instead of writes to their record
+     * @param bulkLimits the size bounds of a BulkCreate transaction
+     */
+    UpmPoly(final boolean creditDeltas, final BulkLimits bulkLimits) {
+        this.creditDeltas = creditDeltas;
+        this.bulkLimits = bulkLimits;
+    }
+
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new UpmPolyContext(stub);
+    }
+
+    @Override
+    public void beforeTransaction(final Context ctx) {
+        if (ctx instanceof UpmPolyContext) {
+            ((UpmPolyContext) ctx).start();
+        }
+
+        String function = ctx.getStub().getFunction();
+        if (function != null && (function.equals("CreateGame") || function.endsWith(":CreateGame"))) {
+            return;
+        }
+        checkGameExistence(ctx, game(ctx));
+    }
+
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        if (ctx instanceof UpmPolyContext) {
+            UpmPolyContext context = (UpmPolyContext) ctx;
+            CachingStub stub = context.getCachingStub();
+            emitChanges(context);
+            stub.flush();
+            metrics.record(stub.getFunction(), context.getMeteringStub(), stub.getHits(), context.elapsedNanos());
+            if (log.isEnabled(Log.Level.DEBUG)) {
+                log.log(Log.Level.DEBUG, "State cache: %1$d hits, %2$d misses", stub.getHits(), stub.getMisses());
+                log.log(Log.Level.DEBUG, "State writes: %1$d keys, %2$d bytes", stub.getFlushedKeys(), stub.getFlushedBytes());
+            }
+        }
+    }
+
+    /**
+     * Sets the change event listing the player and faculty records and the credit deltas written by the transaction.
+     */
+    private void emitChanges(final UpmPolyContext ctx) {
+        CachingStub stub = ctx.getCachingStub();
+        List<Player> players = new ArrayList<Player>();
+        for (byte[] value : stub.getWrites(LedgerKeys.allPlayers(stub, game(ctx))).values()) {
+            Player player = codec.decodePlayer(value);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+
+        List<Faculty> faculties = new ArrayList<Faculty>();
+        for (Map.Entry<String, byte[]> write : stub.getWrites(LedgerKeys.allFaculties(stub, game(ctx))).entrySet()) {
+            String facultyId = stub.splitCompositeKey(write.getKey()).getAttributes().get(1);
+            Faculty faculty = catalog.read(stub, game(ctx), facultyId, write.getValue());
+            if (faculty != null) {
+                faculties.add(faculty);
+            }
+        }
+
+        // deltas folded into a record within the transaction were deleted again, only the pending ones are listed
+        List<CreditDelta> credits = new ArrayList<CreditDelta>();
+        for (Map.Entry<String, byte[]> write : stub.getWrites(LedgerKeys.allCreditDeltas(stub, game(ctx))).entrySet()) {
+            if (write.getValue() != null) {
+                String playerId = stub.splitCompositeKey(write.getKey()).getAttributes().get(1);
+                credits.add(new CreditDelta(playerId, Integer.parseInt(new String(write.getValue(), StandardCharsets.UTF_8))));
+            }
+        }
+
+        if (!players.isEmpty() || !faculties.isEmpty() || !credits.isEmpty()) {
+            // an empty list is left out of the payload
+            ChangeEvent event = new ChangeEvent(game(ctx), players.isEmpty() ? null : players, faculties.isEmpty() ? null : faculties,
+                    credits.isEmpty() ? null : credits);
+            stub.setEvent(ChangeEvent.NAME, event.toPayload());
+        }
+    }
+
+    /**
+     * Creates a new game, whose assets live apart from the assets of every other game.
+     *
+     * The transactions of a game name it in the gameId transient field of their
+     * proposal, transactions without it play in the default game, which always exists.
+     * An empty id, or one that can not be part of a key, is reported as INVALID_GAME_ID.
+     *
+     * @param ctx the transaction context
+     * @param gameId the id of the game
+     * @param name the name of the game
+     * @return the created game
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Game CreateGame(final Context ctx, final String gameId, final String name) {
+        ChaincodeStub stub = ctx.getStub();
+
+        checkGameId(gameId);
+
+        if (gameExists(ctx, gameId)) {
+            String errorMessage = String.format("Game %s already exists", gameId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+        }
+
+        Game game = new Game(gameId, name);
+        stub.putState(LedgerKeys.game(stub, gameId), genson.serialize(game).getBytes(StandardCharsets.UTF_8));
+
+        return game;
+    }
+
+    /**
+     * Retrieves all games created on the ledger, the default game is not listed.
+     *
+     * @param ctx the transaction context
+     * @return array of games found on the ledger
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllGames(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+
+        List<Game> queryResults = new ArrayList<Game>();
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allGames(stub)))) {
+            for (KeyValue result: results) {
+                queryResults.add(genson.deserialize(result.getStringValue(), Game.class));
+            }
+        }
+
+        final String response = genson.serialize(queryResults);
+
+        return response;
+    }
+
+    /**
+     * Creates some initial assets in a game.
+     *
+     * A game id that can not be part of a key is reported as INVALID_GAME_ID, a
+     * game that was not created as GAME_NOT_FOUND.
+     *
+     * @param ctx the transaction context
+     * @param gameId the id of the game
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void InitGameLedger(final Context ctx, final String gameId) {
+        checkGameExistence(ctx, gameId);
+
+        UpmPolyContext context = ctx instanceof UpmPolyContext ? (UpmPolyContext) ctx : new UpmPolyContext(ctx.getStub());
+        context.useGame(gameId);
+        InitLedger(context);
+
+        if (context != ctx) {
+            context.getCachingStub().flush();
+        }
     }
 
     /**
@@ -76,18 +281,14 @@ public final class UpmPoly implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Player Player(final Context ctx, final String playerId, final String name, final int money) {
-
-        ChaincodeStub stub = ctx.getStub();
-
         if (AssetExists(ctx, playerId)) {
             String errorMessage = String.format("Player %s already exists", playerId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, UpmPoly.AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
         }
 
         Player player = new Player(playerId, name, money, false);
-        String playerJSON = genson.serialize(player);
-        stub.putStringState(playerId, playerJSON);
+        putPlayer(ctx, null, player);
 
         return player;
     }
@@ -105,22 +306,74 @@ public final class UpmPoly implements ContractInterface {
      */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Faculty Faculty(final Context ctx, final String facultyId, final String name, final int salePrice, final int rentalFee) {
-
-        ChaincodeStub stub = ctx.getStub();
-
         if (AssetExists(ctx, facultyId)) {
             String errorMessage = String.format("Faculty %s already exists", facultyId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, UpmPoly.AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
         }
 
         Faculty faculty = new Faculty(facultyId, name, salePrice, rentalFee, null);
-        String playerJSON = genson.serialize(faculty);
-        stub.putStringState(facultyId, playerJSON);
+        putFaculty(ctx, null, faculty);
 
         return faculty;
     }
 
+    /**
+     * Creates the players and faculties of a batch in one transaction.
+     *
+     * The ids are checked in a single pass against each other and against the
+     * assets on the ledger before anything is written. The batch may hold at
+     * most UPMPOLY_BULK_MAX_ASSETS assets and write at most UPMPOLY_BULK_MAX_BYTES
+     * bytes, the bulkImport tool splits larger inputs into several batches.
+     *
+     * @param ctx the transaction context
+     * @param payload the {@link AssetBatch} as JSON, or as base64 encoded and optionally gzip compressed JSON
+     * @return number of created assets
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int BulkCreate(final Context ctx, final String payload) {
+        AssetBatch batch;
+        try {
+            batch = AssetBatch.decode(payload, 2 * bulkLimits.getMaxBytes());
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("Invalid asset batch: %s", e.getMessage());
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_BATCH.toString());
+        }
+
+        if (batch.size() > bulkLimits.getMaxAssets()) {
+            String errorMessage = String.format("The batch holds %1$d assets, at most %2$d are allowed", batch.size(), bulkLimits.getMaxAssets());
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.BATCH_TOO_LARGE.toString());
+        }
+
+        Set<String> ids = new HashSet<String>();
+        for (Player player : batch.getPlayers()) {
+            checkNewAsset(ctx, ids, player.getPlayerID());
+        }
+        for (Faculty faculty : batch.getFaculties()) {
+            checkNewAsset(ctx, ids, faculty.getFacultyID());
+        }
+
+        for (Player player : batch.getPlayers()) {
+            putPlayer(ctx, null, new Player(player.getPlayerID(), player.getName(), player.getCredit(), false));
+        }
+        for (Faculty faculty : batch.getFaculties()) {
+            putFaculty(ctx, null, new Faculty(faculty.getFacultyID(), faculty.getName(), faculty.getSalePrice(), faculty.getRentalFee(), null));
+        }
+
+        if (ctx instanceof UpmPolyContext) {
+            long written = ((UpmPolyContext) ctx).getCachingStub().getPendingBytes();
+            if (written > bulkLimits.getMaxBytes()) {
+                String errorMessage = String.format("The batch writes %1$d bytes, at most %2$d are allowed", written, bulkLimits.getMaxBytes());
+                log.log(Log.Level.INFO, errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.BATCH_TOO_LARGE.toString());
+            }
+        }
+
+        return batch.size();
+    }
+
     /**
      * Retrieves a player with the specified ID from the ledger.
      *
@@ -131,20 +384,29 @@ public final class UpmPoly implements ContractInterface {
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Player ReadPlayer(final Context ctx, final String playerId) {
         ChaincodeStub stub = ctx.getStub();
-        String assetJSON = stub.getStringState(playerId);
+        String key = LedgerKeys.player(stub, game(ctx), playerId);
+
+        Player cachedPlayer = cachedAsset(ctx, key, Player.class);
+        if (cachedPlayer != null) {
+            return cachedPlayer;
+        }
 
-        if (assetJSON == null || assetJSON.isEmpty()) {
+        byte[] asset = stub.getState(key);
+
+        if (asset == null || asset.length == 0) {
             String errorMessage = String.format("Player %s does not exist", playerId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        Player player = genson.deserialize(assetJSON, Player.class);
-        if (player.getPlayerID() == null) {
+        Player player = codec.decodePlayer(asset);
+        if (player == null) {
             String errorMessage = String.format("Id %s is not a player", playerId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.WRONG_ASSET.toString());
         }
+
+        cacheAsset(ctx, key, player);
         return player;
     }
 
@@ -158,22 +420,30 @@ public final class UpmPoly implements ContractInterface {
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Faculty ReadFaculty(final Context ctx, final String facultyId) {
         ChaincodeStub stub = ctx.getStub();
-        String assetJSON = stub.getStringState(facultyId);
+        String key = LedgerKeys.faculty(stub, game(ctx), facultyId);
+
+        Faculty cachedFaculty = cachedAsset(ctx, key, Faculty.class);
+        if (cachedFaculty != null) {
+            return cachedFaculty;
+        }
 
-        if (assetJSON == null || assetJSON.isEmpty()) {
+        byte[] asset = stub.getState(key);
+
+        if (asset == null || asset.length == 0) {
             String errorMessage = String.format("Faculty %s does not exist", facultyId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        Faculty faculty = genson.deserialize(assetJSON, Faculty.class);
+        Faculty faculty = catalog.read(stub, game(ctx), facultyId, asset);
 
-        if (faculty.getFacultyID() == null) {
+        if (faculty == null) {
             String errorMessage = String.format("Id %s is not a faculty", facultyId);
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.WRONG_ASSET.toString());
         }
 
+        cacheAsset(ctx, key, faculty);
         return faculty;
     }
 
@@ -190,34 +460,33 @@ public final class UpmPoly implements ContractInterface {
     public Faculty buyFaculty(final Context ctx, final String playerId, final String facultyId) {
         ChaincodeStub stub = ctx.getStub();
 
-        checkAssetExistence(ctx, playerId);
-        checkAssetExistence(ctx, facultyId);
+        checkAssetExistence(ctx, LedgerKeys.player(stub, game(ctx), playerId), playerId);
+        checkAssetExistence(ctx, LedgerKeys.faculty(stub, game(ctx), facultyId), facultyId);
 
-        Player oldPlayer = this.ReadPlayer(ctx, playerId);
+        Player storedPlayer = this.ReadPlayer(ctx, playerId);
+        Player oldPlayer = this.settleCredit(ctx, storedPlayer);
         this.checkPlayerStatus(oldPlayer);
         Faculty oldFaculty = this.ReadFaculty(ctx, facultyId);
 
         if (oldFaculty.getOwner() != null) {
             String errorMessage = String.format("Faculty %1$s already owned by player %2$s", oldFaculty.getFacultyID(), oldPlayer.getPlayerID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.FACULTY_ALREADY_OWNED.toString());
         }
 
         int accountBalance = oldPlayer.getCredit() - oldFaculty.getSalePrice();
         if (accountBalance < 0) {
             String errorMessage = String.format("Player %1$s dont have enough money to buy %2$s", oldPlayer.getPlayerID(), oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.PLAYER_BROKE.toString());
         }
 
         Player newPlayer = new Player(playerId, oldPlayer.getName(), accountBalance, false);
         Faculty newFaculty = new Faculty(facultyId, oldFaculty.getName(), oldFaculty.getSalePrice(), oldFaculty.getRentalFee(), playerId);
 
-        String newPlayerJSON = genson.serialize(newPlayer);
-        stub.putStringState(playerId, newPlayerJSON);
+        putPlayer(ctx, storedPlayer, newPlayer);
 
-        String newFacultyJSON = genson.serialize(newFaculty);
-        stub.putStringState(facultyId, newFacultyJSON);
+        putFaculty(ctx, oldFaculty, newFaculty);
 
         return newFaculty;
     }
@@ -234,22 +503,23 @@ public final class UpmPoly implements ContractInterface {
     public Player payRental(final Context ctx, final String facultyId, final String visitorId) {
         ChaincodeStub stub = ctx.getStub();
 
-        checkAssetExistence(ctx, visitorId);
-        checkAssetExistence(ctx, facultyId);
+        checkAssetExistence(ctx, LedgerKeys.player(stub, game(ctx), visitorId), visitorId);
+        checkAssetExistence(ctx, LedgerKeys.faculty(stub, game(ctx), facultyId), facultyId);
 
-        Player oldVisitor = this.ReadPlayer(ctx, visitorId);
+        Player storedVisitor = this.ReadPlayer(ctx, visitorId);
+        Player oldVisitor = this.settleCredit(ctx, storedVisitor);
         this.checkPlayerStatus(oldVisitor);
         Faculty oldFaculty = this.ReadFaculty(ctx, facultyId);
 
         if (oldFaculty.getOwner() == null) {
             String errorMessage = String.format("Faculty %s has no owner!", oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.FACULTY_HAS_NO_OWNER.toString());
         }
 
         if (oldFaculty.getOwner().equals(visitorId)) {
             String errorMessage = String.format("Faculty %s is already owned by visitor!", oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.OWN_FACULTY.toString());
         }
 
@@ -257,42 +527,38 @@ public final class UpmPoly implements ContractInterface {
         this.checkPlayerStatus(oldOwner);
 
         Player newVisitor;
-        Player newOwner;
 
         int accountBalance = oldVisitor.getCredit() - oldFaculty.getRentalFee();
         if (accountBalance < 0) {
             newVisitor = new Player(visitorId, oldVisitor.getName(), 0, true);
-            newOwner = new Player(oldOwner.getPlayerID(), oldOwner.getName(), oldOwner.getCredit() + oldVisitor.getCredit(), false);
             String message = String.format("Player %1$s dont have enough money to pay the rental fee %2$s", oldVisitor.getPlayerID(), oldFaculty.getRentalFee());
-            System.out.println(message);
+            log.log(Log.Level.INFO, message);
 
-            QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+            try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.facultiesOwnedBy(stub, game(ctx), visitorId)))) {
+                for (KeyValue result: results) {
+                    String ownedFacultyId = stub.splitCompositeKey(result.getKey()).getAttributes().get(2);
+                    Faculty faculty = catalog.read(stub, game(ctx), ownedFacultyId, stub.getState(LedgerKeys.faculty(stub, game(ctx), ownedFacultyId)));
+
+                    if (faculty == null || !visitorId.equals(faculty.getOwner())) {
+                        // the index entry outlived its faculty, drop it instead of touching the faculty
+                        stub.delState(result.getKey());
+                        continue;
+                    }
 
-            for (KeyValue result: results) {
-                Faculty faculty = genson.deserialize(result.getStringValue(), Faculty.class);
-                if (faculty.getFacultyID() != null && faculty.getOwner() != null && faculty.getOwner().equals(visitorId)) {
                     Faculty newFaculty = new Faculty(faculty.getFacultyID(), faculty.getName(), faculty.getSalePrice(), faculty.getRentalFee(), null);
-                    String newFacultyJSON = genson.serialize(newFaculty);
-                    stub.putStringState(faculty.getFacultyID(), newFacultyJSON);
-                    System.out.println(faculty.toString());
+                    putFaculty(ctx, faculty, newFaculty);
+                    log.log(Log.Level.TRACE, "%s", faculty);
                 }
             }
 
-            String newVisitorJSON = genson.serialize(newVisitor);
-            stub.putStringState(visitorId, newVisitorJSON);
-
-            String newOwnerJSON = genson.serialize(newOwner);
-            stub.putStringState(oldOwner.getPlayerID(), newOwnerJSON);
+            putPlayer(ctx, storedVisitor, newVisitor);
+            creditPlayer(ctx, oldOwner, oldVisitor.getCredit());
 
         } else {
             newVisitor = new Player(visitorId, oldVisitor.getName(), accountBalance, false);
-            newOwner = new Player(oldOwner.getPlayerID(), oldOwner.getName(), oldOwner.getCredit() + oldFaculty.getRentalFee(), false);
 
-            String newVisitorJSON = genson.serialize(newVisitor);
-            stub.putStringState(visitorId, newVisitorJSON);
-
-            String newOwnerJSON = genson.serialize(newOwner);
-            stub.putStringState(oldOwner.getPlayerID(), newOwnerJSON);
+            putPlayer(ctx, storedVisitor, newVisitor);
+            creditPlayer(ctx, oldOwner, oldFaculty.getRentalFee());
         }
 
         return newVisitor;
@@ -311,22 +577,23 @@ public final class UpmPoly implements ContractInterface {
     public Faculty tradeFaculty(final Context ctx, final String facultyId, final String buyerId, final int price) {
         ChaincodeStub stub = ctx.getStub();
 
-        checkAssetExistence(ctx, buyerId);
-        checkAssetExistence(ctx, facultyId);
+        checkAssetExistence(ctx, LedgerKeys.player(stub, game(ctx), buyerId), buyerId);
+        checkAssetExistence(ctx, LedgerKeys.faculty(stub, game(ctx), facultyId), facultyId);
 
-        Player oldBuyer = this.ReadPlayer(ctx, buyerId);
+        Player storedBuyer = this.ReadPlayer(ctx, buyerId);
+        Player oldBuyer = this.settleCredit(ctx, storedBuyer);
         this.checkPlayerStatus(oldBuyer);
         Faculty oldFaculty = this.ReadFaculty(ctx, facultyId);
 
         if (oldFaculty.getOwner() == null) {
             String errorMessage = String.format("Faculty %s has no owner!", oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.FACULTY_HAS_NO_OWNER.toString());
         }
 
         if (oldFaculty.getOwner().equals(buyerId)) {
             String errorMessage = String.format("Faculty %s already owned by buyer!", oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.OWN_FACULTY.toString());
         }
 
@@ -336,27 +603,110 @@ public final class UpmPoly implements ContractInterface {
         int accountBalance = oldBuyer.getCredit() - price;
         if (accountBalance < 0) {
             String errorMessage = String.format("Player %1$s dont have enough money to trade for %2$s", oldBuyer.getPlayerID(), oldFaculty.getFacultyID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.PLAYER_BROKE.toString());
         }
 
         Player newBuyer = new Player(buyerId, oldBuyer.getName(), accountBalance, false);
-        Player newOwner = new Player(oldOwner.getPlayerID(), oldOwner.getName(), oldOwner.getCredit() + price, false);
         Faculty newFaculty = new Faculty(facultyId, oldFaculty.getName(), oldFaculty.getSalePrice(),
                 oldFaculty.getRentalFee(), buyerId);
 
-        String newBuyerJSON = genson.serialize(newBuyer);
-        stub.putStringState(buyerId, newBuyerJSON);
-
-        String newOwnerJSON = genson.serialize(newOwner);
-        stub.putStringState(oldOwner.getPlayerID(), newOwnerJSON);
+        putPlayer(ctx, storedBuyer, newBuyer);
+        creditPlayer(ctx, oldOwner, price);
 
-        String newFacultyJSON = genson.serialize(newFaculty);
-        stub.putStringState(facultyId, newFacultyJSON);
+        putFaculty(ctx, oldFaculty, newFaculty);
 
         return newFaculty;
     }
 
+    /**
+     *
+     * plays an ordered list of moves in a single transaction
+     *
+     * Every move is checked against the state left by the moves before it. A move
+     * that breaks a rule is reported with its error code and leaves no trace, the
+     * remaining moves are still played; a null move, a null argument or an id the
+     * ledger can not key is reported as INVALID_TURN. Each touched key is written
+     * once at the end. Turns that are not a JSON array of moves fail the whole
+     * transaction with INVALID_TURN.
+     *
+     * @param ctx the transaction context
+     * @param turns JSON array of moves, e.g. [{"function":"buyFaculty","args":["player1","faculty1"]}]
+     * @return JSON array with the outcome of every move, in the order of the moves
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String processTurns(final Context ctx, final String turns) {
+        Turn[] moves;
+        try {
+            moves = turns == null ? null : genson.deserialize(turns, Turn[].class);
+        } catch (JsonBindingException | JsonStreamException e) {
+            String errorMessage = String.format("Turns are not a JSON array of moves: %s", e.getMessage());
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_TURN.toString());
+        }
+        if (moves == null) {
+            moves = new Turn[0];
+        }
+
+        UpmPolyContext overlay = ctx instanceof UpmPolyContext ? (UpmPolyContext) ctx : new UpmPolyContext(ctx.getStub());
+        CachingStub stub = overlay.getCachingStub();
+
+        List<TurnResult> results = new ArrayList<TurnResult>();
+
+        for (Turn move : moves) {
+            stub.beginSavepoint();
+            try {
+                playTurn(overlay, move);
+                stub.releaseSavepoint();
+                results.add(new TurnResult(move.getFunction(), true, null, null));
+            } catch (ChaincodeException e) {
+                stub.rollbackSavepoint();
+                String error = e.getPayload() == null ? null : new String(e.getPayload(), StandardCharsets.UTF_8);
+                results.add(new TurnResult(move == null ? null : move.getFunction(), false, error, e.getMessage()));
+            }
+        }
+
+        if (overlay != ctx) {
+            stub.flush();
+        }
+
+        return genson.serialize(results);
+    }
+
+    /**
+     *
+     * reports the state traffic and latency of every transaction function run by this peer
+     *
+     * @param ctx the transaction context
+     * @return JSON array with the totals of every function since the chaincode started
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetMetrics(final Context ctx) {
+        return metrics.toJson();
+    }
+
+    /**
+     *
+     * folds the credit deltas paid to a player back into the player record
+     *
+     * @param ctx the transaction context
+     * @param playerId id of the player
+     * @return the player with its consolidated credit
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public Player consolidateCredit(final Context ctx, final String playerId) {
+        Player player = ReadPlayer(ctx, playerId);
+        int pending = sumCreditDeltas(ctx, playerId, true);
+        if (pending == 0) {
+            return player;
+        }
+
+        Player newPlayer = new Player(playerId, player.getName(), player.getCredit() + pending, player.getIsEliminated());
+        putPlayer(ctx, player, newPlayer);
+
+        return newPlayer;
+    }
+
     /**
      * Retrieves the owner of the faculty with the specified ID from the ledger.
      *
@@ -383,7 +733,7 @@ public final class UpmPoly implements ContractInterface {
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public int getMoney(final Context ctx, final String playerId) {
         Player player = ReadPlayer(ctx, playerId);
-        return player.getCredit();
+        return player.getCredit() + sumCreditDeltas(ctx, playerId, false);
     }
 
     /**
@@ -402,6 +752,8 @@ public final class UpmPoly implements ContractInterface {
     /**
      * Retrieves all players from the ledger, which are not eliminated.
      *
+     * Only the active index is read, eliminated players cost nothing.
+     *
      * @param ctx the transaction context
      * @return array of players found on the ledger
      */
@@ -409,15 +761,66 @@ public final class UpmPoly implements ContractInterface {
     public String getPlayers(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
 
-        List<String> queryResults = new ArrayList<String>();
+        ResponseWriter writer = ResponseWriter.get().beginArray();
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.activePlayers(stub, game(ctx))))) {
+            scans.encode(results, (batch, out) -> {
+                for (KeyValue result: batch) {
+                    String name = LedgerKeys.activeName(result.getValue());
+                    out.string(name);
+                    log.log(Log.Level.TRACE, "%s", name);
+                }
+            }, writer);
+        }
+
+        final String response = writer.endArray().finish();
+
+        return response;
+    }
+
+    /**
+     * Retrieves the number of players not eliminated yet.
+     *
+     * The count is kept in a fixed number of shards, so this reads the same
+     * number of keys whatever the number of players.
+     *
+     * @param ctx the transaction context
+     * @return the number of active players
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public int GetActivePlayerCount(final Context ctx) {
+        int count = 0;
+        for (int shard = 0; shard < LedgerKeys.COUNTER_SHARDS; shard++) {
+            count += readCount(ctx, LedgerKeys.activePlayerCount(ctx.getStub(), game(ctx), shard));
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the richest players not eliminated yet, richest first.
+     *
+     * Reads only the first n entries of the leaderboard. With the delta credit
+     * model, payments received since the last debit or consolidation of a player
+     * are not ranked yet.
+     *
+     * @param ctx the transaction context
+     * @param n the number of players to return, at most 1000
+     * @return array of the richest players
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetTopPlayers(final Context ctx, final int n) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(n);
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        List<Player> queryResults = new ArrayList<Player>();
 
-        for (KeyValue result: results) {
-            Player player = genson.deserialize(result.getStringValue(), Player.class);
-            if (player.getPlayerID() != null && !player.getIsEliminated()) {
-                queryResults.add(player.getName());
-                System.out.println(player.toString());
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.leaderboard(stub, game(ctx))))) {
+            for (KeyValue result: results) {
+                CompositeKey rank = stub.splitCompositeKey(result.getKey());
+                queryResults.add(new Player(rank.getAttributes().get(2), LedgerKeys.activeName(result.getValue()), LedgerKeys.rankedCredit(rank), false));
+                if (queryResults.size() == n) {
+                    break;
+                }
             }
         }
 
@@ -426,6 +829,74 @@ public final class UpmPoly implements ContractInterface {
         return response;
     }
 
+    /**
+     * Retrieves the aggregates of the game shown on a dashboard.
+     *
+     * Each namespace of the game is scanned at most once and no record is kept,
+     * so the memory used does not grow with the game. The players give the counts
+     * and the total credit. The leaderboard is sorted by credit and is read up to
+     * its middle for the median credit of the active players. The faculties give
+     * the owned and unowned counts, and the owner index, grouped by owner, gives
+     * the rental income and the largest landholders.
+     *
+     * The total credit includes the pending credit deltas, as getMoney does: the
+     * deltas sort by player like the players, so their scan is walked side by side
+     * with the scan of the players. The median is read off the leaderboard, which
+     * ranks the recorded credits; with the delta credit model it leaves out the
+     * payments not consolidated yet. An exact median of the credits with their
+     * deltas would need every credit at once, which breaks the bound on memory.
+     *
+     * @param ctx the transaction context
+     * @return the summary of the game
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetGameSummary(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+
+        GameAggregator aggregator = new GameAggregator(MAX_LANDHOLDERS);
+        AssetReader reader = new AssetReader(codec);
+
+        try (Scan<KeyValue> players = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allPlayers(stub, game(ctx))));
+                Scan<KeyValue> deltas = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allCreditDeltas(stub, game(ctx))))) {
+            ScanJoin pending = new ScanJoin(stub, deltas);
+            for (KeyValue result: players) {
+                if (reader.readPlayer(result.getValue())) {
+                    int credit = reader.playerCredit();
+                    for (KeyValue delta = pending.next(reader.playerId()); delta != null; delta = pending.next(reader.playerId())) {
+                        credit += Integer.parseInt(delta.getStringValue());
+                    }
+                    aggregator.addPlayer(credit, reader.playerIsEliminated());
+                }
+            }
+        }
+
+        aggregator.setMedianCredit(medianCredit(ctx, aggregator.getActivePlayers()));
+
+        try (Scan<KeyValue> faculties = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allFaculties(stub, game(ctx))))) {
+            for (KeyValue result: faculties) {
+                if (AssetCodec.isOwnership(result.getValue())) {
+                    aggregator.addFaculty(AssetCodec.decodeOwner(result.getValue()) != null);
+                } else if (reader.readFaculty(result.getValue())) {
+                    aggregator.addFaculty(reader.facultyOwner() != null);
+                }
+            }
+        }
+
+        try (Scan<KeyValue> owned = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allOwnedFaculties(stub, game(ctx))))) {
+            for (KeyValue result: owned) {
+                List<String> attributes = stub.splitCompositeKey(result.getKey()).getAttributes();
+                Faculty entry = catalog.get(stub, game(ctx), attributes.get(2));
+                if (entry != null) {
+                    aggregator.addOwnedFaculty(attributes.get(1), entry.getRentalFee());
+                }
+            }
+        }
+
+        final String response = genson.serialize(new GameSummary(game(ctx), aggregator));
+
+        return response;
+    }
+
     /**
      * Checks the existence of the asset on the ledger
      *
@@ -436,9 +907,8 @@ public final class UpmPoly implements ContractInterface {
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean AssetExists(final Context ctx, final String number) {
         ChaincodeStub stub = ctx.getStub();
-        String assetJSON = stub.getStringState(number);
 
-        return (assetJSON != null && !assetJSON.isEmpty());
+        return stateExists(ctx, LedgerKeys.player(stub, game(ctx), number)) || stateExists(ctx, LedgerKeys.faculty(stub, game(ctx), number));
     }
 
     /**
@@ -451,19 +921,21 @@ public final class UpmPoly implements ContractInterface {
     public String GetAllPlayers(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
 
-        List<Player> queryResults = new ArrayList<Player>();
-
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        ResponseWriter writer = ResponseWriter.get().beginArray();
 
-        for (KeyValue result: results) {
-            Player player = genson.deserialize(result.getStringValue(), Player.class);
-            if (player.getPlayerID() != null) {
-                queryResults.add(player);
-                System.out.println(player.toString());
-            }
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allPlayers(stub, game(ctx))))) {
+            scans.encode(results, (batch, out) -> {
+                AssetReader reader = new AssetReader(codec);
+                for (KeyValue result: batch) {
+                    if (reader.readPlayer(result.getValue())) {
+                        out.player(reader);
+                        log.log(Log.Level.TRACE, "%s", reader.playerId());
+                    }
+                }
+            }, writer);
         }
 
-        final String response = genson.serialize(queryResults);
+        final String response = writer.endArray().finish();
 
         return response;
     }
@@ -478,38 +950,843 @@ public final class UpmPoly implements ContractInterface {
     public String GetAllFaculties(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
 
-        List<Faculty> queryResults = new ArrayList<Faculty>();
+        ResponseWriter writer = ResponseWriter.get().beginArray();
+
+        try (FacultyCatalog.Join join = catalog.join(stub, game(ctx));
+                Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allFaculties(stub, game(ctx))))) {
+            scans.encode(results, result -> {
+                String facultyId = stub.splitCompositeKey(result.getKey()).getAttributes().get(1);
+                return join.read(facultyId, result.getValue());
+            }, (batch, out) -> {
+                for (Faculty faculty: batch) {
+                    out.faculty(faculty);
+                    log.log(Log.Level.TRACE, "%s", faculty);
+                }
+            }, writer);
+        }
+
+        final String response = writer.endArray().finish();
+
+        return response;
+    }
+
+    /**
+     * Retrieves all faculties owned by a player from the ledger.
+     *
+     * @param ctx the transaction context
+     * @param ownerId the ID of the owning player
+     * @return array of faculties owned by the player
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetFacultiesByOwner(final Context ctx, final String ownerId) {
+        ChaincodeStub stub = ctx.getStub();
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("", "");
+        ResponseWriter writer = ResponseWriter.get().beginArray();
 
-        for (KeyValue result: results) {
-            Faculty faculty = genson.deserialize(result.getStringValue(), Faculty.class);
-            if (faculty.getFacultyID() != null) {
-                queryResults.add(faculty);
-                System.out.println(faculty.toString());
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.facultiesOwnedBy(stub, game(ctx), ownerId)))) {
+            for (KeyValue result: results) {
+                String facultyId = stub.splitCompositeKey(result.getKey()).getAttributes().get(2);
+                writer.faculty(this.ReadFaculty(ctx, facultyId));
             }
         }
 
-        final String response = genson.serialize(queryResults);
+        final String response = writer.endArray().finish();
 
         return response;
     }
 
     /**
+     * Retrieves one page of the players from the ledger, which are not eliminated.
      *
-     * checks if the queried asset exists
+     * @param ctx the transaction context
+     * @param pageSize the number of players to return, at most 1000
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return page with the names of the players found on the ledger
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getPlayersWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        List<String> queryResults = new ArrayList<String>();
+
+        QueryResultsIteratorWithMetadata<KeyValue> results =
+                stub.getStateByPartialCompositeKeyWithPagination(LedgerKeys.activePlayers(stub, game(ctx)), pageSize, bookmark);
+
+        try (Scan<KeyValue> page = Scan.of(results)) {
+            for (KeyValue result: page) {
+                queryResults.add(LedgerKeys.activeName(result.getValue()));
+            }
+
+            return genson.serialize(toPage(queryResults, results));
+        }
+    }
+
+    /**
+     * Retrieves one page of the players from the ledger.
      *
      * @param ctx the transaction context
-     * @param assetId id of the asset
+     * @param pageSize the number of players to return, at most 1000
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return page with the players found on the ledger
      */
-    private void checkAssetExistence(final Context ctx, final String assetId) {
-        if (!AssetExists(ctx, assetId)) {
-            String errorMessage = String.format("Asset %s does not exist", assetId);
-            System.out.println(errorMessage);
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllPlayersWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        List<Player> queryResults = new ArrayList<Player>();
+        AssetReader reader = new AssetReader(codec);
+
+        QueryResultsIteratorWithMetadata<KeyValue> results =
+                stub.getStateByPartialCompositeKeyWithPagination(LedgerKeys.allPlayers(stub, game(ctx)), pageSize, bookmark);
+
+        try (Scan<KeyValue> page = Scan.of(results)) {
+            for (KeyValue result: page) {
+                if (reader.readPlayer(result.getValue())) {
+                    queryResults.add(reader.toPlayer());
+                }
+            }
+
+            return genson.serialize(toPage(queryResults, results));
+        }
+    }
+
+    /**
+     * Retrieves one page of the faculties from the ledger.
+     *
+     * @param ctx the transaction context
+     * @param pageSize the number of faculties to return, at most 1000
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @return page with the faculties found on the ledger
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllFacultiesWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        List<Faculty> queryResults = new ArrayList<Faculty>();
+
+        QueryResultsIteratorWithMetadata<KeyValue> results =
+                stub.getStateByPartialCompositeKeyWithPagination(LedgerKeys.allFaculties(stub, game(ctx)), pageSize, bookmark);
+
+        try (Scan<KeyValue> page = Scan.of(results)) {
+            for (KeyValue result: page) {
+                String facultyId = stub.splitCompositeKey(result.getKey()).getAttributes().get(1);
+                Faculty faculty = catalog.read(stub, game(ctx), facultyId, result.getValue());
+                if (faculty != null) {
+                    queryResults.add(faculty);
+                }
+            }
+
+            return genson.serialize(toPage(queryResults, results));
+        }
+    }
+
+    /**
+     * Retrieves one page of the changes of a player, newest first.
+     *
+     * Every write of the player record is reported with the credit it left and
+     * the credit it added or took, computed against the write before it. With
+     * the delta credit model the payments to a player show once they are
+     * consolidated into its record.
+     *
+     * @param ctx the transaction context
+     * @param playerId the id of the player
+     * @param pageSize the number of changes to return, at most 1000
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @param from the earliest time of the changes, an ISO-8601 instant, empty for no limit
+     * @param to the time the changes are before, an ISO-8601 instant, empty for no limit
+     * @return page with the changes of the player, empty if the player never existed
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetPlayerHistory(final Context ctx, final String playerId, final int pageSize, final String bookmark,
+            final String from, final String to) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        AssetHistory<Player, PlayerChange> history = new AssetHistory<Player, PlayerChange>(codec::decodePlayer,
+                (write, player, previous) -> {
+                    int credit = player == null ? 0 : player.getCredit();
+                    int previousCredit = previous == null ? 0 : previous.getCredit();
+                    return new PlayerChange(write.getTxId(), AssetHistory.timestamp(write), credit, credit - previousCredit,
+                            player != null && player.getIsEliminated(), write.isDeleted());
+                },
+                instant(from), instant(to));
+
+        try (Scan<KeyModification> writes = Scan.of(stub.getHistoryForKey(LedgerKeys.player(stub, game(ctx), playerId)))) {
+            return genson.serialize(history.page(writes, pageSize, bookmark));
+        }
+    }
+
+    /**
+     * Retrieves one page of the changes of owner of a faculty, newest first.
+     *
+     * @param ctx the transaction context
+     * @param facultyId the id of the faculty
+     * @param pageSize the number of changes to return, at most 1000
+     * @param bookmark the bookmark returned with the previous page, empty for the first page
+     * @param from the earliest time of the changes, an ISO-8601 instant, empty for no limit
+     * @param to the time the changes are before, an ISO-8601 instant, empty for no limit
+     * @return page with the changes of the faculty, empty if the faculty never existed
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetFacultyHistory(final Context ctx, final String facultyId, final int pageSize, final String bookmark,
+            final String from, final String to) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        // faculties written whole before the catalog split carry their owner too
+        AssetHistory<String, FacultyChange> history = new AssetHistory<String, FacultyChange>(value -> {
+                    if (AssetCodec.isOwnership(value)) {
+                        return AssetCodec.decodeOwner(value);
+                    }
+                    Faculty faculty = codec.decodeFaculty(value);
+                    return faculty == null ? null : faculty.getOwner();
+                },
+                (write, owner, previousOwner) -> new FacultyChange(write.getTxId(), AssetHistory.timestamp(write), owner, previousOwner,
+                        write.isDeleted()),
+                instant(from), instant(to));
+
+        try (Scan<KeyModification> writes = Scan.of(stub.getHistoryForKey(LedgerKeys.faculty(stub, game(ctx), facultyId)))) {
+            return genson.serialize(history.page(writes, pageSize, bookmark));
+        }
+    }
+
+    /**
+     * Moves the players and faculties stored under plain ids, as written by the
+     * first versions of the contract, to their composite keys, moves the assets
+     * stored under composite keys without a game into the game of the
+     * transaction, splits the faculties stored whole into their catalog entry and
+     * ownership, and rebuilds the active player index and count and the leaderboard.
+     *
+     * @param ctx the transaction context
+     * @return number of migrated assets
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int MigrateLedger(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        int migrated = 0;
+
+        // composite keys are never returned by range queries, so this only sees the legacy records
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByRange("", ""))) {
+            for (KeyValue result: results) {
+                Player player = codec.decodePlayer(result.getValue());
+                if (player != null) {
+                    putPlayer(ctx, null, player);
+                    stub.delState(result.getKey());
+                    migrated++;
+                    continue;
+                }
+
+                Faculty faculty = codec.decodeFaculty(result.getValue());
+                if (faculty != null) {
+                    putFaculty(ctx, null, faculty);
+                    stub.delState(result.getKey());
+                    migrated++;
+                }
+            }
+        }
+
+        migrated += moveIntoGame(ctx);
+
+        // faculties written whole before the catalog split are split in place
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allFaculties(stub, game(ctx))))) {
+            for (KeyValue result: results) {
+                if (AssetCodec.isOwnership(result.getValue())) {
+                    continue;
+                }
+
+                Faculty faculty = codec.decodeFaculty(result.getValue());
+                if (faculty != null) {
+                    putFaculty(ctx, faculty, faculty);
+                    migrated++;
+                }
+            }
+        }
+
+        rebuildPlayerIndexes(ctx);
+
+        return migrated;
+    }
+
+    /**
+     *
+     * moves the keys written before games were introduced, whose composite key
+     * starts with the asset id instead of the game id, into the game of the
+     * transaction; the old index entries and counters are dropped, they are
+     * rebuilt by the caller
+     *
+     * @param ctx the transaction context
+     * @return number of moved assets
+     */
+    private int moveIntoGame(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        int moved = 0;
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(stub.createCompositeKey(LedgerKeys.PLAYER)))) {
+            for (KeyValue result: results) {
+                if (stub.splitCompositeKey(result.getKey()).getAttributes().size() == 1) {
+                    Player player = codec.decodePlayer(result.getValue());
+                    if (player != null) {
+                        putPlayer(ctx, null, player);
+                        moved++;
+                    }
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(stub.createCompositeKey(LedgerKeys.FACULTY)))) {
+            for (KeyValue result: results) {
+                List<String> attributes = stub.splitCompositeKey(result.getKey()).getAttributes();
+                if (attributes.size() == 1) {
+                    Faculty faculty = codec.decodeFaculty(result.getValue());
+                    if (AssetCodec.isOwnership(result.getValue())) {
+                        byte[] entry = stub.getState(stub.createCompositeKey(LedgerKeys.CATALOG, attributes.get(0)).toString());
+                        faculty = FacultyCatalog.withOwner(codec.decodeFaculty(entry), AssetCodec.decodeOwner(result.getValue()));
+                    }
+                    if (faculty != null) {
+                        putFaculty(ctx, null, faculty);
+                        moved++;
+                    }
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(stub.createCompositeKey(LedgerKeys.CREDIT_DELTA)))) {
+            for (KeyValue result: results) {
+                List<String> attributes = stub.splitCompositeKey(result.getKey()).getAttributes();
+                if (attributes.size() == 3) {
+                    String key = LedgerKeys.creditDelta(stub, game(ctx), attributes.get(0), attributes.get(1), Integer.parseInt(attributes.get(2)));
+                    stub.putState(key, result.getValue());
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        dropUngamedKeys(ctx, LedgerKeys.CATALOG, 1);
+        dropUngamedKeys(ctx, LedgerKeys.OWNER_INDEX, 2);
+        dropUngamedKeys(ctx, LedgerKeys.ACTIVE_INDEX, 1);
+        dropUngamedKeys(ctx, LedgerKeys.RANK_INDEX, 2);
+        dropUngamedKeys(ctx, LedgerKeys.COUNTER, 2);
+
+        return moved;
+    }
+
+    /**
+     *
+     * deletes the keys of a namespace written before games were introduced
+     *
+     * @param ctx the transaction context
+     * @param objectType the namespace of the keys
+     * @param attributes the number of attributes of the keys without a game
+     */
+    private void dropUngamedKeys(final Context ctx, final String objectType, final int attributes) {
+        ChaincodeStub stub = ctx.getStub();
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(stub.createCompositeKey(objectType)))) {
+            for (KeyValue result: results) {
+                if (stub.splitCompositeKey(result.getKey()).getAttributes().size() == attributes) {
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * writes a player to the ledger and keeps the active index, the active count and
+     * the leaderboard in line with it
+     *
+     * @param ctx the transaction context
+     * @param oldPlayer the player as currently stored, null if it is not stored yet
+     * @param newPlayer the player to store
+     */
+    private void putPlayer(final Context ctx, final Player oldPlayer, final Player newPlayer) {
+        ChaincodeStub stub = ctx.getStub();
+        boolean wasActive = oldPlayer != null && !oldPlayer.getIsEliminated();
+        boolean isActive = !newPlayer.getIsEliminated();
+
+        String key = LedgerKeys.player(stub, game(ctx), newPlayer.getPlayerID());
+        stub.putState(key, codec.encodePlayer(newPlayer));
+        cacheAsset(ctx, key, newPlayer);
+
+        if (wasActive && !isActive) {
+            stub.delState(LedgerKeys.activePlayer(stub, game(ctx), newPlayer.getPlayerID()));
+            addActivePlayers(ctx, newPlayer.getPlayerID(), -1);
+        }
+        if (isActive && (!wasActive || !Objects.equals(oldPlayer.getName(), newPlayer.getName()))) {
+            stub.putState(LedgerKeys.activePlayer(stub, game(ctx), newPlayer.getPlayerID()), LedgerKeys.activeEntry(newPlayer.getName()));
+        }
+        if (isActive && !wasActive) {
+            addActivePlayers(ctx, newPlayer.getPlayerID(), 1);
+        }
+
+        boolean moved = !wasActive || oldPlayer.getCredit() != newPlayer.getCredit();
+        if (wasActive && (moved || !isActive)) {
+            stub.delState(LedgerKeys.rank(stub, game(ctx), oldPlayer.getCredit(), oldPlayer.getPlayerID()));
+        }
+        if (isActive && (moved || !Objects.equals(oldPlayer.getName(), newPlayer.getName()))) {
+            stub.putState(LedgerKeys.rank(stub, game(ctx), newPlayer.getCredit(), newPlayer.getPlayerID()), LedgerKeys.activeEntry(newPlayer.getName()));
+        }
+    }
+
+    /**
+     *
+     * changes the number of active players in the counter shard of a player
+     *
+     * @param ctx the transaction context
+     * @param playerId id of the activated or eliminated player
+     * @param delta the number of players activated, negative for eliminated players
+     */
+    private void addActivePlayers(final Context ctx, final String playerId, final int delta) {
+        ChaincodeStub stub = ctx.getStub();
+        String key = LedgerKeys.activePlayerCount(stub, game(ctx), LedgerKeys.counterShard(playerId));
+        stub.putState(key, Integer.toString(readCount(ctx, key) + delta).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     *
+     * reads a counter from the ledger
+     *
+     * @param ctx the transaction context
+     * @param key the key of the counter
+     * @return the value of the counter, 0 if it was never written
+     */
+    private int readCount(final Context ctx, final String key) {
+        byte[] value = ctx.getStub().getState(key);
+        if (value == null || value.length == 0) {
+            return 0;
+        }
+        return Integer.parseInt(new String(value, StandardCharsets.UTF_8));
+    }
+
+    /**
+     *
+     * rebuilds the active index, the active count and the leaderboard from the player records
+     *
+     * @param ctx the transaction context
+     */
+    private void rebuildPlayerIndexes(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        AssetReader reader = new AssetReader(codec);
+        Set<String> active = new HashSet<String>();
+        Set<String> ranks = new HashSet<String>();
+        int[] counts = new int[LedgerKeys.COUNTER_SHARDS];
+
+        try (Scan<KeyValue> players = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.allPlayers(stub, game(ctx))))) {
+            for (KeyValue result: players) {
+                if (reader.readPlayer(result.getValue()) && !reader.playerIsEliminated()) {
+                    String rank = LedgerKeys.rank(stub, game(ctx), reader.playerCredit(), reader.playerId());
+                    active.add(reader.playerId());
+                    ranks.add(rank);
+                    counts[LedgerKeys.counterShard(reader.playerId())]++;
+                    stub.putState(LedgerKeys.activePlayer(stub, game(ctx), reader.playerId()), LedgerKeys.activeEntry(reader.playerName()));
+                    stub.putState(rank, LedgerKeys.activeEntry(reader.playerName()));
+                }
+            }
+        }
+
+        try (Scan<KeyValue> entries = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.activePlayers(stub, game(ctx))))) {
+            for (KeyValue result: entries) {
+                if (!active.contains(stub.splitCompositeKey(result.getKey()).getAttributes().get(1))) {
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        try (Scan<KeyValue> ranking = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.leaderboard(stub, game(ctx))))) {
+            for (KeyValue result: ranking) {
+                if (!ranks.contains(result.getKey())) {
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        for (int shard = 0; shard < counts.length; shard++) {
+            stub.putState(LedgerKeys.activePlayerCount(stub, game(ctx), shard), Integer.toString(counts[shard]).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     *
+     * reads the median credit of the active players off the leaderboard, which
+     * lists them richest first
+     *
+     * @param ctx the transaction context
+     * @param activePlayers the number of active players
+     * @return the median credit, the mean of the two middle credits for an even number of players
+     */
+    private double medianCredit(final Context ctx, final long activePlayers) {
+        if (activePlayers == 0) {
+            return 0;
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        long lower = (activePlayers - 1) / 2;
+        long upper = activePlayers / 2;
+        long position = 0;
+        long middle = 0;
+
+        try (Scan<KeyValue> ranking = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.leaderboard(stub, game(ctx))))) {
+            for (KeyValue result: ranking) {
+                if (position == lower || position == upper) {
+                    middle += LedgerKeys.rankedCredit(stub.splitCompositeKey(result.getKey()));
+                }
+                if (position == upper) {
+                    break;
+                }
+                position++;
+            }
+        }
+
+        return lower == upper ? middle : middle / 2.0;
+    }
+
+    /**
+     *
+     * pays an amount to a player, either by rewriting the player or, with the delta
+     * credit model, by appending a credit delta that no other transaction writes
+     *
+     * @param ctx the transaction context
+     * @param player the player as currently stored
+     * @param amount the amount to pay
+     */
+    private void creditPlayer(final Context ctx, final Player player, final int amount) {
+        if (!creditDeltas) {
+            putPlayer(ctx, player, new Player(player.getPlayerID(), player.getName(), player.getCredit() + amount, player.getIsEliminated()));
+            return;
+        }
+
+        ChaincodeStub stub = ctx.getStub();
+        int sequence = ctx instanceof UpmPolyContext ? ((UpmPolyContext) ctx).nextCreditSequence() : 0;
+        String key = LedgerKeys.creditDelta(stub, game(ctx), player.getPlayerID(), stub.getTxId(), sequence);
+
+        stub.putState(key, Integer.toString(amount).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     *
+     * folds the pending credit deltas into a player that is about to be debited, so the
+     * balance check sees everything paid to the player
+     *
+     * @param ctx the transaction context
+     * @param player the player as currently stored
+     * @return the player with its consolidated credit, to be written by the caller
+     */
+    private Player settleCredit(final Context ctx, final Player player) {
+        if (!creditDeltas) {
+            return player;
+        }
+
+        int pending = sumCreditDeltas(ctx, player.getPlayerID(), true);
+        if (pending == 0) {
+            return player;
+        }
+        return new Player(player.getPlayerID(), player.getName(), player.getCredit() + pending, player.getIsEliminated());
+    }
+
+    /**
+     *
+     * adds up the credit deltas of a player
+     *
+     * @param ctx the transaction context
+     * @param playerId id of the player
+     * @param consume whether the deltas are deleted once added
+     * @return the sum of the credit deltas
+     */
+    private int sumCreditDeltas(final Context ctx, final String playerId, final boolean consume) {
+        ChaincodeStub stub = ctx.getStub();
+        int pending = 0;
+
+        try (Scan<KeyValue> results = Scan.of(stub.getStateByPartialCompositeKey(LedgerKeys.creditDeltasOf(stub, game(ctx), playerId)))) {
+            for (KeyValue result: results) {
+                pending += Integer.parseInt(result.getStringValue());
+                if (consume) {
+                    stub.delState(result.getKey());
+                }
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     *
+     * writes the owner of a faculty to the ledger, and its catalog entry if it has
+     * none yet, and keeps the owner index in line with it
+     *
+     * @param ctx the transaction context
+     * @param oldFaculty the faculty as currently stored, null if it is not stored yet
+     * @param newFaculty the faculty to store
+     */
+    private void putFaculty(final Context ctx, final Faculty oldFaculty, final Faculty newFaculty) {
+        ChaincodeStub stub = ctx.getStub();
+        String oldOwner = oldFaculty == null ? null : oldFaculty.getOwner();
+        String newOwner = newFaculty.getOwner();
+
+        String facultyId = newFaculty.getFacultyID();
+
+        if (catalog.get(stub, game(ctx), facultyId) == null) {
+            Faculty entry = new Faculty(facultyId, newFaculty.getName(), newFaculty.getSalePrice(), newFaculty.getRentalFee(), null);
+            stub.putState(LedgerKeys.catalog(stub, game(ctx), facultyId), codec.encodeFaculty(entry));
+        }
+
+        String key = LedgerKeys.faculty(stub, game(ctx), facultyId);
+        stub.putState(key, codec.encodeOwnership(newOwner));
+        cacheAsset(ctx, key, newFaculty);
+
+        if (oldOwner != null && !oldOwner.equals(newOwner)) {
+            stub.delState(LedgerKeys.ownedFaculty(stub, game(ctx), oldOwner, newFaculty.getFacultyID()));
+        }
+        if (newOwner != null && !newOwner.equals(oldOwner)) {
+            stub.putState(LedgerKeys.ownedFaculty(stub, game(ctx), newOwner, newFaculty.getFacultyID()), LedgerKeys.indexEntry());
+        }
+    }
+
+    /**
+     *
+     * plays a single move of processTurns
+     *
+     * @param ctx the transaction context
+     * @param move the move to play
+     */
+    private void playTurn(final Context ctx, final Turn move) {
+        if (move == null) {
+            String errorMessage = "Move null is not a valid turn";
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_TURN.toString());
+        }
+
+        List<String> args = move.getArgs() == null ? new ArrayList<String>() : move.getArgs();
+        String function = move.getFunction() == null ? "" : move.getFunction();
+
+        boolean validIds = args.size() >= 2 && LedgerKeys.isValidId(args.get(0)) && LedgerKeys.isValidId(args.get(1));
+
+        if (validIds && function.equals("buyFaculty") && args.size() == 2) {
+            buyFaculty(ctx, args.get(0), args.get(1));
+        } else if (validIds && function.equals("payRental") && args.size() == 2) {
+            payRental(ctx, args.get(0), args.get(1));
+        } else if (validIds && function.equals("tradeFaculty") && args.size() == 3 && isNumber(args.get(2))) {
+            tradeFaculty(ctx, args.get(0), args.get(1), Integer.parseInt(args.get(2)));
+        } else {
+            String errorMessage = String.format("Move %1$s%2$s is not a valid turn", function, args);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_TURN.toString());
+        }
+    }
+
+    /**
+     *
+     * checks if a move argument holds an int
+     *
+     * @param arg the move argument
+     * @return boolean indicating if the argument can be parsed
+     */
+    private boolean isNumber(final String arg) {
+        try {
+            Integer.parseInt(arg);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     *
+     * wraps the records read from a paginated query together with the query metadata
+     *
+     * @param records the records collected from the query
+     * @param results the paginated query results
+     * @return the page to return to the client
+     */
+    private <T> QueryPage<T> toPage(final List<T> records, final QueryResultsIteratorWithMetadata<KeyValue> results) {
+        if (results.getMetadata() == null) {
+            return new QueryPage<T>(records, "", records.size());
+        }
+        return new QueryPage<T>(records, results.getMetadata().getBookmark(), results.getMetadata().getFetchedRecordsCount());
+    }
+
+    /**
+     *
+     * checks if the requested page size keeps the response bounded
+     *
+     * @param pageSize the requested page size
+     */
+    private void checkPageSize(final int pageSize) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            String errorMessage = String.format("Page size %1$d is not between 1 and %2$d", pageSize, MAX_PAGE_SIZE);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_PAGE_SIZE.toString());
+        }
+    }
+
+    /**
+     *
+     * parses a limit of the time window of a history query
+     *
+     * @param time an ISO-8601 instant, empty for no limit
+     * @return the instant, null for no limit
+     */
+    private Instant instant(final String time) {
+        if (time == null || time.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(time);
+        } catch (DateTimeParseException e) {
+            String errorMessage = String.format("Time %s is not an ISO-8601 instant", time);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_TIME_WINDOW.toString());
+        }
+    }
+
+    /**
+     *
+     * looks up an asset already decoded in this transaction
+     *
+     * @param ctx the transaction context
+     * @param key the state key of the asset
+     * @param type the expected type of the asset
+     * @return the decoded asset, null if it was not decoded yet
+     */
+    private <T> T cachedAsset(final Context ctx, final String key, final Class<T> type) {
+        if (ctx instanceof UpmPolyContext) {
+            Object asset = ((UpmPolyContext) ctx).getCachingStub().getAsset(key);
+            if (type.isInstance(asset)) {
+                return type.cast(asset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * remembers a decoded asset for the rest of this transaction
+     *
+     * @param ctx the transaction context
+     * @param key the state key of the asset
+     * @param asset the decoded asset
+     */
+    private void cacheAsset(final Context ctx, final String key, final Object asset) {
+        if (ctx instanceof UpmPolyContext) {
+            ((UpmPolyContext) ctx).getCachingStub().putAsset(key, asset);
+        }
+    }
+
+    /**
+     *
+     * checks if the state key is set on the ledger
+     *
+     * @param ctx the transaction context
+     * @param key the state key
+     * @return boolean indicating the existence of the state
+     */
+    private boolean stateExists(final Context ctx, final String key) {
+        byte[] asset = ctx.getStub().getState(key);
+
+        return (asset != null && asset.length > 0);
+    }
+
+    /**
+     *
+     * names the game the transaction plays in
+     *
+     * @param ctx the transaction context
+     * @return the id of the game
+     */
+    private static String game(final Context ctx) {
+        return ctx instanceof UpmPolyContext ? ((UpmPolyContext) ctx).getGameId() : UpmPolyContext.DEFAULT_GAME;
+    }
+
+    /**
+     *
+     * checks if a game exists, the default game always does
+     *
+     * @param ctx the transaction context
+     * @param gameId the id of the game
+     * @return boolean indicating the existence of the game
+     */
+    private boolean gameExists(final Context ctx, final String gameId) {
+        return UpmPolyContext.DEFAULT_GAME.equals(gameId) || stateExists(ctx, LedgerKeys.game(ctx.getStub(), gameId));
+    }
+
+    /**
+     *
+     * checks if the game of a transaction exists, after checking its id
+     *
+     * @param ctx the transaction context
+     * @param gameId the id of the game
+     */
+    private void checkGameExistence(final Context ctx, final String gameId) {
+        checkGameId(gameId);
+
+        if (!gameExists(ctx, gameId)) {
+            String errorMessage = String.format("Game %s does not exist", gameId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.GAME_NOT_FOUND.toString());
+        }
+    }
+
+    /**
+     *
+     * checks that a game id is not empty and can be part of a key, before any key is built from it
+     *
+     * @param gameId the id of the game
+     */
+    private void checkGameId(final String gameId) {
+        if (gameId == null || gameId.isEmpty() || !LedgerKeys.isValidId(gameId)) {
+            String errorMessage = String.format("Game id %s is not valid", gameId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_GAME_ID.toString());
+        }
+    }
+
+    /**
+     *
+     * checks if the queried asset exists
+     *
+     * @param ctx the transaction context
+     * @param key the state key of the asset
+     * @param assetId id of the asset
+     */
+    private void checkAssetExistence(final Context ctx, final String key, final String assetId) {
+        if (!stateExists(ctx, key)) {
+            String errorMessage = String.format("Asset %s does not exist", assetId);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
     }
 
+    /**
+     *
+     * checks that the id of a new asset of a batch is not empty and can be part of
+     * a key, not yet seen in the batch and not used on the ledger
+     *
+     * @param ctx the transaction context
+     * @param seen the ids seen so far in the batch
+     * @param assetId the id of the new asset
+     */
+    private void checkNewAsset(final Context ctx, final Set<String> seen, final String assetId) {
+        if (assetId == null || assetId.isEmpty() || !LedgerKeys.isValidId(assetId)) {
+            String errorMessage = String.format("Invalid asset batch: %s is no asset id", assetId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_BATCH.toString());
+        }
+        if (!seen.add(assetId)) {
+            String errorMessage = String.format("Asset %s appears twice in the batch", assetId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+        }
+        if (AssetExists(ctx, assetId)) {
+            String errorMessage = String.format("Asset %s already exists", assetId);
+            log.log(Log.Level.INFO, errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+        }
+    }
+
     /**
      *
      * checks if a player has already been eliminated
@@ -519,7 +1796,7 @@ public final class UpmPoly implements ContractInterface {
     private void checkPlayerStatus(final Player player) {
         if (player.getIsEliminated()) {
             String errorMessage = String.format("Player %s is already eliminated!", player.getPlayerID());
-            System.out.println(errorMessage);
+            log.log(Log.Level.INFO, errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.PLAYER_ELIMINATED.toString());
         }
     }
@@ -0,0 +1,99 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Transaction context of the upm poly contract.
+ *
+ * The stub handed out by this context is a {@link CachingStub}, so every
+ * transaction reads and writes each key from the peer at most once. The
+ * buffered writes are sent by {@link UpmPoly#afterTransaction}. Below the cache
+ * a {@link MeteringStub} counts the state traffic that reaches the peer.
+ *
+ * The game a transaction plays in is named by the {@link #GAME_ID} transient
+ * field of the proposal, the {@link #DEFAULT_GAME} if it has none.
+ */
+public final class UpmPolyContext extends Context {
+
+    public static final String GAME_ID = "gameId";
+
+    public static final String DEFAULT_GAME = "default";
+
+    private final MeteringStub meteringStub;
+
+    private int creditSequence;
+
+    private long startNanos;
+
+    private String gameId;
+
+    public UpmPolyContext(final ChaincodeStub stub) {
+        this(new MeteringStub(stub));
+    }
+
+    private UpmPolyContext(final MeteringStub stub) {
+        super(new CachingStub(stub));
+        this.meteringStub = stub;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the start of the transaction, for its latency.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the nanoseconds elapsed since the transaction started
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return the next free sequence number for the credit deltas of this transaction
+     */
+    public int nextCreditSequence() {
+        return creditSequence++;
+    }
+
+    /**
+     * @return the id of the game the transaction plays in
+     */
+    public String getGameId() {
+        if (gameId == null) {
+            Map<String, byte[]> transientMap = getStub().getTransient();
+            byte[] id = transientMap == null ? null : transientMap.get(GAME_ID);
+            gameId = id == null || id.length == 0 ? DEFAULT_GAME : new String(id, StandardCharsets.UTF_8);
+        }
+        return gameId;
+    }
+
+    /**
+     * Makes the rest of the transaction play in another game.
+     *
+     * @param id the id of the game
+     */
+    public void useGame(final String id) {
+        gameId = id;
+    }
+
+    /**
+     * @return the caching stub of the transaction
+     */
+    public CachingStub getCachingStub() {
+        return (CachingStub) getStub();
+    }
+
+    /**
+     * @return the metering stub of the transaction
+     */
+    public MeteringStub getMeteringStub() {
+        return meteringStub;
+    }
+}
@@ -0,0 +1,189 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.ValidationCode;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates batches of assets through BulkCreate, and splits large inputs with the bulkImport tool.
+ */
+public final class BulkCreateTest {
+
+    private static final BulkLimits LIMITS = new BulkLimits(4, 16 * 1024);
+
+    private BlockSimulator simulator;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(false, LIMITS), new WorldState(), 1);
+        submitValid("Player", "player1", "Ana", "1000");
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    private TxOutcome submit(final String function, final String... args) {
+        return simulator.submit(Collections.singletonList(new Proposal(function, args))).getOutcomes().get(0);
+    }
+
+    private Object submitValid(final String function, final String... args) {
+        TxOutcome outcome = submit(function, args);
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        return outcome.getResult();
+    }
+
+    private void assertRejected(final String error, final String payload) {
+        TxOutcome outcome = submit("BulkCreate", payload);
+        assertThat(outcome.getCode()).isEqualTo(ValidationCode.ENDORSEMENT_FAILURE);
+        assertThat(outcome.getError()).isEqualTo(error);
+    }
+
+    private boolean exists(final String assetId) {
+        return (Boolean) simulator.evaluate(new Proposal("AssetExists", assetId)).getResult();
+    }
+
+    private static AssetBatch batch(final List<Player> players, final List<Faculty> faculties) {
+        return new AssetBatch(players, faculties);
+    }
+
+    private static Player player(final String playerId) {
+        return new Player(playerId, "Name of " + playerId, 500, false);
+    }
+
+    private static Faculty faculty(final String facultyId) {
+        return new Faculty(facultyId, "Name of " + facultyId, 300, 50, null);
+    }
+
+    @Nested
+    class Decode {
+
+        @Test
+        public void whenBatchIsCompressed() {
+            AssetBatch batch = batch(Arrays.asList(player("player2"), player("player3")), Collections.singletonList(faculty("faculty1")));
+
+            assertThat(AssetBatch.decode(batch.encode(), Integer.MAX_VALUE)).isEqualTo(batch);
+            assertThat(submitValid("BulkCreate", batch.encode())).isEqualTo(3);
+            assertThat(simulator.evaluate(new Proposal("ReadPlayer", "player3")).getResult()).isEqualTo(player("player3"));
+            assertThat(simulator.evaluate(new Proposal("ReadFaculty", "faculty1")).getResult()).isEqualTo(faculty("faculty1"));
+        }
+
+        @Test
+        public void whenBatchIsPlainJson() {
+            AssetBatch batch = batch(Collections.singletonList(player("player2")), null);
+
+            assertThat(submitValid("BulkCreate", " " + batch.toJson() + "\n")).isEqualTo(1);
+            assertThat(exists("player2")).isTrue();
+        }
+
+        @Test
+        public void whenPayloadIsNoBatch() {
+            assertThatIllegalArgumentException().isThrownBy(() -> AssetBatch.decode(null, Integer.MAX_VALUE));
+            assertRejected("INVALID_BATCH", "");
+            assertRejected("INVALID_BATCH", "null");
+            assertRejected("INVALID_BATCH", "not base64!");
+            assertRejected("INVALID_BATCH", "{\"players\":[null]}");
+            assertRejected("INVALID_BATCH", "{\"players\":[{\"playerID\":\"player\\u0000\",\"name\":\"Eva\",\"credit\":5}]}");
+            assertRejected("INVALID_BATCH", "{\"faculties\":[{\"name\":\"Law\",\"salePrice\":5,\"rentalFee\":1}]}");
+        }
+    }
+
+    @Nested
+    class Duplicates {
+
+        @Test
+        public void whenIdAppearsTwiceInTheBatch() {
+            AssetBatch batch = batch(Collections.singletonList(player("player2")), Collections.singletonList(faculty("player2")));
+
+            assertRejected("ASSET_ALREADY_EXISTS", batch.encode());
+            assertThat(exists("player2")).isFalse();
+        }
+
+        @Test
+        public void whenIdIsOnTheLedger() {
+            AssetBatch batch = batch(Arrays.asList(player("player2"), player("player1")), null);
+
+            assertRejected("ASSET_ALREADY_EXISTS", batch.encode());
+            assertThat(exists("player2")).isFalse();
+            assertThat(simulator.evaluate(new Proposal("getMoney", "player1")).getResult()).isEqualTo(1000);
+        }
+    }
+
+    @Nested
+    class Limits {
+
+        @Test
+        public void whenBatchHoldsTooManyAssets() {
+            AssetBatch batch = batch(Arrays.asList(player("player2"), player("player3"), player("player4")),
+                    Arrays.asList(faculty("faculty1"), faculty("faculty2")));
+
+            assertRejected("BATCH_TOO_LARGE", batch.encode());
+            assertThat(exists("player2")).isFalse();
+        }
+
+        @Test
+        public void whenBatchWritesTooManyBytes() {
+            char[] name = new char[5000];
+            Arrays.fill(name, 'x');
+            AssetBatch batch = batch(Arrays.asList(new Player("player2", new String(name), 5, false),
+                    new Player("player3", new String(name), 5, false)), null);
+
+            assertRejected("BATCH_TOO_LARGE", batch.encode());
+            assertThat(exists("player2")).isFalse();
+        }
+
+        @Test
+        public void whenBatchIsAtTheLimits() {
+            AssetBatch batch = batch(Arrays.asList(player("player2"), player("player3")),
+                    Arrays.asList(faculty("faculty1"), faculty("faculty2")));
+
+            assertThat(submitValid("BulkCreate", batch.encode())).isEqualTo(LIMITS.getMaxAssets());
+        }
+    }
+
+    @Nested
+    class Split {
+
+        @Test
+        public void whenInputExceedsTheLimits() {
+            List<Player> players = new ArrayList<Player>();
+            List<Faculty> faculties = new ArrayList<Faculty>();
+            for (int i = 0; i < 25; i++) {
+                players.add(new Player("bulkPlayer" + i, i % 5 == 0 ? String.format("%3000d", i) : "Player " + i, 100, false));
+                faculties.add(faculty("bulkFaculty" + i));
+            }
+
+            List<AssetBatch> batches = new BulkImport(LIMITS).split(batch(players, faculties));
+            // the long names are cut by the byte bound, before the count bound
+            assertThat(batches.size()).isGreaterThan((players.size() + faculties.size()) / LIMITS.getMaxAssets());
+
+            List<Player> splitPlayers = new ArrayList<Player>();
+            List<Faculty> splitFaculties = new ArrayList<Faculty>();
+            for (AssetBatch batch : batches) {
+                assertThat(batch.size()).isBetween(1, LIMITS.getMaxAssets());
+                splitPlayers.addAll(batch.getPlayers());
+                splitFaculties.addAll(batch.getFaculties());
+
+                // the estimate is never below what the chaincode writes
+                assertThat(submitValid("BulkCreate", batch.encode())).isEqualTo(batch.size());
+            }
+            assertThat(splitPlayers).isEqualTo(players);
+            assertThat(splitFaculties).isEqualTo(faculties);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import es.upm.fi.blockchain.upmpoly.projection.GameProjection;
+import es.upm.fi.blockchain.upmpoly.sim.BlockResult;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Feeds the change events of a game played on the simulator with the delta
+ * credit model to a projection, and compares it with the credits getMoney reports.
+ */
+public final class ChangeEventTest {
+
+    private BlockSimulator simulator;
+
+    private GameProjection projection;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(true), new WorldState(), 1);
+        projection = new GameProjection();
+        submit(new Proposal("Player", "player1", "Ana", "1000"));
+        submit(new Proposal("Player", "player2", "Luis", "600"));
+        submit(new Proposal("Player", "player3", "Eva", "600"));
+        submit(new Proposal("Faculty", "faculty1", "ComputerScience", "600", "150"));
+        submit(new Proposal("buyFaculty", "player1", "faculty1"));
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    private ChangeEvent submit(final Proposal proposal) {
+        BlockResult block = simulator.submit(Collections.singletonList(proposal));
+        TxOutcome outcome = block.getOutcomes().get(0);
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        projection.apply(block.getBlockNumber(), outcome.getTxId(), outcome.getEvent().getEventName(), outcome.getEvent().getPayload().toByteArray());
+        return ChangeEvent.fromPayload(outcome.getEvent().getPayload().toByteArray());
+    }
+
+    private int money(final String playerId) {
+        return (Integer) simulator.evaluate(new Proposal("getMoney", playerId)).getResult();
+    }
+
+    @Test
+    public void listsTheCreditDeltasOfARent() {
+        ChangeEvent event = submit(new Proposal("payRental", "faculty1", "player2"));
+
+        assertThat(event.getPlayers()).containsExactly(new Player("player2", "Luis", 450, false));
+        assertThat(event.getCredits()).containsExactly(new CreditDelta("player1", 150));
+        assertThat(projection.getPlayer("player1").getCredit()).isEqualTo(money("player1")).isEqualTo(550);
+    }
+
+    @Test
+    public void keepsTheProjectionInLineWithGetMoney() {
+        submit(new Proposal("payRental", "faculty1", "player2"));
+        submit(new Proposal("payRental", "faculty1", "player3"));
+        submit(new Proposal("processTurns", "[{\"function\":\"payRental\",\"args\":[\"faculty1\",\"player2\"]},"
+                + "{\"function\":\"tradeFaculty\",\"args\":[\"faculty1\",\"player3\",\"200\"]}]"));
+
+        for (String playerId : Arrays.asList("player1", "player2", "player3")) {
+            assertThat(projection.getPlayer(playerId).getCredit()).as(playerId).isEqualTo(money(playerId));
+        }
+
+        // folding the deltas into the record changes nothing for the projection
+        ChangeEvent event = submit(new Proposal("consolidateCredit", "player1"));
+        assertThat(event.getCredits()).isNull();
+        assertThat(event.getPlayers()).containsExactly(projection.getPlayer("player1"));
+        assertThat(projection.getPlayer("player1").getCredit()).isEqualTo(money("player1")).isEqualTo(1000 - 600 + 3 * 150 + 200);
+    }
+}
@@ -0,0 +1,84 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.InMemoryChaincodeStub;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.RangeRead;
+import es.upm.fi.blockchain.upmpoly.sim.ValidationCode;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.hyperledger.fabric.contract.Context;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Endorses the same proposals on a peer whose catalog cache is warm and on a
+ * peer that just started, which must return the same read sets.
+ */
+public final class FacultyCatalogTest {
+
+    private final WorldState state = new WorldState();
+
+    private final UpmPoly warm = new UpmPoly(false);
+
+    @BeforeEach
+    void createAssets() {
+        try (BlockSimulator simulator = new BlockSimulator(warm, state, 1)) {
+            for (Proposal proposal : Arrays.asList(new Proposal("Player", "player1", "Ana", "2000"),
+                    new Proposal("Faculty", "faculty1", "ComputerScience", "600", "150"),
+                    new Proposal("Faculty", "faculty2", "DataScience", "500", "80"),
+                    new Proposal("buyFaculty", "player1", "faculty2"),
+                    new Proposal("GetAllFaculties"))) {
+                assertThat(simulator.submit(Collections.singletonList(proposal)).count(ValidationCode.VALID)).isEqualTo(1);
+            }
+        }
+    }
+
+    private InMemoryChaincodeStub endorse(final UpmPoly contract, final BiConsumer<UpmPoly, Context> call) {
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "tx1", "proposal", Collections.<String>emptyList());
+        Context ctx = contract.createContext(stub);
+        contract.beforeTransaction(ctx);
+        call.accept(contract, ctx);
+        contract.afterTransaction(ctx, null);
+        return stub;
+    }
+
+    private static List<String> scannedKeys(final InMemoryChaincodeStub stub) {
+        List<String> keys = new ArrayList<String>();
+        for (RangeRead read : stub.getRangeReads()) {
+            keys.addAll(read.getKeys());
+        }
+        return keys;
+    }
+
+    @Test
+    public void readsTheCatalogEntryWhateverTheCache() {
+        BiConsumer<UpmPoly, Context> buy = (contract, ctx) -> contract.buyFaculty(ctx, "player1", "faculty1");
+
+        InMemoryChaincodeStub warmPeer = endorse(warm, buy);
+        InMemoryChaincodeStub coldPeer = endorse(new UpmPoly(false), buy);
+
+        assertThat(warmPeer.getReadSet()).isEqualTo(coldPeer.getReadSet());
+        assertThat(warmPeer.getReadSet()).containsKey(LedgerKeys.catalog(warmPeer, UpmPolyContext.DEFAULT_GAME, "faculty1"));
+        assertThat(warmPeer.getWriteSet().keySet()).isEqualTo(coldPeer.getWriteSet().keySet());
+    }
+
+    @Test
+    public void scansTheCatalogWhateverTheCache() {
+        BiConsumer<UpmPoly, Context> list = (contract, ctx) -> contract.GetAllFaculties(ctx);
+
+        InMemoryChaincodeStub warmPeer = endorse(warm, list);
+        InMemoryChaincodeStub coldPeer = endorse(new UpmPoly(false), list);
+
+        assertThat(scannedKeys(warmPeer)).isEqualTo(scannedKeys(coldPeer));
+        assertThat(scannedKeys(warmPeer)).contains(LedgerKeys.catalog(warmPeer, UpmPolyContext.DEFAULT_GAME, "faculty2"));
+        assertThat(warmPeer.getReadSet()).isEqualTo(coldPeer.getReadSet());
+    }
+}
@@ -0,0 +1,73 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Summarizes a game played on the simulator with the delta credit model.
+ */
+public final class GameSummaryTest {
+
+    private BlockSimulator simulator;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(true), new WorldState(), 1);
+        submit("Player", "player1", "Ana", "1000");
+        submit("Player", "player2", "Luis", "600");
+        submit("Player", "player3", "Eva", "500");
+        submit("Faculty", "faculty1", "ComputerScience", "600", "150");
+        submit("buyFaculty", "player1", "faculty1");
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    private void submit(final String function, final String... args) {
+        TxOutcome outcome = simulator.submit(Collections.singletonList(new Proposal(function, args))).getOutcomes().get(0);
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> summary() {
+        return new Genson().deserialize((String) simulator.evaluate(new Proposal("GetGameSummary")).getResult(), Map.class);
+    }
+
+    private long money(final String playerId) {
+        return (Integer) simulator.evaluate(new Proposal("getMoney", playerId)).getResult();
+    }
+
+    @Test
+    public void whenNoCreditIsPending() {
+        Map<String, Object> summary = summary();
+
+        assertThat(((Number) summary.get("totalCredit")).longValue()).isEqualTo(400 + 600 + 500);
+        assertThat(((Number) summary.get("medianCredit")).doubleValue()).isEqualTo(500);
+    }
+
+    @Test
+    public void whenCreditDeltasArePending() {
+        submit("payRental", "faculty1", "player2");
+        submit("payRental", "faculty1", "player3");
+
+        Map<String, Object> summary = summary();
+
+        assertThat(((Number) summary.get("totalCredit")).longValue()).isEqualTo(money("player1") + money("player2") + money("player3"))
+                .isEqualTo(700 + 450 + 350);
+        // the median ranks the recorded credits: 400, 450 and 350
+        assertThat(((Number) summary.get("medianCredit")).doubleValue()).isEqualTo(400);
+    }
+}
@@ -0,0 +1,176 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the GetMetrics totals of transactions run on the simulator, and the buckets of the latency histogram.
+ */
+public final class MetricsTest {
+
+    private static final String GAME = "default";
+
+    @Nested
+    class GetMetrics {
+
+        private WorldState state;
+
+        private BlockSimulator simulator;
+
+        @BeforeEach
+        void createAssets() {
+            state = new WorldState();
+            simulator = new BlockSimulator(new UpmPoly(false), state, 1);
+            submit("Player", "player1", "Ana", "1000");
+            submit("Player", "player2", "Luis", "600");
+            submit("Faculty", "faculty1", "ComputerScience", "600", "150");
+        }
+
+        @AfterEach
+        void close() {
+            simulator.close();
+        }
+
+        private void submit(final String function, final String... args) {
+            TxOutcome outcome = simulator.submit(Collections.singletonList(new Proposal(function, args))).getOutcomes().get(0);
+            assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> metrics(final String function) {
+            String json = (String) simulator.evaluate(new Proposal("GetMetrics")).getResult();
+            for (Map<String, Object> entry : (List<Map<String, Object>>) new Genson().deserialize(json, List.class)) {
+                if (entry.get("function").equals(function)) {
+                    return entry;
+                }
+            }
+            throw new AssertionError("No metrics of " + function + " in " + json);
+        }
+
+        private long count(final Map<String, Object> entry, final String counter) {
+            return ((Number) entry.get(counter)).longValue();
+        }
+
+        private int size(final String objectType, final String... attributes) {
+            return state.get(new CompositeKey(objectType, attributes).toString()).getValue().length;
+        }
+
+        @Test
+        public void whenFacultyIsBought() {
+            int playerBefore = size("PLAYER", GAME, "player1");
+            int facultyBefore = size("FACULTY", GAME, "faculty1");
+            int catalog = size("CATALOG", GAME, "faculty1");
+
+            submit("buyFaculty", "player1", "faculty1");
+
+            Map<String, Object> entry = metrics("buyFaculty");
+            assertThat(count(entry, "transactions")).isEqualTo(1);
+            // the player, the ownership of the faculty and its catalog entry
+            assertThat(count(entry, "stateReads")).isEqualTo(3);
+            assertThat(count(entry, "bytesRead")).isEqualTo(playerBefore + facultyBefore + catalog);
+            // the player, the ownership, the owner index entry and the rank entry moved from the old credit to the new one
+            assertThat(count(entry, "stateWrites")).isEqualTo(5);
+            assertThat(count(entry, "bytesWritten")).isEqualTo(size("PLAYER", GAME, "player1") + size("FACULTY", GAME, "faculty1")
+                    + size("owner~faculty", GAME, "player1", "faculty1") + size("rank~credit~player", GAME, "2147483247", "player1"));
+            assertThat(count(entry, "scans")).isZero();
+            assertThat(count(entry, "scannedRecords")).isZero();
+
+            long max = count(entry, "latencyMax");
+            assertThat(max).isPositive();
+            assertThat(count(entry, "latencyP50")).isEqualTo(count(entry, "latencyP99")).isEqualTo(max);
+        }
+
+        @Test
+        public void whenPlayersAreScanned() {
+            submit("getPlayers");
+
+            Map<String, Object> entry = metrics("getPlayers");
+            assertThat(count(entry, "stateReads")).isZero();
+            assertThat(count(entry, "stateWrites")).isZero();
+            assertThat(count(entry, "scans")).isEqualTo(1);
+            assertThat(count(entry, "scannedRecords")).isEqualTo(2);
+            assertThat(count(entry, "bytesRead")).isEqualTo(size("active~player", GAME, "player1") + size("active~player", GAME, "player2"));
+        }
+
+        @Test
+        public void whenFunctionRunsSeveralTimes() {
+            Map<String, Object> entry = metrics("Player");
+
+            assertThat(count(entry, "transactions")).isEqualTo(2);
+            // every player writes its record, its active and rank entries and a slot of the active player counter
+            assertThat(count(entry, "stateWrites")).isEqualTo(2 * 4);
+            long bytes = 0;
+            for (String[] player : new String[][] {{"player1", "2147482647", "48"}, {"player2", "2147483047", "49"}}) {
+                bytes += size("PLAYER", GAME, player[0]) + size("active~player", GAME, player[0])
+                        + size("rank~credit~player", GAME, player[1], player[0]) + size("COUNTER", GAME, "activePlayers", player[2]);
+            }
+            assertThat(count(entry, "bytesWritten")).isEqualTo(bytes);
+            assertThat(count(entry, "latencyP50")).isLessThanOrEqualTo(count(entry, "latencyP90"));
+            assertThat(count(entry, "latencyP90")).isLessThanOrEqualTo(count(entry, "latencyP99"));
+            assertThat(count(entry, "latencyP99")).isEqualTo(count(entry, "latencyMax"));
+        }
+    }
+
+    @Nested
+    class Histogram {
+
+        @Test
+        public void whenNothingIsRecorded() {
+            LatencyHistogram histogram = new LatencyHistogram();
+
+            assertThat(histogram.getPercentile(50)).isZero();
+            assertThat(histogram.getMax()).isZero();
+        }
+
+        @Test
+        public void whenValuesAreSmall() {
+            for (long value = 0; value < 32; value++) {
+                assertThat(LatencyHistogram.bucketOf(value)).isEqualTo((int) value);
+                assertThat(LatencyHistogram.highestValueOf((int) value)).isEqualTo(value);
+            }
+        }
+
+        @Test
+        public void whenValuesAreLarge() {
+            // the range from 1024 to 2047 is cut in 32 buckets, 32 values wide
+            assertThat(LatencyHistogram.bucketOf(1024)).isEqualTo(LatencyHistogram.bucketOf(1055))
+                    .isEqualTo(LatencyHistogram.bucketOf(1056) - 1);
+            assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(1024))).isEqualTo(1055);
+
+            for (long value = 32; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+                long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+                assertThat(highest).isGreaterThanOrEqualTo(value);
+                assertThat(highest - value).isLessThan(value / 32 + 1);
+            }
+        }
+
+        @Test
+        public void whenPercentilesAreRead() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(5);
+            histogram.record(1000);
+            histogram.record(1000);
+            histogram.record(1000000);
+
+            assertThat(histogram.getPercentile(25)).isEqualTo(5);
+            // the highest value of the bucket of 1000, which spans 992 to 1007
+            assertThat(histogram.getPercentile(50)).isEqualTo(1007).isEqualTo(histogram.getPercentile(75));
+            // never above the largest recorded value
+            assertThat(histogram.getPercentile(100)).isEqualTo(histogram.getMax()).isEqualTo(1000000);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Encodes a scan of several thousand records on a pool of threads and on the scanning thread alone.
+ */
+public final class ParallelScanTest {
+
+    private static final int RECORDS = 5000;
+
+    private static final int THREADS = 4;
+
+    private static List<String> records() {
+        List<String> records = new ArrayList<String>();
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(String.format("player%05d-\u00d1and\u00fa", i));
+        }
+        return records;
+    }
+
+    /**
+     * Skips about one record in seven when it is prepared.
+     */
+    private static String encode(final ParallelScan scan, final List<String> records, final ParallelScan.BatchEncoder<String> encoder) {
+        Function<String, String> prepare = record -> record.hashCode() % 7 == 0 ? null : record;
+        ResponseWriter writer = new ResponseWriter().beginArray();
+        scan.encode(records, prepare, encoder, writer);
+        return writer.endArray().finish();
+    }
+
+    /**
+     * Skips about one record in eleven, after a random pause so that the batches finish out of order.
+     */
+    private static void encodeSlowly(final List<String> batch, final ResponseWriter out) {
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1000000));
+        for (String record : batch) {
+            if (record.hashCode() % 11 != 0) {
+                out.string(record);
+            }
+        }
+    }
+
+    @Test
+    public void whenScanSpansManyBatches() {
+        List<String> records = records();
+        assertThat(records.size()).isGreaterThan(THREADS * ParallelScan.BATCHES_PER_THREAD * ParallelScan.BATCH_SIZE);
+
+        String sequential = encode(new ParallelScan(1), records, ParallelScanTest::encodeSlowly);
+        String parallel = encode(new ParallelScan(THREADS), records, ParallelScanTest::encodeSlowly);
+
+        assertThat(parallel.getBytes(StandardCharsets.UTF_8)).isEqualTo(sequential.getBytes(StandardCharsets.UTF_8));
+
+        List<String> expected = new ArrayList<String>();
+        for (String record : records) {
+            if (record.hashCode() % 7 != 0 && record.hashCode() % 11 != 0) {
+                expected.add(record);
+            }
+        }
+        assertThat((Object) new Genson().deserialize(parallel, List.class)).isEqualTo(expected);
+    }
+
+    @Test
+    public void whenEncoderThrows() {
+        ChaincodeException failure = new ChaincodeException("cannot encode", "INVALID_BATCH");
+        List<String> records = records();
+        String failing = records.get(RECORDS - ParallelScan.BATCH_SIZE / 2);
+        assertThat(failing.hashCode() % 7).isNotZero();
+
+        assertThatThrownBy(() -> encode(new ParallelScan(THREADS), records, (batch, out) -> {
+            encodeSlowly(batch, out);
+            if (batch.contains(failing)) {
+                throw failure;
+            }
+        })).isSameAs(failure);
+    }
+}
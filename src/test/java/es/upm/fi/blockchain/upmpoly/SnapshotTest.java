@@ -0,0 +1,116 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.InMemoryChaincodeStub;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import es.upm.fi.blockchain.upmpoly.snapshot.SnapshotReader;
+import es.upm.fi.blockchain.upmpoly.snapshot.SnapshotRestore;
+import es.upm.fi.blockchain.upmpoly.snapshot.SnapshotWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Exports a game played on the simulator with the delta credit model and
+ * restores it into a fresh world state, which must answer the same queries.
+ */
+public final class SnapshotTest {
+
+    private final WorldState state = new WorldState();
+
+    private BlockSimulator simulator;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(true), state, 1);
+        submit("Player", "player1", "Ana", "1000");
+        submit("Player", "player2", "Luis", "600");
+        submit("Player", "player3", "Eva", "300");
+        submit("Faculty", "faculty1", "ComputerScience", "600", "150");
+        submit("Faculty", "faculty2", "DataScience", "200", "400");
+        submit("buyFaculty", "player1", "faculty1");
+        submit("buyFaculty", "player3", "faculty2");
+        submit("payRental", "faculty1", "player2");
+        submit("payRental", "faculty2", "player2");
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    private void submit(final String function, final String... args) {
+        TxOutcome outcome = simulator.submit(Collections.singletonList(new Proposal(function, args))).getOutcomes().get(0);
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+    }
+
+    private static Object evaluate(final BlockSimulator on, final String function, final String... args) {
+        TxOutcome outcome = on.evaluate(new Proposal(function, args));
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        return outcome.getResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> summary(final BlockSimulator on) {
+        return new Genson().deserialize((String) evaluate(on, "GetGameSummary"), Map.class);
+    }
+
+    private int export(final Path file) throws IOException {
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "export", "export", Collections.<String>emptyList());
+        return SnapshotWriter.export(stub, UpmPolyContext.DEFAULT_GAME, file);
+    }
+
+    @Test
+    public void restoresTheStateOfTheGame(@TempDir final Path directory) throws IOException {
+        Path file = directory.resolve("game.snap");
+        assertThat(export(file)).isZero();
+
+        WorldState restoredState = new WorldState();
+        assertThat(SnapshotRestore.restore(new SnapshotReader(file), restoredState, AssetCodec.fromEnvironment())).isEqualTo(5);
+
+        try (BlockSimulator restored = new BlockSimulator(new UpmPoly(true), restoredState, 1)) {
+            for (String playerId : Arrays.asList("player1", "player2", "player3")) {
+                assertThat(evaluate(restored, "getMoney", playerId)).as(playerId).isEqualTo(evaluate(simulator, "getMoney", playerId));
+            }
+            for (String function : Arrays.asList("GetAllFaculties", "GetActivePlayerCount")) {
+                assertThat(evaluate(restored, function)).as(function).isEqualTo(evaluate(simulator, function));
+            }
+
+            // the snapshot consolidates the credits, so the median of the restored game counts the pending payments
+            Map<String, Object> summary = summary(restored);
+            Map<String, Object> original = summary(simulator);
+            assertThat(summary.remove("medianCredit")).isEqualTo(500.0);
+            assertThat(original.remove("medianCredit")).isEqualTo(100.0);
+            assertThat(summary).isEqualTo(original);
+            assertThat(evaluate(restored, "GetFacultiesByOwner", "player3")).isEqualTo(evaluate(simulator, "GetFacultiesByOwner", "player3"));
+
+            // the leaderboard is rebuilt from the credits with their deltas folded in
+            assertThat((String) evaluate(restored, "GetTopPlayers", "1")).contains("\"playerID\":\"player1\"", "\"credit\":550");
+        }
+    }
+
+    @Test
+    public void countsOwnershipsWithoutACatalogEntry(@TempDir final Path directory) throws IOException {
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "setup", "setup", Collections.<String>emptyList());
+        state.put(LedgerKeys.faculty(stub, UpmPolyContext.DEFAULT_GAME, "faculty9"), AssetCodec.fromEnvironment().encodeOwnership("player1"));
+
+        Path file = directory.resolve("game.snap");
+        assertThat(export(file)).isEqualTo(1);
+
+        SnapshotReader snapshot = new SnapshotReader(file);
+        assertThat(snapshot.getFacultyCount()).isEqualTo(2);
+        assertThat(snapshot.getFaculty("faculty9")).isNull();
+    }
+}
@@ -0,0 +1,508 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.InMemoryChaincodeStub;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.ValidationCode;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plays the rules of the game through the block simulator, one transaction per block.
+ */
+public final class UpmPolyTest {
+
+    private BlockSimulator simulator;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(), new WorldState(), 1);
+        submitValid("Player", "player1", "Ana", "1000");
+        submitValid("Player", "player2", "Luis", "600");
+        submitValid("Faculty", "faculty1", "ComputerScience", "600", "150");
+        submitValid("Faculty", "faculty2", "DataScience", "500", "80");
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    private TxOutcome submit(final String function, final String... args) {
+        return simulator.submit(Collections.singletonList(new Proposal(function, args))).getOutcomes().get(0);
+    }
+
+    private Object submitValid(final String function, final String... args) {
+        TxOutcome outcome = submit(function, args);
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        return outcome.getResult();
+    }
+
+    private Object evaluate(final String function, final String... args) {
+        TxOutcome outcome = simulator.evaluate(new Proposal(function, args));
+        assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+        return outcome.getResult();
+    }
+
+    private void assertRejected(final String error, final String function, final String... args) {
+        TxOutcome outcome = submit(function, args);
+        assertThat(outcome.getCode()).isEqualTo(ValidationCode.ENDORSEMENT_FAILURE);
+        assertThat(outcome.getError()).isEqualTo(error);
+    }
+
+    private int money(final String playerId) {
+        return (Integer) evaluate("getMoney", playerId);
+    }
+
+    private String owner(final String facultyId) {
+        return ((Faculty) evaluate("ReadFaculty", facultyId)).getOwner();
+    }
+
+    @Nested
+    class BuyFaculty {
+
+        @Test
+        public void whenFacultyIsFree() {
+            Faculty faculty = (Faculty) submitValid("buyFaculty", "player1", "faculty1");
+
+            assertThat(faculty.getOwner()).isEqualTo("player1");
+            assertThat(owner("faculty1")).isEqualTo("player1");
+            assertThat(money("player1")).isEqualTo(400);
+        }
+
+        @Test
+        public void whenFacultyIsOwned() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            assertRejected("FACULTY_ALREADY_OWNED", "buyFaculty", "player2", "faculty1");
+            assertThat(owner("faculty1")).isEqualTo("player1");
+            assertThat(money("player2")).isEqualTo(600);
+        }
+
+        @Test
+        public void whenPlayerCanNotAffordIt() {
+            submitValid("buyFaculty", "player2", "faculty2");
+
+            assertRejected("PLAYER_BROKE", "buyFaculty", "player2", "faculty1");
+            assertThat(owner("faculty1")).isNull();
+            assertThat(money("player2")).isEqualTo(100);
+        }
+
+        @Test
+        public void whenPlayerDoesNotExist() {
+            assertRejected("ASSET_NOT_FOUND", "buyFaculty", "player9", "faculty1");
+        }
+    }
+
+    @Nested
+    class PayRental {
+
+        @Test
+        public void whenVisitorCanPay() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            Player visitor = (Player) submitValid("payRental", "faculty1", "player2");
+
+            assertThat(visitor.getCredit()).isEqualTo(450);
+            assertThat(money("player2")).isEqualTo(450);
+            assertThat(money("player1")).isEqualTo(550);
+        }
+
+        @Test
+        public void whenFacultyHasNoOwner() {
+            assertRejected("FACULTY_HAS_NO_OWNER", "payRental", "faculty1", "player2");
+            assertThat(money("player2")).isEqualTo(600);
+        }
+
+        @Test
+        public void whenVisitorOwnsTheFaculty() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            assertRejected("OWN_FACULTY", "payRental", "faculty1", "player1");
+            assertThat(money("player1")).isEqualTo(400);
+        }
+    }
+
+    @Nested
+    class Bankruptcy {
+
+        @BeforeEach
+        void ownBothFaculties() {
+            submitValid("buyFaculty", "player1", "faculty1");
+            submitValid("buyFaculty", "player2", "faculty2");
+        }
+
+        @Test
+        public void whenVisitorCanNotPayTheRentalFee() {
+            Player visitor = (Player) submitValid("payRental", "faculty1", "player2");
+
+            assertThat(visitor.getIsEliminated()).isTrue();
+            assertThat(visitor.getCredit()).isZero();
+            assertThat((Boolean) evaluate("isEliminated", "player2")).isTrue();
+            assertThat(money("player1")).isEqualTo(500);
+            assertThat(owner("faculty2")).isNull();
+            assertThat((Integer) evaluate("GetActivePlayerCount")).isEqualTo(1);
+        }
+
+        @Test
+        public void whenEliminatedPlayerMovesAgain() {
+            submitValid("payRental", "faculty1", "player2");
+
+            assertRejected("PLAYER_ELIMINATED", "buyFaculty", "player2", "faculty2");
+            assertRejected("PLAYER_ELIMINATED", "payRental", "faculty1", "player2");
+        }
+    }
+
+    @Nested
+    class TradeFaculty {
+
+        @Test
+        public void whenBuyerCanPay() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            Faculty faculty = (Faculty) submitValid("tradeFaculty", "faculty1", "player2", "300");
+
+            assertThat(faculty.getOwner()).isEqualTo("player2");
+            assertThat(owner("faculty1")).isEqualTo("player2");
+            assertThat(money("player2")).isEqualTo(300);
+            assertThat(money("player1")).isEqualTo(700);
+        }
+
+        @Test
+        public void whenBuyerCanNotPay() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            assertRejected("PLAYER_BROKE", "tradeFaculty", "faculty1", "player2", "700");
+            assertThat(owner("faculty1")).isEqualTo("player1");
+        }
+
+        @Test
+        public void whenFacultyHasNoOwner() {
+            assertRejected("FACULTY_HAS_NO_OWNER", "tradeFaculty", "faculty1", "player2", "300");
+        }
+
+        @Test
+        public void whenBuyerOwnsTheFaculty() {
+            submitValid("buyFaculty", "player1", "faculty1");
+
+            assertRejected("OWN_FACULTY", "tradeFaculty", "faculty1", "player1", "300");
+        }
+    }
+
+    @Nested
+    class ProcessTurns {
+
+        @Test
+        public void whenMovesAreMalformed() {
+            String turns = "[null,"
+                    + "{\"function\":\"buyFaculty\",\"args\":[null,\"faculty1\"]},"
+                    + "{\"function\":\"buyFaculty\",\"args\":[\"player\\u0000\",\"faculty1\"]},"
+                    + "{\"function\":\"buyFaculty\",\"args\":[\"player1\",\"faculty1\"]}]";
+
+            TurnResult[] results = new Genson().deserialize((String) submitValid("processTurns", turns), TurnResult[].class);
+
+            assertThat(results).extracting(TurnResult::getError).containsExactly("INVALID_TURN", "INVALID_TURN", "INVALID_TURN", null);
+            assertThat(results[3].getSuccess()).isTrue();
+            assertThat(owner("faculty1")).isEqualTo("player1");
+        }
+
+        @Test
+        public void whenTurnsAreNotAnArrayOfMoves() {
+            assertRejected("INVALID_TURN", "processTurns", "[{\"function\":");
+            assertRejected("INVALID_TURN", "processTurns", "{\"function\":\"buyFaculty\"}");
+        }
+    }
+
+    @Nested
+    class CreateGame {
+
+        @Test
+        public void whenGameIsNew() {
+            Game game = (Game) submitValid("CreateGame", "game1", "Friday game");
+
+            assertThat(game.getName()).isEqualTo("Friday game");
+            assertRejected("ASSET_ALREADY_EXISTS", "CreateGame", "game1", "Another game");
+        }
+
+        @Test
+        public void whenGameIdIsNotValid() {
+            assertRejected("INVALID_GAME_ID", "CreateGame", "", "Friday game");
+            assertRejected("INVALID_GAME_ID", "CreateGame", "game\u0000", "Friday game");
+        }
+    }
+
+    @Nested
+    class Games {
+
+        private TxOutcome submitIn(final String gameId, final String function, final String... args) {
+            Proposal proposal = new Proposal(function, args).withTransient(UpmPolyContext.GAME_ID, gameId.getBytes(StandardCharsets.UTF_8));
+            return simulator.submit(Collections.singletonList(proposal)).getOutcomes().get(0);
+        }
+
+        private Object evaluateIn(final String gameId, final String function, final String... args) {
+            Proposal proposal = new Proposal(function, args).withTransient(UpmPolyContext.GAME_ID, gameId.getBytes(StandardCharsets.UTF_8));
+            TxOutcome outcome = simulator.evaluate(proposal);
+            assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+            return outcome.getResult();
+        }
+
+        @BeforeEach
+        void createGame() {
+            submitValid("CreateGame", "game1", "Friday game");
+            submitValid("InitGameLedger", "game1");
+        }
+
+        @Test
+        public void whenGameIdIsNotValid() {
+            assertThat(submitIn("game\u0000", "getMoney", "player1").getError()).isEqualTo("INVALID_GAME_ID");
+            assertThat(submitIn("game\uDBFF\uDFFF", "buyFaculty", "player1", "faculty1").getError()).isEqualTo("INVALID_GAME_ID");
+            assertRejected("INVALID_GAME_ID", "InitGameLedger", "game\u0000");
+        }
+
+        @Test
+        public void whenGameDoesNotExist() {
+            assertThat(submitIn("game2", "getMoney", "player1").getError()).isEqualTo("GAME_NOT_FOUND");
+            assertRejected("GAME_NOT_FOUND", "InitGameLedger", "game2");
+        }
+
+        @Test
+        public void whenPlayingInAnotherGame() {
+            TxOutcome outcome = submitIn("game1", "buyFaculty", "player2", "faculty1");
+
+            assertThat(outcome.isValid()).as(outcome.toString()).isTrue();
+            assertThat(((Faculty) evaluateIn("game1", "ReadFaculty", "faculty1")).getOwner()).isEqualTo("player2");
+            assertThat(evaluateIn("game1", "getMoney", "player2")).isEqualTo(5000000 - 2000000);
+        }
+
+        @Test
+        public void whenGamesShareAssetIds() {
+            submitValid("buyFaculty", "player1", "faculty1");
+            submitIn("game1", "buyFaculty", "player2", "faculty1");
+
+            assertThat(owner("faculty1")).isEqualTo("player1");
+            assertThat(money("player1")).isEqualTo(400);
+            assertThat(money("player2")).isEqualTo(600);
+            assertThat(evaluateIn("game1", "getMoney", "player1")).isEqualTo(4000);
+            assertThat((String) evaluate("GetAllPlayers")).doesNotContain("Nicco");
+            assertThat((String) evaluateIn("game1", "GetAllPlayers")).doesNotContain("Luis");
+            assertThat(evaluateIn("game1", "GetActivePlayerCount")).isEqualTo(3);
+        }
+    }
+
+    @Nested
+    class GetTopPlayers {
+
+        private List<String> top(final int n) {
+            List<String> ranking = new ArrayList<String>();
+            for (Player player : new Genson().deserialize((String) evaluate("GetTopPlayers", Integer.toString(n)), Player[].class)) {
+                ranking.add(player.getPlayerID() + ":" + player.getCredit());
+            }
+            return ranking;
+        }
+
+        @Test
+        public void whenCreditsChange() {
+            assertThat(top(10)).containsExactly("player1:1000", "player2:600");
+
+            submitValid("buyFaculty", "player1", "faculty1");
+            assertThat(top(10)).containsExactly("player2:600", "player1:400");
+
+            submitValid("payRental", "faculty1", "player2");
+            assertThat(top(10)).containsExactly("player1:550", "player2:450");
+
+            submitValid("tradeFaculty", "faculty1", "player2", "300");
+            assertThat(top(10)).containsExactly("player1:850", "player2:150");
+        }
+
+        @Test
+        public void whenPlayerGoesBankrupt() {
+            submitValid("buyFaculty", "player1", "faculty1");
+            submitValid("buyFaculty", "player2", "faculty2");
+            submitValid("payRental", "faculty1", "player2");
+
+            assertThat(top(10)).containsExactly("player1:500");
+        }
+
+        @Test
+        public void whenCreditsTieOrAreNegative() {
+            submitValid("Player", "player3", "Eva", "600");
+            submitValid("Player", "player4", "Marta", "-50");
+            submitValid("Player", "player5", "Pablo", Integer.toString(Integer.MIN_VALUE));
+            submitValid("Player", "player6", "Sara", Integer.toString(Integer.MAX_VALUE));
+
+            assertThat(top(10)).containsExactly("player6:" + Integer.MAX_VALUE, "player1:1000", "player2:600", "player3:600",
+                    "player4:-50", "player5:" + Integer.MIN_VALUE);
+            assertThat(top(2)).containsExactly("player6:" + Integer.MAX_VALUE, "player1:1000");
+        }
+
+        @Test
+        public void whenNIsOutOfBounds() {
+            assertRejected("INVALID_PAGE_SIZE", "GetTopPlayers", "0");
+            assertRejected("INVALID_PAGE_SIZE", "GetTopPlayers", "1001");
+            assertThat(top(1000)).hasSize(2);
+        }
+    }
+
+    @Nested
+    class ActivePlayers {
+
+        private List<String> names() {
+            return Arrays.asList(new Genson().deserialize((String) evaluate("getPlayers"), String[].class));
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String> pagedNames(final int pageSize) {
+            List<String> names = new ArrayList<String>();
+            String bookmark = "";
+            do {
+                Map<String, Object> page = new Genson().deserialize((String) evaluate("getPlayersWithPagination", Integer.toString(pageSize), bookmark),
+                        Map.class);
+                names.addAll((List<String>) page.get("records"));
+                bookmark = (String) page.get("bookmark");
+            } while (!bookmark.isEmpty());
+            return names;
+        }
+
+        @Test
+        public void whenPlayerGoesBankrupt() {
+            submitValid("Player", "player3", "Eva", "800");
+            assertThat((Integer) evaluate("GetActivePlayerCount")).isEqualTo(3);
+            assertThat(names()).containsExactly("Ana", "Luis", "Eva");
+
+            submitValid("buyFaculty", "player1", "faculty1");
+            submitValid("buyFaculty", "player2", "faculty2");
+            submitValid("payRental", "faculty1", "player2");
+
+            assertThat((Integer) evaluate("GetActivePlayerCount")).isEqualTo(2);
+            assertThat(names()).containsExactly("Ana", "Eva");
+            assertThat(pagedNames(1)).containsExactly("Ana", "Eva");
+        }
+
+        @Test
+        public void whenMigrationRebuildsTheIndexes() {
+            WorldState state = simulator.getState();
+            InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "setup", "setup", Collections.<String>emptyList());
+            String game = UpmPolyContext.DEFAULT_GAME;
+            // a record written under a plain id by the first versions, and index entries of a player that is gone
+            state.put("player9", AssetCodec.fromEnvironment().encodePlayer(new Player("player9", "Eva", 700, false)));
+            state.put(LedgerKeys.activePlayer(stub, game, "ghost"), LedgerKeys.activeEntry("Ghost"));
+            state.put(LedgerKeys.rank(stub, game, 5, "ghost"), LedgerKeys.activeEntry("Ghost"));
+            state.put(LedgerKeys.activePlayerCount(stub, game, LedgerKeys.counterShard("ghost")), "41".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(submitValid("MigrateLedger")).isEqualTo(1);
+
+            assertThat((Integer) evaluate("GetActivePlayerCount")).isEqualTo(3);
+            assertThat(names()).containsExactly("Ana", "Luis", "Eva");
+            assertThat(pagedNames(2)).containsExactly("Ana", "Luis", "Eva");
+            assertThat((String) evaluate("GetTopPlayers", "10")).contains("player9").doesNotContain("ghost");
+        }
+    }
+
+    @Nested
+    class History {
+
+        @BeforeEach
+        void playMoves() throws InterruptedException {
+            // the writes of the simulator are stamped with the clock, keep their timestamps apart
+            for (String[] move : new String[][] {{"buyFaculty", "player1", "faculty1"}, {"payRental", "faculty1", "player2"},
+                    {"tradeFaculty", "faculty1", "player2", "300"}}) {
+                Thread.sleep(2);
+                submitValid(move[0], Arrays.copyOfRange(move, 1, move.length));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> page(final String function, final String assetId, final int pageSize, final String bookmark,
+                final String from, final String to) {
+            return new Genson().deserialize((String) evaluate(function, assetId, Integer.toString(pageSize), bookmark, from, to), Map.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String> changes(final Map<String, Object> page, final String... fields) {
+            List<String> changes = new ArrayList<String>();
+            for (Map<String, Object> change : (List<Map<String, Object>>) page.get("records")) {
+                StringBuilder text = new StringBuilder();
+                for (String field : fields) {
+                    text.append(text.length() == 0 ? "" : "/").append(change.get(field));
+                }
+                changes.add(text.toString());
+            }
+            return changes;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String> timestamps() {
+            List<String> timestamps = new ArrayList<String>();
+            for (Map<String, Object> change : (List<Map<String, Object>>) page("GetPlayerHistory", "player1", 10, "", "", "").get("records")) {
+                timestamps.add((String) change.get("timestamp"));
+            }
+            return timestamps;
+        }
+
+        @Test
+        public void whenCreditChangesSpanSeveralPages() {
+            Map<String, Object> first = page("GetPlayerHistory", "player1", 3, "", "", "");
+            assertThat(changes(first, "credit", "creditDelta")).containsExactly("850/300", "550/150", "400/-600");
+            assertThat((String) first.get("bookmark")).isNotEmpty();
+
+            Map<String, Object> second = page("GetPlayerHistory", "player1", 3, (String) first.get("bookmark"), "", "");
+            assertThat(changes(second, "credit", "creditDelta")).containsExactly("1000/1000");
+            assertThat(second.get("bookmark")).isEqualTo("");
+        }
+
+        @Test
+        public void whenOwnerChangesSpanSeveralPages() {
+            Map<String, Object> first = page("GetFacultyHistory", "faculty1", 2, "", "", "");
+            assertThat(changes(first, "owner", "previousOwner")).containsExactly("player2/player1", "player1/null");
+
+            Map<String, Object> second = page("GetFacultyHistory", "faculty1", 2, (String) first.get("bookmark"), "", "");
+            assertThat(changes(second, "owner", "previousOwner")).containsExactly("null/null");
+            assertThat(second.get("bookmark")).isEqualTo("");
+        }
+
+        @Test
+        public void whenBookmarkIsUnknown() {
+            Map<String, Object> page = page("GetPlayerHistory", "player1", 3, "unknownTxId", "", "");
+
+            assertThat(changes(page, "credit")).isEmpty();
+            assertThat(page.get("bookmark")).isEqualTo("");
+        }
+
+        @Test
+        public void whenWindowCutsTheHistory() {
+            List<String> timestamps = timestamps();
+            assertThat(timestamps).hasSize(4).doesNotHaveDuplicates();
+
+            // from the buy, inclusive, to the trade, exclusive: the buy is still diffed against the creation
+            Map<String, Object> page = page("GetPlayerHistory", "player1", 10, "", timestamps.get(2), timestamps.get(0));
+            assertThat(changes(page, "credit", "creditDelta")).containsExactly("550/150", "400/-600");
+            assertThat(page.get("bookmark")).isEqualTo("");
+
+            Map<String, Object> first = page("GetPlayerHistory", "player1", 1, "", timestamps.get(2), timestamps.get(0));
+            assertThat(changes(first, "credit")).containsExactly("550");
+            Map<String, Object> second = page("GetPlayerHistory", "player1", 1, (String) first.get("bookmark"), timestamps.get(2), timestamps.get(0));
+            assertThat(changes(second, "credit")).containsExactly("400");
+            assertThat(second.get("bookmark")).isEqualTo("");
+        }
+
+        @Test
+        public void whenWindowIsNoInstant() {
+            assertRejected("INVALID_TIME_WINDOW", "GetPlayerHistory", "player1", "10", "", "yesterday", "");
+            assertRejected("INVALID_TIME_WINDOW", "GetFacultyHistory", "faculty1", "10", "", "", "2026-13-01T00:00:00Z");
+        }
+    }
+}
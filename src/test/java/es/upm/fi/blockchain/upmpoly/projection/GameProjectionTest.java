@@ -0,0 +1,171 @@
+package es.upm.fi.blockchain.upmpoly.projection;
+
+import es.upm.fi.blockchain.upmpoly.ChangeEvent;
+import es.upm.fi.blockchain.upmpoly.CreditDelta;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Feeds recorded change events to projections.
+ */
+public final class GameProjectionTest {
+
+    private static final Player ANA = new Player("player1", "Ana", 1000, false);
+
+    private static final Player LUIS = new Player("player2", "Luis", 600, false);
+
+    private static final Faculty FREE = new Faculty("faculty1", "ComputerScience", 600, 150, null);
+
+    private static final Faculty OWNED = new Faculty("faculty1", "ComputerScience", 600, 150, "player1");
+
+    private static byte[] event(final String gameId, final List<Player> players, final List<Faculty> faculties, final List<CreditDelta> credits) {
+        return new ChangeEvent(gameId, players, faculties, credits).toPayload();
+    }
+
+    private static boolean apply(final GameProjection projection, final Event event) {
+        return projection.apply(event.block, event.transactionId, ChangeEvent.NAME, event.payload);
+    }
+
+    /**
+     * @return a recorded stream: the assets are created, player1 buys faculty1 and player2 pays its rent
+     */
+    private static List<Event> stream() {
+        return Arrays.asList(
+                new Event(1, "tx1", event("default", Arrays.asList(ANA, LUIS), Collections.singletonList(FREE), null)),
+                new Event(2, "tx2", event("default", Collections.singletonList(new Player("player1", "Ana", 400, false)),
+                        Collections.singletonList(OWNED), null)),
+                new Event(2, "tx3", event("other", Collections.singletonList(new Player("player1", "Eva", 5, false)), null, null)),
+                new Event(3, "tx4", event("default", Collections.singletonList(new Player("player2", "Luis", 450, false)), null,
+                        Collections.singletonList(new CreditDelta("player1", 150)))));
+    }
+
+    @Nested
+    class Apply {
+
+        @Test
+        public void keepsTheLastRecordsAndTheOwnerIndex() {
+            GameProjection projection = new GameProjection();
+            for (Event event : stream()) {
+                apply(projection, event);
+            }
+
+            assertThat(projection.getPlayer("player1")).isEqualTo(new Player("player1", "Ana", 550, false));
+            assertThat(projection.getPlayer("player2").getCredit()).isEqualTo(450);
+            assertThat(projection.getFacultiesOwnedBy("player1")).containsExactly(OWNED);
+            assertThat(projection.getAppliedEvents()).isEqualTo(3);
+            assertThat(projection.getCheckpoint()).isEqualTo(new Checkpoint(3, Collections.singleton("tx4")));
+        }
+
+        @Test
+        public void skipsDuplicateAndOlderEvents() {
+            GameProjection projection = new GameProjection();
+            List<Event> stream = stream();
+            apply(projection, stream.get(0));
+            apply(projection, stream.get(1));
+
+            assertThat(apply(projection, stream.get(1))).isFalse();
+            assertThat(apply(projection, stream.get(0))).isFalse();
+            assertThat(projection.apply(1, "tx9", ChangeEvent.NAME, event("default", Collections.singletonList(LUIS), null, null))).isFalse();
+            assertThat(projection.getPlayer("player1").getCredit()).isEqualTo(400);
+            assertThat(projection.getAppliedEvents()).isEqualTo(2);
+        }
+
+        @Test
+        public void skipsOtherGamesAndEvents() {
+            GameProjection projection = new GameProjection();
+            apply(projection, stream().get(0));
+
+            assertThat(apply(projection, stream().get(2))).isFalse();
+            assertThat(projection.apply(2, "tx5", "OtherEvent", new byte[0])).isFalse();
+            assertThat(projection.getPlayer("player1")).isEqualTo(ANA);
+            assertThat(projection.getCheckpoint()).isEqualTo(new Checkpoint(2, new HashSet<String>(Arrays.asList("tx3", "tx5"))));
+        }
+
+        @Test
+        public void addsCreditDeltasAfterTheRecordsOfTheEvent() {
+            GameProjection projection = new GameProjection();
+            apply(projection, stream().get(0));
+
+            projection.apply(2, "tx2", ChangeEvent.NAME, event("default", Collections.singletonList(new Player("player1", "Ana", 1200, false)),
+                    null, Collections.singletonList(new CreditDelta("player1", 50))));
+            assertThat(projection.getPlayer("player1").getCredit()).isEqualTo(1250);
+
+            // the record folding the pending delta replaces the credit
+            projection.apply(3, "tx3", ChangeEvent.NAME, event("default", Collections.singletonList(new Player("player1", "Ana", 1250, false)),
+                    null, null));
+            assertThat(projection.getPlayer("player1").getCredit()).isEqualTo(1250);
+        }
+    }
+
+    @Nested
+    class SaveAndLoad {
+
+        @Test
+        public void resumesAfterTheLastAppliedEvent(@TempDir final Path directory) throws IOException {
+            Path file = directory.resolve("projection.json");
+            List<Event> stream = stream();
+
+            GameProjection first = new GameProjection();
+            apply(first, stream.get(0));
+            apply(first, stream.get(1));
+            first.save(file);
+
+            GameProjection loaded = GameProjection.load(file);
+            assertThat(loaded.getCheckpoint()).isEqualTo(first.getCheckpoint());
+            assertThat(loaded.getCheckpoint().getResumeBlock()).isEqualTo(2);
+            assertThat(loaded.getPlayers()).isEqualTo(first.getPlayers());
+            assertThat(loaded.getFacultiesOwnedBy("player1")).containsExactly(OWNED);
+
+            // the stream is requested again from the resume block
+            for (Event event : stream) {
+                if (event.block >= loaded.getCheckpoint().getResumeBlock()) {
+                    apply(loaded, event);
+                }
+            }
+
+            GameProjection whole = new GameProjection();
+            for (Event event : stream) {
+                apply(whole, event);
+            }
+            assertThat(loaded.getPlayers()).isEqualTo(whole.getPlayers());
+            assertThat(loaded.getFaculties()).isEqualTo(whole.getFaculties());
+            assertThat(loaded.getCheckpoint()).isEqualTo(whole.getCheckpoint());
+            assertThat(loaded.getAppliedEvents()).isEqualTo(1);
+        }
+
+        @Test
+        public void startsEmptyWithoutAFile(@TempDir final Path directory) throws IOException {
+            GameProjection projection = GameProjection.load(directory.resolve("missing.json"));
+
+            assertThat(projection.getPlayers()).isEmpty();
+            assertThat(projection.getCheckpoint()).isEqualTo(Checkpoint.START);
+        }
+    }
+
+    private static final class Event {
+
+        private final long block;
+
+        private final String transactionId;
+
+        private final byte[] payload;
+
+        Event(final long block, final String transactionId, final byte[] payload) {
+            this.block = block;
+            this.transactionId = transactionId;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.UpmPoly;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the verdicts of the validation phase on blocks of the contract.
+ */
+public final class BlockSimulatorTest {
+
+    private BlockSimulator simulator;
+
+    @BeforeEach
+    void createAssets() {
+        simulator = new BlockSimulator(new UpmPoly(), new WorldState(), 2);
+        for (Proposal proposal : Arrays.asList(new Proposal("Player", "player1", "Ana", "1000"),
+                new Proposal("Player", "player2", "Luis", "1000"), new Proposal("Faculty", "faculty1", "ComputerScience", "600", "150"))) {
+            assertThat(simulator.submit(Collections.singletonList(proposal)).count(ValidationCode.VALID)).isEqualTo(1);
+        }
+    }
+
+    @AfterEach
+    void close() {
+        simulator.close();
+    }
+
+    @Test
+    public void invalidatesReadsOfKeysWrittenEarlierInTheBlock() {
+        BlockResult block = simulator.submit(Arrays.asList(
+                new Proposal("buyFaculty", "player1", "faculty1"),
+                new Proposal("buyFaculty", "player2", "faculty1")));
+
+        assertThat(block.getOutcomes().get(0).getCode()).isEqualTo(ValidationCode.VALID);
+        assertThat(block.getOutcomes().get(1).getCode()).isEqualTo(ValidationCode.MVCC_READ_CONFLICT);
+        assertThat(((Faculty) simulator.evaluate(new Proposal("ReadFaculty", "faculty1")).getResult()).getOwner()).isEqualTo("player1");
+        assertThat(simulator.evaluate(new Proposal("getMoney", "player2")).getResult()).isEqualTo(1000);
+    }
+
+    @Test
+    public void invalidatesScansOfRangesWrittenEarlierInTheBlock() {
+        BlockResult block = simulator.submit(Arrays.asList(
+                new Proposal("Player", "player3", "Eva", "1000"),
+                new Proposal("GetAllPlayers")));
+
+        assertThat(block.getOutcomes().get(0).getCode()).isEqualTo(ValidationCode.VALID);
+        assertThat(block.getOutcomes().get(1).getCode()).isEqualTo(ValidationCode.PHANTOM_READ_CONFLICT);
+    }
+
+    @Test
+    public void validatesAgainstTheStateOfThePreviousBlock() {
+        simulator.submit(Collections.singletonList(new Proposal("buyFaculty", "player1", "faculty1")));
+
+        BlockResult block = simulator.submit(Arrays.asList(
+                new Proposal("payRental", "faculty1", "player2"),
+                new Proposal("ReadFaculty", "faculty1")));
+
+        assertThat(block.count(ValidationCode.VALID)).isEqualTo(2);
+        assertThat(simulator.evaluate(new Proposal("getMoney", "player1")).getResult()).isEqualTo(550);
+        assertThat(simulator.getState().getHeight()).isEqualTo(5);
+    }
+
+    @Test
+    public void commitsNothingOfAFailedEndorsement() {
+        int keys = simulator.getState().size();
+
+        BlockResult block = simulator.submit(Arrays.asList(
+                new Proposal("buyFaculty", "player9", "faculty1"),
+                new Proposal("noSuchFunction")));
+
+        assertThat(block.count(ValidationCode.ENDORSEMENT_FAILURE)).isEqualTo(2);
+        assertThat(block.getOutcomes().get(0).getError()).isEqualTo("ASSET_NOT_FOUND");
+        assertThat(simulator.getState().size()).isEqualTo(keys);
+        assertThat(simulator.getStats().getConflictRate()).isZero();
+    }
+
+    @Test
+    public void evaluatesAgainstWholeBlocks() {
+        simulator.submit(Collections.singletonList(new Proposal("buyFaculty", "player1", "faculty1")));
+
+        // each trade moves credit between the two players in one transaction, the total never changes
+        CompletableFuture<Void> trades = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 500; i++) {
+                String buyer = i % 2 == 0 ? "player2" : "player1";
+                assertThat(simulator.submit(Collections.singletonList(new Proposal("tradeFaculty", "faculty1", buyer, "100")))
+                        .count(ValidationCode.VALID)).isEqualTo(1);
+            }
+        });
+
+        while (!trades.isDone()) {
+            String summary = (String) simulator.evaluate(new Proposal("GetGameSummary")).getResult();
+            assertThat(((Number) new Genson().deserialize(summary, Map.class).get("totalCredit")).longValue()).isEqualTo(1400);
+        }
+        trades.join();
+    }
+}
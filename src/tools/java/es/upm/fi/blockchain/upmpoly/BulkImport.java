@@ -0,0 +1,165 @@
+package es.upm.fi.blockchain.upmpoly;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a large set of players and faculties into {@link UpmPoly#BulkCreate} payloads.
+ *
+ * The input is either an {@link AssetBatch} as JSON or a CSV file with one
+ * asset per line, blank lines and lines starting with # being skipped:
+ *
+ * <pre>
+ * player,&lt;playerID&gt;,&lt;name&gt;,&lt;credit&gt;
+ * faculty,&lt;facultyID&gt;,&lt;name&gt;,&lt;salePrice&gt;,&lt;rentalFee&gt;
+ * </pre>
+ *
+ * The assets are cut into batches that stay within the {@link BulkLimits} of
+ * the environment. The bytes a batch writes are estimated from the JSON of its
+ * assets plus the keys and index entries each asset adds, which is at least
+ * what the chaincode writes in either state format for games with ids of up to
+ * 32 bytes. Every batch is printed on its own line, base64 encoded and gzip
+ * compressed, ready for one transaction:
+ *
+ * <pre>
+ * BulkImport &lt;input file&gt;
+ * </pre>
+ */
+public final class BulkImport {
+
+    // keys and index entries of a player: record, active entry and rank, plus their names
+    private static final int PLAYER_KEYS_BYTES = 96;
+
+    // keys of a faculty: catalog entry and ownership
+    private static final int FACULTY_KEYS_BYTES = 48;
+
+    // room left in every key for the id of the game
+    private static final int GAME_ID_BYTES = 32;
+
+    // every batch may rewrite each shard of the active player count
+    private static final int COUNTER_BYTES = LedgerKeys.COUNTER_SHARDS * (48 + GAME_ID_BYTES);
+
+    private static final Genson GENSON = new GensonBuilder().setSkipNull(true).create();
+
+    private final BulkLimits limits;
+
+    public BulkImport(final BulkLimits limits) {
+        this.limits = limits;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: BulkImport <input file>");
+            System.exit(1);
+        }
+
+        for (AssetBatch batch : new BulkImport(BulkLimits.fromEnvironment()).split(read(Paths.get(args[0])))) {
+            System.out.println(batch.encode());
+        }
+    }
+
+    /**
+     * @param input a CSV file or a JSON asset batch
+     * @return the assets of the file
+     * @throws IOException if the file can not be read
+     */
+    public static AssetBatch read(final Path input) throws IOException {
+        String content = new String(Files.readAllBytes(input), StandardCharsets.UTF_8);
+        if (content.trim().startsWith("{")) {
+            return AssetBatch.decode(content, Integer.MAX_VALUE);
+        }
+
+        List<Player> players = new ArrayList<Player>();
+        List<Faculty> faculties = new ArrayList<Faculty>();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+                if (fields[0].equals("player") && fields.length == 4) {
+                    players.add(new Player(fields[1], fields[2], Integer.parseInt(fields[3]), false));
+                } else if (fields[0].equals("faculty") && fields.length == 5) {
+                    faculties.add(new Faculty(fields[1], fields[2], Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), null));
+                } else {
+                    throw new IllegalArgumentException(String.format("Line %1$d is no player or faculty: %2$s", number, line));
+                }
+            }
+        }
+        return new AssetBatch(players, faculties);
+    }
+
+    /**
+     * @param assets the assets to create
+     * @return batches of the assets, in their order, each within the limits
+     */
+    public List<AssetBatch> split(final AssetBatch assets) {
+        List<AssetBatch> batches = new ArrayList<AssetBatch>();
+        List<Player> players = new ArrayList<Player>();
+        List<Faculty> faculties = new ArrayList<Faculty>();
+        long bytes = COUNTER_BYTES;
+
+        for (Player player : assets.getPlayers()) {
+            int size = estimate(player);
+            if (!players.isEmpty() && !fits(players.size(), bytes, size)) {
+                batches.add(new AssetBatch(players, faculties));
+                players = new ArrayList<Player>();
+                faculties = new ArrayList<Faculty>();
+                bytes = COUNTER_BYTES;
+            }
+            players.add(player);
+            bytes += size;
+        }
+
+        for (Faculty faculty : assets.getFaculties()) {
+            int size = estimate(faculty);
+            if (players.size() + faculties.size() > 0 && !fits(players.size() + faculties.size(), bytes, size)) {
+                batches.add(new AssetBatch(players, faculties));
+                players = new ArrayList<Player>();
+                faculties = new ArrayList<Faculty>();
+                bytes = COUNTER_BYTES;
+            }
+            faculties.add(faculty);
+            bytes += size;
+        }
+
+        if (players.size() + faculties.size() > 0) {
+            batches.add(new AssetBatch(players, faculties));
+        }
+        return batches;
+    }
+
+    private boolean fits(final int count, final long bytes, final int size) {
+        return count < limits.getMaxAssets() && bytes + size <= limits.getMaxBytes();
+    }
+
+    private static int estimate(final Player player) {
+        return json(player) + 3 * utf8(player.getPlayerID()) + 2 * utf8(player.getName()) + PLAYER_KEYS_BYTES + 3 * GAME_ID_BYTES;
+    }
+
+    private static int estimate(final Faculty faculty) {
+        return json(faculty) + 2 * utf8(faculty.getFacultyID()) + FACULTY_KEYS_BYTES + 2 * GAME_ID_BYTES;
+    }
+
+    private static int json(final Object asset) {
+        return utf8(GENSON.serialize(asset));
+    }
+
+    private static int utf8(final String text) {
+        return text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
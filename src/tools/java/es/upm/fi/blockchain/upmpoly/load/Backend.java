@@ -0,0 +1,37 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where the load generator sends its requests.
+ *
+ * Every call returns at once. Its future completes when the request is done:
+ * with null if it succeeded, and otherwise with its error code, the
+ * AssetTransferErrors code of a rejected transaction, or the validation code,
+ * like MVCC_READ_CONFLICT, of a transaction invalidated at commit.
+ *
+ * {@link SimulatorBackend} runs the contract in process. Other backends, like a
+ * client of a Fabric Gateway, are named by class with backend=&lt;class&gt;; they
+ * need a public constructor without arguments and read their own settings, such
+ * as the endpoint and the identity, from the environment. The chaincode does
+ * not depend on the Gateway SDK, so such a backend lives with its client.
+ */
+public interface Backend extends AutoCloseable {
+
+    /**
+     * @param proposal the transaction to endorse, order and commit
+     * @return the future error code of the transaction, null when it is committed as valid
+     */
+    CompletableFuture<String> submit(Proposal proposal);
+
+    /**
+     * @param proposal the query to evaluate
+     * @return the future error code of the query, null when it succeeds
+     */
+    CompletableFuture<String> evaluate(Proposal proposal);
+
+    @Override
+    void close();
+}
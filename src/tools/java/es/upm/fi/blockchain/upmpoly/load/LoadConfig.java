@@ -0,0 +1,149 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load run, given as key=value arguments.
+ *
+ * <pre>
+ * players=1000 faculties=100 zipf=1.0 mix=buy:40,rent:40,trade:10,query:10
+ * concurrency=16 pacing=closed rate=500 duration=30 warmup=5 seed=1
+ * backend=sim blockSize=100 blockTimeout=20 endorsers=&lt;processors&gt;
+ * </pre>
+ *
+ * The game has players and faculties, the faculties picked by the moves follow
+ * a Zipf distribution of exponent zipf, 0 picking them uniformly. The mix gives
+ * the relative weight of every {@link Operation}. With closed pacing,
+ * concurrency clients send a request as soon as their previous one completes;
+ * with open pacing requests are sent at rate per second whatever the latency,
+ * at most concurrency of them in flight. The first warmup of the duration
+ * seconds are not measured. blockSize, blockTimeout in milliseconds and
+ * endorsers only apply to the simulator backend.
+ */
+public final class LoadConfig {
+
+    public enum Pacing {
+        CLOSED,
+        OPEN
+    }
+
+    private static final String DEFAULT_MIX = "buy:40,rent:40,trade:10,query:10";
+
+    private final Map<String, String> values;
+
+    private final Map<Operation, Integer> mix = new EnumMap<Operation, Integer>(Operation.class);
+
+    private LoadConfig(final Map<String, String> values) {
+        this.values = values;
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, 0);
+        }
+        for (String entry : text("mix", DEFAULT_MIX).split(",")) {
+            String[] weight = entry.split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Mix entries are <operation>:<weight>, got " + entry);
+            }
+            mix.put(Operation.fromMixName(weight[0]), Integer.parseInt(weight[1].trim()));
+        }
+    }
+
+    /**
+     * @param args key=value arguments
+     * @return the settings, the defaults for the keys not given
+     */
+    public static LoadConfig parse(final String... args) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Arguments are key=value, got " + arg);
+            }
+            values.put(arg.substring(0, split).trim(), arg.substring(split + 1).trim());
+        }
+        return new LoadConfig(values);
+    }
+
+    public int getPlayers() {
+        return number("players", 1000);
+    }
+
+    public int getFaculties() {
+        return number("faculties", 100);
+    }
+
+    public double getZipfExponent() {
+        return Double.parseDouble(text("zipf", "1.0"));
+    }
+
+    /**
+     * @return the weight of every operation
+     */
+    public Map<Operation, Integer> getMix() {
+        return Collections.unmodifiableMap(mix);
+    }
+
+    public int getConcurrency() {
+        return number("concurrency", 16);
+    }
+
+    public Pacing getPacing() {
+        return Pacing.valueOf(text("pacing", "closed").toUpperCase());
+    }
+
+    /**
+     * @return the requests sent per second with open pacing
+     */
+    public int getRate() {
+        return number("rate", 500);
+    }
+
+    public int getDurationSeconds() {
+        return number("duration", 30);
+    }
+
+    public int getWarmupSeconds() {
+        return number("warmup", 5);
+    }
+
+    public long getSeed() {
+        return Long.parseLong(text("seed", "1"));
+    }
+
+    /**
+     * @return sim, or the name of a {@link Backend} class with a public constructor without arguments
+     */
+    public String getBackend() {
+        return text("backend", "sim");
+    }
+
+    public int getBlockSize() {
+        return number("blockSize", 100);
+    }
+
+    public int getBlockTimeoutMillis() {
+        return number("blockTimeout", 20);
+    }
+
+    public int getEndorsers() {
+        return number("endorsers", Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$d players, %2$d faculties, zipf %3$s, mix %4$s, %5$s pacing, concurrency %6$d%7$s, %8$d s (%9$d s warmup), backend %10$s",
+                getPlayers(), getFaculties(), getZipfExponent(), mix, getPacing().name().toLowerCase(), getConcurrency(),
+                getPacing() == Pacing.OPEN ? ", " + getRate() + " req/s" : "", getDurationSeconds(), getWarmupSeconds(), getBackend());
+    }
+
+    private String text(final String key, final String defaultValue) {
+        String value = values.get(key);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private int number(final String key, final int defaultValue) {
+        return Integer.parseInt(text(key, Integer.toString(defaultValue)));
+    }
+}
@@ -0,0 +1,190 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import es.upm.fi.blockchain.upmpoly.AssetBatch;
+import es.upm.fi.blockchain.upmpoly.BulkImport;
+import es.upm.fi.blockchain.upmpoly.BulkLimits;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link Workload} against a {@link Backend} and reports throughput, latency percentiles and errors.
+ *
+ * The players and faculties are first created with BulkCreate transactions,
+ * resubmitted when they conflict. The moves then run for the configured
+ * duration, closed or open loop:
+ * <ul>
+ * <li>closed: every client sends its next request when its previous one
+ * completes, the latency is measured from the send;</li>
+ * <li>open: requests are scheduled at a fixed rate whatever the latency, and
+ * the latency is measured from the scheduled time, so a backend falling
+ * behind shows in the percentiles instead of slowing the schedule down.</li>
+ * </ul>
+ *
+ * <pre>
+ * LoadGenerator [key=value...]
+ * </pre>
+ *
+ * The keys are those of {@link LoadConfig}.
+ */
+public final class LoadGenerator {
+
+    private static final String SIMULATOR = "sim";
+
+    private final LoadConfig config;
+
+    private final Backend backend;
+
+    private final Workload workload;
+
+    private final LoadStats stats = new LoadStats();
+
+    public LoadGenerator(final LoadConfig config, final Backend backend) {
+        this.config = config;
+        this.backend = backend;
+        this.workload = new Workload(config);
+    }
+
+    public static void main(final String[] args) {
+        LoadConfig config = LoadConfig.parse(args);
+        System.out.println(String.format("Load: %s", config));
+        try (Backend backend = backend(config)) {
+            LoadGenerator generator = new LoadGenerator(config, backend);
+            generator.setup();
+            long measured = generator.run();
+            System.out.println(generator.getStats().report(measured));
+        }
+    }
+
+    /**
+     * @param config the settings of the run
+     * @return the backend named by the settings
+     */
+    public static Backend backend(final LoadConfig config) {
+        if (SIMULATOR.equals(config.getBackend())) {
+            return new SimulatorBackend(config);
+        }
+        try {
+            return Class.forName(config.getBackend()).asSubclass(Backend.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Can not create the backend " + config.getBackend(), e);
+        }
+    }
+
+    public LoadStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Creates the players and faculties of the workload.
+     */
+    public void setup() {
+        List<Proposal> pending = new ArrayList<Proposal>();
+        for (AssetBatch batch : new BulkImport(BulkLimits.fromEnvironment()).split(workload.assets())) {
+            pending.add(new Proposal("BulkCreate", batch.encode()));
+        }
+
+        while (!pending.isEmpty()) {
+            List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+            for (Proposal proposal : pending) {
+                results.add(backend.submit(proposal));
+            }
+
+            List<Proposal> conflicting = new ArrayList<Proposal>();
+            for (int i = 0; i < pending.size(); i++) {
+                String error = results.get(i).join();
+                if ("MVCC_READ_CONFLICT".equals(error) || "PHANTOM_READ_CONFLICT".equals(error)) {
+                    conflicting.add(pending.get(i));
+                } else if (error != null) {
+                    throw new IllegalStateException("Could not create the game: " + error);
+                }
+            }
+            pending = conflicting;
+        }
+    }
+
+    /**
+     * Runs the moves for the configured duration.
+     *
+     * @return the nanoseconds the requests were measured over, the duration without the warmup
+     */
+    public long run() {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = start + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+
+        if (config.getPacing() == LoadConfig.Pacing.OPEN) {
+            runOpen(start, measureFrom, end);
+        } else {
+            runClosed(measureFrom, end);
+        }
+        return Math.max(1, end - measureFrom);
+    }
+
+    private void runClosed(final long measureFrom, final long end) {
+        ExecutorService clients = Executors.newFixedThreadPool(config.getConcurrency());
+        try {
+            List<CompletableFuture<Void>> done = new ArrayList<CompletableFuture<Void>>();
+            for (int client = 0; client < config.getConcurrency(); client++) {
+                SplittableRandom random = new SplittableRandom(config.getSeed() + client);
+                done.add(CompletableFuture.runAsync(() -> {
+                    while (System.nanoTime() < end) {
+                        Operation operation = workload.nextOperation(random);
+                        long sent = System.nanoTime();
+                        String error;
+                        try {
+                            error = send(operation, workload.next(operation, random)).join();
+                        } catch (CompletionException e) {
+                            error = LoadStats.EXCEPTION;
+                        }
+                        if (sent >= measureFrom) {
+                            stats.record(operation, System.nanoTime() - sent, error);
+                        }
+                    }
+                }, clients));
+            }
+            CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private void runOpen(final long start, final long measureFrom, final long end) {
+        Semaphore inFlight = new Semaphore(config.getConcurrency());
+        SplittableRandom random = new SplittableRandom(config.getSeed());
+        double interval = TimeUnit.SECONDS.toNanos(1) / (double) config.getRate();
+
+        for (long request = 0;; request++) {
+            long scheduled = start + (long) (request * interval);
+            if (scheduled >= end) {
+                break;
+            }
+            for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquireUninterruptibly();
+
+            Operation operation = workload.nextOperation(random);
+            send(operation, workload.next(operation, random)).whenComplete((error, failure) -> {
+                if (scheduled >= measureFrom) {
+                    stats.record(operation, System.nanoTime() - scheduled, failure == null ? error : LoadStats.EXCEPTION);
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquireUninterruptibly(config.getConcurrency());
+    }
+
+    private CompletableFuture<String> send(final Operation operation, final Proposal proposal) {
+        return operation.isQuery() ? backend.evaluate(proposal) : backend.submit(proposal);
+    }
+}
@@ -0,0 +1,124 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import es.upm.fi.blockchain.upmpoly.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Latencies and errors of the measured requests of a load run, recorded concurrently by the clients.
+ *
+ * Latencies go into one {@link LatencyHistogram} per operation, failed requests
+ * included. Errors are counted by code: the AssetTransferErrors code of a
+ * rejected transaction, the validation code of an invalidated one, OTHER for
+ * errors without a code and EXCEPTION for requests the backend could not run.
+ */
+public final class LoadStats {
+
+    static final String OTHER = "OTHER";
+
+    static final String EXCEPTION = "EXCEPTION";
+
+    private static final Pattern ERROR_CODE = Pattern.compile("[A-Z][A-Z0-9_]*");
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+
+    private final Map<Operation, LongAdder> requests = new EnumMap<Operation, LongAdder>(Operation.class);
+
+    private final Map<Operation, LongAdder> failures = new EnumMap<Operation, LongAdder>(Operation.class);
+
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+    private final LatencyHistogram all = new LatencyHistogram();
+
+    public LoadStats() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            requests.put(operation, new LongAdder());
+            failures.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * @param operation the kind of the request
+     * @param nanos the latency of the request
+     * @param error the error code of the request, null if it succeeded
+     */
+    public void record(final Operation operation, final long nanos, final String error) {
+        latencies.get(operation).record(nanos);
+        all.record(nanos);
+        requests.get(operation).increment();
+        if (error != null) {
+            failures.get(operation).increment();
+            errors.computeIfAbsent(category(error), code -> new LongAdder()).increment();
+        }
+    }
+
+    public long getRequests() {
+        long total = 0;
+        for (LongAdder count : requests.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getFailures() {
+        long total = 0;
+        for (LongAdder count : failures.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of failed requests by error code, sorted by code
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+            counts.put(error.getKey(), error.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * @param measuredNanos the time the requests were measured over
+     * @return the report of the run, one line for the totals, one per operation sent and one for the errors
+     */
+    public String report(final long measuredNanos) {
+        double seconds = measuredNanos / NANOS_PER_SECOND;
+        long total = getRequests();
+        long failed = getFailures();
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Total: %1$d requests, %2$.1f req/s, %3$.1f successful/s, %4$.2f%% errors, %5$s",
+                total, total / seconds, (total - failed) / seconds, total == 0 ? 0 : 100.0 * failed / total, percentiles(all)));
+        for (Operation operation : Operation.values()) {
+            long count = requests.get(operation).sum();
+            if (count > 0) {
+                report.append(String.format("%n%1$s: %2$d requests, %3$.1f req/s, %4$d errors, %5$s", operation.getMixName(),
+                        count, count / seconds, failures.get(operation).sum(), percentiles(latencies.get(operation))));
+            }
+        }
+        report.append(String.format("%nErrors: %s", getErrors()));
+        return report.toString();
+    }
+
+    static String category(final String error) {
+        return ERROR_CODE.matcher(error).matches() ? error : OTHER;
+    }
+
+    private static String percentiles(final LatencyHistogram histogram) {
+        return String.format("p50 %1$.2f ms, p99 %2$.2f ms, p999 %3$.2f ms, max %4$.2f ms",
+                histogram.getPercentile(50) / NANOS_PER_MILLI, histogram.getPercentile(99) / NANOS_PER_MILLI,
+                histogram.getPercentile(99.9) / NANOS_PER_MILLI, histogram.getMax() / NANOS_PER_MILLI);
+    }
+}
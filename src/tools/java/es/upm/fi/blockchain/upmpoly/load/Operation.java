@@ -0,0 +1,47 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+/**
+ * Kinds of requests sent by the load generator, named as in the mix of a {@link LoadConfig}.
+ */
+public enum Operation {
+    BUY("buy", false),
+    RENT("rent", false),
+    TRADE("trade", false),
+    QUERY("query", true);
+
+    private final String mixName;
+
+    private final boolean query;
+
+    Operation(final String mixName, final boolean query) {
+        this.mixName = mixName;
+        this.query = query;
+    }
+
+    /**
+     * @return the name of the operation in the mix
+     */
+    public String getMixName() {
+        return mixName;
+    }
+
+    /**
+     * @return true if the operation is evaluated, false if it is submitted for ordering
+     */
+    public boolean isQuery() {
+        return query;
+    }
+
+    /**
+     * @param name the name of an operation in the mix
+     * @return the operation
+     */
+    public static Operation fromMixName(final String name) {
+        for (Operation operation : values()) {
+            if (operation.mixName.equalsIgnoreCase(name.trim())) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + name);
+    }
+}
@@ -0,0 +1,159 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import es.upm.fi.blockchain.upmpoly.UpmPoly;
+import es.upm.fi.blockchain.upmpoly.sim.BlockResult;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.ValidationCode;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the requests against {@link UpmPoly} on a {@link BlockSimulator} with an in-memory world state.
+ *
+ * Submitted transactions are queued and cut into blocks the way an ordering
+ * service does: a block is cut when it holds blockSize transactions or when
+ * blockTimeout has passed since its first transaction arrived. Each block is
+ * endorsed and validated by the simulator, and the futures of its transactions
+ * complete once it is committed, so the latency of a transaction includes the
+ * time it waited for its block. Queries are evaluated against the committed
+ * state on a pool of endorsers without being ordered; the simulator keeps them
+ * from running while a block is committed, so they never see half a block.
+ */
+public final class SimulatorBackend implements Backend {
+
+    private static final long POLL_MILLIS = 50;
+
+    private final BlockSimulator simulator;
+
+    private final ExecutorService queries;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+
+    private final int blockSize;
+
+    private final long blockTimeoutNanos;
+
+    private final Thread cutter;
+
+    private volatile boolean running = true;
+
+    public SimulatorBackend(final LoadConfig config) {
+        this.simulator = new BlockSimulator(new UpmPoly(), new WorldState(false), config.getEndorsers());
+        this.queries = Executors.newFixedThreadPool(config.getEndorsers());
+        this.blockSize = config.getBlockSize();
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getBlockTimeoutMillis());
+        this.cutter = new Thread(this::cutBlocks, "block-cutter");
+        this.cutter.setDaemon(true);
+        this.cutter.start();
+    }
+
+    @Override
+    public CompletableFuture<String> submit(final Proposal proposal) {
+        Pending pending = new Pending(proposal);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("The backend is closed"));
+        } else {
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    @Override
+    public CompletableFuture<String> evaluate(final Proposal proposal) {
+        return CompletableFuture.supplyAsync(() -> errorCode(simulator.evaluate(proposal)), queries);
+    }
+
+    /**
+     * @return the simulator the requests run on, for its statistics and state
+     */
+    public BlockSimulator getSimulator() {
+        return simulator;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            cutter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queries.shutdown();
+        simulator.close();
+    }
+
+    private void cutBlocks() {
+        List<Pending> block = new ArrayList<Pending>(blockSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                block.add(first);
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (block.size() < blockSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    block.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!block.isEmpty()) {
+                commit(block);
+                block.clear();
+            }
+        }
+    }
+
+    private void commit(final List<Pending> block) {
+        List<Proposal> proposals = new ArrayList<Proposal>(block.size());
+        for (Pending pending : block) {
+            proposals.add(pending.proposal);
+        }
+
+        try {
+            BlockResult result = simulator.submit(proposals);
+            for (int i = 0; i < block.size(); i++) {
+                block.get(i).future.complete(errorCode(result.getOutcomes().get(i)));
+            }
+        } catch (RuntimeException e) {
+            for (Pending pending : block) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static String errorCode(final TxOutcome outcome) {
+        if (outcome.isValid()) {
+            return null;
+        }
+        return outcome.getCode() == ValidationCode.ENDORSEMENT_FAILURE ? outcome.getError() : outcome.getCode().name();
+    }
+
+    private static final class Pending {
+
+        private final Proposal proposal;
+
+        private final CompletableFuture<String> future = new CompletableFuture<String>();
+
+        Pending(final Proposal proposal) {
+            this.proposal = proposal;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import es.upm.fi.blockchain.upmpoly.AssetBatch;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Model of a game played by the load generator.
+ *
+ * The game has players player0.. and faculties faculty0.., all players start
+ * with the same credit and all faculties cost the same. Moves pick their player
+ * uniformly and their faculty with a Zipf distribution, faculty0 being the most
+ * popular, so that the contention on popular faculties is the one of a real
+ * game. Trades offer a markup on the sale price. Queries read a player, a
+ * faculty or the leaderboard.
+ *
+ * A workload is shared by all clients, each drawing from its own random source.
+ */
+public final class Workload {
+
+    static final int START_CREDIT = 1000000;
+
+    static final int SALE_PRICE = 1000;
+
+    static final int RENTAL_FEE = 100;
+
+    static final int TRADE_PRICE = 1500;
+
+    static final int TOP_PLAYERS = 10;
+
+    private final int players;
+
+    private final int faculties;
+
+    private final ZipfSampler popularity;
+
+    private final Operation[] operations;
+
+    private final int[] cumulativeWeights;
+
+    public Workload(final LoadConfig config) {
+        this.players = config.getPlayers();
+        this.faculties = config.getFaculties();
+        this.popularity = new ZipfSampler(faculties, config.getZipfExponent());
+
+        List<Operation> weighted = new ArrayList<Operation>();
+        List<Integer> cumulative = new ArrayList<Integer>();
+        int total = 0;
+        for (Map.Entry<Operation, Integer> weight : config.getMix().entrySet()) {
+            if (weight.getValue() > 0) {
+                total += weight.getValue();
+                weighted.add(weight.getKey());
+                cumulative.add(total);
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The mix has no operation with a positive weight");
+        }
+
+        this.operations = weighted.toArray(new Operation[0]);
+        this.cumulativeWeights = new int[cumulative.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] = cumulative.get(i);
+        }
+    }
+
+    /**
+     * @return the players and faculties of the game, before any move
+     */
+    public AssetBatch assets() {
+        List<Player> newPlayers = new ArrayList<Player>(players);
+        for (int i = 0; i < players; i++) {
+            newPlayers.add(new Player(player(i), "Player " + i, START_CREDIT, false));
+        }
+        List<Faculty> newFaculties = new ArrayList<Faculty>(faculties);
+        for (int i = 0; i < faculties; i++) {
+            newFaculties.add(new Faculty(faculty(i), "Faculty " + i, SALE_PRICE, RENTAL_FEE, null));
+        }
+        return new AssetBatch(newPlayers, newFaculties);
+    }
+
+    /**
+     * @param random the source of randomness of the calling client
+     * @return the kind of the next request, drawn with the weights of the mix
+     */
+    public Operation nextOperation(final SplittableRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * @param operation the kind of the request
+     * @param random the source of randomness of the calling client
+     * @return the request
+     */
+    public Proposal next(final Operation operation, final SplittableRandom random) {
+        String player = player(random.nextInt(players));
+        String faculty = faculty(popularity.next(random));
+        switch (operation) {
+            case BUY:
+                return new Proposal("buyFaculty", player, faculty);
+            case RENT:
+                return new Proposal("payRental", faculty, player);
+            case TRADE:
+                return new Proposal("tradeFaculty", faculty, player, Integer.toString(TRADE_PRICE));
+            case QUERY:
+                return query(random.nextInt(3), player, faculty);
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private static Proposal query(final int kind, final String player, final String faculty) {
+        if (kind == 0) {
+            return new Proposal("ReadPlayer", player);
+        }
+        if (kind == 1) {
+            return new Proposal("ReadFaculty", faculty);
+        }
+        return new Proposal("GetTopPlayers", Integer.toString(TOP_PLAYERS));
+    }
+
+    private static String player(final int index) {
+        return "player" + index;
+    }
+
+    private static String faculty(final int index) {
+        return "faculty" + index;
+    }
+}
@@ -0,0 +1,47 @@
+package es.upm.fi.blockchain.upmpoly.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks from 0 to n - 1 with a Zipf distribution: rank k is drawn with a
+ * probability proportional to 1 / (k + 1)^s.
+ *
+ * The cumulative distribution is computed once and every draw is a binary
+ * search in it, so sampling costs O(log n) whatever the exponent. An exponent
+ * of 0 draws the ranks uniformly.
+ */
+public final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    /**
+     * @param n the number of ranks
+     * @param exponent the exponent s of the distribution, 0 or more
+     */
+    public ZipfSampler(final int n, final double exponent) {
+        if (n <= 0 || exponent < 0) {
+            throw new IllegalArgumentException(String.format("Zipf needs at least one rank and an exponent of 0 or more, got %1$d and %2$s", n, exponent));
+        }
+
+        cumulative = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    /**
+     * @param random the source of randomness of the calling thread
+     * @return a rank, 0 being the most frequent
+     */
+    public int next(final SplittableRandom random) {
+        int found = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = found >= 0 ? found : -found - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
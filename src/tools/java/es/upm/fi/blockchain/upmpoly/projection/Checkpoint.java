@@ -0,0 +1,88 @@
+package es.upm.fi.blockchain.upmpoly.projection;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Position of a projection in the event stream.
+ *
+ * Holds the last block the projection applied events from, and the transactions
+ * of that block already applied. Events are delivered in block order, so every
+ * event of an earlier block is covered as well. A consumer resumes the stream
+ * from {@link #getResumeBlock()}, the events of that block already applied are
+ * skipped.
+ */
+public final class Checkpoint {
+
+    public static final Checkpoint START = new Checkpoint(-1, Collections.<String>emptySet());
+
+    private final long blockNumber;
+
+    private final Set<String> transactionIds;
+
+    public Checkpoint(@JsonProperty("blockNumber") final long blockNumber, @JsonProperty("transactionIds") final Set<String> transactionIds) {
+        this.blockNumber = blockNumber;
+        this.transactionIds = Collections.unmodifiableSet(new TreeSet<String>(transactionIds));
+    }
+
+    /**
+     * @return the last block with applied events, -1 before the first one
+     */
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    /**
+     * @return the applied transactions of the last block
+     */
+    public Set<String> getTransactionIds() {
+        return transactionIds;
+    }
+
+    /**
+     * @return the block to request the event stream from
+     */
+    public long getResumeBlock() {
+        return Math.max(blockNumber, 0);
+    }
+
+    /**
+     * @param block the block of the event
+     * @param transactionId the transaction of the event
+     * @return true if the event is already covered by the checkpoint
+     */
+    public boolean covers(final long block, final String transactionId) {
+        return block < blockNumber || (block == blockNumber && transactionIds.contains(transactionId));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        Checkpoint other = (Checkpoint) obj;
+
+        return getBlockNumber() == other.getBlockNumber()
+                && Objects.equals(getTransactionIds(), other.getTransactionIds());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getBlockNumber(), getTransactionIds());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [blockNumber=" + blockNumber
+                + ", transactionIds=" + transactionIds + "]";
+    }
+}
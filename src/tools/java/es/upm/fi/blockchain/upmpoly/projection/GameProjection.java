@@ -0,0 +1,289 @@
+package es.upm.fi.blockchain.upmpoly.projection;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import es.upm.fi.blockchain.upmpoly.ChangeEvent;
+import es.upm.fi.blockchain.upmpoly.CreditDelta;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Off-chain read model of the game, kept up to date from the contract change events.
+ *
+ * The projection holds the last value of every player and faculty record and
+ * an index of the faculties owned by every player, so a user interface can
+ * query them without reading the ledger. It is fed the {@link ChangeEvent#NAME}
+ * events of the chaincode in block order, as delivered by the chaincode event
+ * stream of the gateway or by the simulator:
+ *
+ * <pre>
+ * GameProjection projection = GameProjection.load(file);
+ * for (ChaincodeEvent event : network.getChaincodeEvents(chaincode, projection.getCheckpoint().getResumeBlock())) {
+ *     projection.apply(event.getBlockNumber(), event.getTransactionId(), event.getEventName(), event.getPayload());
+ *     ...
+ *     projection.save(file);
+ * }
+ * </pre>
+ *
+ * Applying an event moves the {@link Checkpoint}. Saving writes the records
+ * together with the checkpoint, so a projection loaded back resumes exactly
+ * after the last applied event: the stream is requested again from the block
+ * of the checkpoint and the events already applied are skipped. Under the
+ * delta credit model the pending credit deltas of an event are added to the
+ * credit of their player, so the credit of a player is the one getMoney
+ * reports rather than the one of its record on the ledger.
+ *
+ * A projection follows a single game, the events of other games are skipped.
+ * Events without a game belong to the default game.
+ *
+ * Projections are thread safe: queries can run while events are applied.
+ */
+public final class GameProjection {
+
+    private static final Genson GENSON = new GensonBuilder().setSkipNull(true).create();
+
+    private static final String DEFAULT_GAME = "default";
+
+    private final String gameId;
+
+    private final Map<String, Player> players = new TreeMap<String, Player>();
+
+    private final Map<String, Faculty> faculties = new TreeMap<String, Faculty>();
+
+    private final Map<String, Set<String>> owned = new HashMap<String, Set<String>>();
+
+    private long blockNumber;
+
+    private final Set<String> transactionIds = new HashSet<String>();
+
+    private long appliedEvents;
+
+    public GameProjection() {
+        this(DEFAULT_GAME);
+    }
+
+    /**
+     * @param gameId the id of the game to follow
+     */
+    public GameProjection(final String gameId) {
+        this(gameId, Checkpoint.START);
+    }
+
+    private GameProjection(final String gameId, final Checkpoint checkpoint) {
+        this.gameId = gameId;
+        this.blockNumber = checkpoint.getBlockNumber();
+        this.transactionIds.addAll(checkpoint.getTransactionIds());
+    }
+
+    /**
+     * @param file the file written by {@link #save(Path)}
+     * @return the saved projection, an empty projection of the default game if the file does not exist
+     * @throws IOException if the file can not be read
+     */
+    public static GameProjection load(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new GameProjection();
+        }
+
+        ProjectionSnapshot snapshot;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            snapshot = GENSON.deserialize(reader, ProjectionSnapshot.class);
+        }
+
+        String game = snapshot.getGameId() == null ? DEFAULT_GAME : snapshot.getGameId();
+        GameProjection projection = new GameProjection(game, snapshot.getCheckpoint());
+        for (Player player : snapshot.getPlayers()) {
+            projection.putPlayer(player);
+        }
+        for (Faculty faculty : snapshot.getFaculties()) {
+            projection.putFaculty(faculty);
+        }
+        return projection;
+    }
+
+    /**
+     * Writes the records and the checkpoint of the projection, replacing the file atomically.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can not be written
+     */
+    public void save(final Path file) throws IOException {
+        ProjectionSnapshot snapshot = snapshot();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            GENSON.serialize(snapshot, writer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Applies one chaincode event.
+     *
+     * @param block the block of the transaction that set the event
+     * @param transactionId the transaction that set the event
+     * @param eventName the name of the event
+     * @param payload the payload of the event
+     * @return true if the event changed the projection, false if it was skipped
+     */
+    public synchronized boolean apply(final long block, final String transactionId, final String eventName, final byte[] payload) {
+        if (block < blockNumber || (block == blockNumber && transactionIds.contains(transactionId))) {
+            return false;
+        }
+        if (block > blockNumber) {
+            blockNumber = block;
+            transactionIds.clear();
+        }
+        transactionIds.add(transactionId);
+
+        if (!ChangeEvent.NAME.equals(eventName)) {
+            return false;
+        }
+
+        ChangeEvent event = ChangeEvent.fromPayload(payload);
+        if (!gameId.equals(event.getGameId() == null ? DEFAULT_GAME : event.getGameId())) {
+            return false;
+        }
+        if (event.getPlayers() != null) {
+            for (Player player : event.getPlayers()) {
+                putPlayer(player);
+            }
+        }
+        if (event.getFaculties() != null) {
+            for (Faculty faculty : event.getFaculties()) {
+                putFaculty(faculty);
+            }
+        }
+        if (event.getCredits() != null) {
+            for (CreditDelta credit : event.getCredits()) {
+                Player player = players.get(credit.getPlayerID());
+                if (player != null) {
+                    putPlayer(new Player(player.getPlayerID(), player.getName(), player.getCredit() + credit.getAmount(), player.getIsEliminated()));
+                }
+            }
+        }
+        appliedEvents++;
+        return true;
+    }
+
+    /**
+     * @return the id of the game followed by the projection
+     */
+    public String getGameId() {
+        return gameId;
+    }
+
+    public synchronized Checkpoint getCheckpoint() {
+        return new Checkpoint(blockNumber, transactionIds);
+    }
+
+    /**
+     * @return the number of change events applied since the projection was created or loaded
+     */
+    public synchronized long getAppliedEvents() {
+        return appliedEvents;
+    }
+
+    /**
+     * @param playerId the Id of the player
+     * @return the player, null if it does not exist
+     */
+    public synchronized Player getPlayer(final String playerId) {
+        return players.get(playerId);
+    }
+
+    /**
+     * @param facultyId the Id of the faculty
+     * @return the faculty, null if it does not exist
+     */
+    public synchronized Faculty getFaculty(final String facultyId) {
+        return faculties.get(facultyId);
+    }
+
+    /**
+     * @return every player, ordered by Id
+     */
+    public synchronized List<Player> getPlayers() {
+        return new ArrayList<Player>(players.values());
+    }
+
+    /**
+     * @return the players not eliminated, ordered by Id
+     */
+    public synchronized List<Player> getActivePlayers() {
+        List<Player> active = new ArrayList<Player>();
+        for (Player player : players.values()) {
+            if (!player.getIsEliminated()) {
+                active.add(player);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return every faculty, ordered by Id
+     */
+    public synchronized List<Faculty> getFaculties() {
+        return new ArrayList<Faculty>(faculties.values());
+    }
+
+    /**
+     * @param ownerId the Id of the player
+     * @return the faculties owned by the player, ordered by Id
+     */
+    public synchronized List<Faculty> getFacultiesOwnedBy(final String ownerId) {
+        Set<String> ids = owned.get(ownerId);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+
+        List<Faculty> result = new ArrayList<Faculty>(ids.size());
+        for (String id : ids) {
+            result.add(faculties.get(id));
+        }
+        return result;
+    }
+
+    private synchronized ProjectionSnapshot snapshot() {
+        return new ProjectionSnapshot(gameId, getCheckpoint(), getPlayers(), getFaculties());
+    }
+
+    private void putPlayer(final Player player) {
+        players.put(player.getPlayerID(), player);
+    }
+
+    private void putFaculty(final Faculty faculty) {
+        Faculty old = faculties.put(faculty.getFacultyID(), faculty);
+        if (old != null && old.getOwner() != null) {
+            Set<String> ids = owned.get(old.getOwner());
+            ids.remove(faculty.getFacultyID());
+            if (ids.isEmpty()) {
+                owned.remove(old.getOwner());
+            }
+        }
+        if (faculty.getOwner() != null) {
+            Set<String> ids = owned.get(faculty.getOwner());
+            if (ids == null) {
+                ids = new TreeSet<String>();
+                owned.put(faculty.getOwner(), ids);
+            }
+            ids.add(faculty.getFacultyID());
+        }
+    }
+}
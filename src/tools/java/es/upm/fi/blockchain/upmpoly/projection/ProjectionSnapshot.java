@@ -0,0 +1,45 @@
+package es.upm.fi.blockchain.upmpoly.projection;
+
+import com.owlike.genson.annotation.JsonProperty;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+
+import java.util.List;
+
+/**
+ * Saved state of a {@link GameProjection}: its game, its checkpoint and every record it holds.
+ */
+public final class ProjectionSnapshot {
+
+    private final String gameId;
+
+    private final Checkpoint checkpoint;
+
+    private final List<Player> players;
+
+    private final List<Faculty> faculties;
+
+    public ProjectionSnapshot(@JsonProperty("gameId") final String gameId, @JsonProperty("checkpoint") final Checkpoint checkpoint,
+                              @JsonProperty("players") final List<Player> players, @JsonProperty("faculties") final List<Faculty> faculties) {
+        this.gameId = gameId;
+        this.checkpoint = checkpoint;
+        this.players = players;
+        this.faculties = faculties;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    public List<Faculty> getFaculties() {
+        return faculties;
+    }
+}
@@ -0,0 +1,54 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import java.util.List;
+
+/**
+ * Outcomes of the transactions of one simulated block, in block order.
+ */
+public final class BlockResult {
+
+    private final long blockNumber;
+
+    private final List<TxOutcome> outcomes;
+
+    private final long endorseNanos;
+
+    private final long validateNanos;
+
+    BlockResult(final long blockNumber, final List<TxOutcome> outcomes, final long endorseNanos, final long validateNanos) {
+        this.blockNumber = blockNumber;
+        this.outcomes = outcomes;
+        this.endorseNanos = endorseNanos;
+        this.validateNanos = validateNanos;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public List<TxOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public long getEndorseNanos() {
+        return endorseNanos;
+    }
+
+    public long getValidateNanos() {
+        return validateNanos;
+    }
+
+    /**
+     * @param code the validation code
+     * @return the number of transactions of the block with that code
+     */
+    public int count(final ValidationCode code) {
+        int count = 0;
+        for (TxOutcome outcome : outcomes) {
+            if (outcome.getCode() == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,287 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.contract.ContractInterface;
+import org.hyperledger.fabric.contract.annotation.Transaction;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs blocks of transactions of a contract against a {@link WorldState} the way a Fabric channel does.
+ *
+ * Every block goes through the two phases of the execute-order-validate model:
+ * <ol>
+ * <li>endorse: all the proposals of the block are executed concurrently on a
+ * pool of threads, each on its own {@link InMemoryChaincodeStub}, against the
+ * state committed by the previous block;</li>
+ * <li>validate: the endorsed transactions are checked one by one in block order
+ * with the peer's MVCC rules. A transaction is invalid if a key it read, or the
+ * results of a scan it ran, changed since it was endorsed, which includes the
+ * writes of the valid transactions before it in the same block. The write sets
+ * of the valid transactions are committed as they are validated.</li>
+ * </ol>
+ *
+ * Evaluations may run on other threads while a block is submitted. They hold
+ * a read lock for their whole execution and the validation phase holds the
+ * write lock, so an evaluation sees the state of one block, never a block
+ * half committed.
+ *
+ * Transaction functions are found by name among the {@link Transaction}
+ * methods of the contract and their string arguments converted to the
+ * parameter types, as the contract router does.
+ */
+public final class BlockSimulator implements AutoCloseable {
+
+    private final ContractInterface contract;
+
+    private final WorldState state;
+
+    private final ExecutorService endorsers;
+
+    private final Map<String, Method> functions = new HashMap<String, Method>();
+
+    private final SimulationStats stats = new SimulationStats();
+
+    private final ReadWriteLock commits = new ReentrantReadWriteLock();
+
+    /**
+     * @param contract the contract to run
+     * @param state the state of the channel
+     * @param threads the number of transactions endorsed at the same time
+     */
+    public BlockSimulator(final ContractInterface contract, final WorldState state, final int threads) {
+        this.contract = contract;
+        this.state = state;
+        this.endorsers = Executors.newFixedThreadPool(threads);
+
+        for (Method method : contract.getClass().getMethods()) {
+            Transaction transaction = method.getAnnotation(Transaction.class);
+            if (transaction != null) {
+                functions.put(transaction.name().isEmpty() ? method.getName() : transaction.name(), method);
+            }
+        }
+    }
+
+    public WorldState getState() {
+        return state;
+    }
+
+    public SimulationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Endorses, orders and validates one block.
+     *
+     * @param proposals the transactions of the block, in block order
+     * @return the outcome of every transaction of the block
+     */
+    public synchronized BlockResult submit(final List<Proposal> proposals) {
+        long blockNumber = state.nextBlock();
+
+        long start = System.nanoTime();
+        List<Future<Endorsement>> futures = new ArrayList<Future<Endorsement>>(proposals.size());
+        for (Proposal proposal : proposals) {
+            futures.add(endorsers.submit(new Callable<Endorsement>() {
+                @Override
+                public Endorsement call() {
+                    return endorse(proposal);
+                }
+            }));
+        }
+        List<Endorsement> endorsements = new ArrayList<Endorsement>(proposals.size());
+        for (Future<Endorsement> future : futures) {
+            endorsements.add(await(future));
+        }
+        long endorsed = System.nanoTime();
+
+        List<TxOutcome> outcomes = new ArrayList<TxOutcome>(endorsements.size());
+        commits.writeLock().lock();
+        try {
+            for (int txNumber = 0; txNumber < endorsements.size(); txNumber++) {
+                outcomes.add(validate(endorsements.get(txNumber), new Version(blockNumber, txNumber)));
+            }
+            state.endBlock(blockNumber);
+        } finally {
+            commits.writeLock().unlock();
+        }
+        long validated = System.nanoTime();
+
+        BlockResult block = new BlockResult(blockNumber, outcomes, endorsed - start, validated - endorsed);
+        stats.add(block);
+        return block;
+    }
+
+    /**
+     * Executes a proposal against the committed state without ordering it, as a
+     * client evaluating a query does. The block being validated, if any, is
+     * committed before or after the evaluation, never while it runs.
+     *
+     * @param proposal the transaction to evaluate
+     * @return the outcome of the endorsement, valid unless the function failed
+     */
+    public TxOutcome evaluate(final Proposal proposal) {
+        Endorsement endorsement;
+        commits.readLock().lock();
+        try {
+            endorsement = endorse(proposal);
+        } finally {
+            commits.readLock().unlock();
+        }
+        InMemoryChaincodeStub stub = endorsement.stub;
+        ValidationCode code = endorsement.error == null ? ValidationCode.VALID : ValidationCode.ENDORSEMENT_FAILURE;
+        return new TxOutcome(stub.getTxId(), proposal, code, endorsement.result, endorsement.error, stub.getEvent());
+    }
+
+    @Override
+    public void close() {
+        endorsers.shutdown();
+    }
+
+    private Endorsement endorse(final Proposal proposal) {
+        String txId = UUID.randomUUID().toString().replace("-", "");
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, txId, proposal.getFunction(), proposal.getArgs());
+        for (Map.Entry<String, byte[]> entry : proposal.getTransient().entrySet()) {
+            stub.putTransient(entry.getKey(), entry.getValue());
+        }
+
+        Context ctx = contract.createContext(stub);
+        try {
+            Method method = functions.get(proposal.getFunction());
+            if (method == null) {
+                contract.unknownTransaction(ctx);
+                return new Endorsement(proposal, stub, null, "Undefined contract method called");
+            }
+
+            contract.beforeTransaction(ctx);
+            Object result = method.invoke(contract, arguments(method, ctx, proposal.getArgs()));
+            contract.afterTransaction(ctx, result);
+            return new Endorsement(proposal, stub, result, null);
+        } catch (InvocationTargetException e) {
+            return new Endorsement(proposal, stub, null, describe(e.getCause()));
+        } catch (IllegalAccessException | RuntimeException e) {
+            return new Endorsement(proposal, stub, null, describe(e));
+        }
+    }
+
+    private TxOutcome validate(final Endorsement endorsement, final Version version) {
+        InMemoryChaincodeStub stub = endorsement.stub;
+        ValidationCode code = ValidationCode.VALID;
+        if (endorsement.error != null) {
+            code = ValidationCode.ENDORSEMENT_FAILURE;
+        } else if (!readsUnchanged(stub)) {
+            code = ValidationCode.MVCC_READ_CONFLICT;
+        } else if (!rangesUnchanged(stub)) {
+            code = ValidationCode.PHANTOM_READ_CONFLICT;
+        } else {
+            state.commit(stub.getWriteSet(), version, stub.getTxId(), stub.getTxTimestamp());
+        }
+
+        return new TxOutcome(stub.getTxId(), endorsement.proposal, code, endorsement.result, endorsement.error, stub.getEvent());
+    }
+
+    private boolean readsUnchanged(final InMemoryChaincodeStub stub) {
+        for (Map.Entry<String, Version> read : stub.getReadSet().entrySet()) {
+            VersionedValue current = state.get(read.getKey());
+            if (!Objects.equals(current == null ? null : current.getVersion(), read.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean rangesUnchanged(final InMemoryChaincodeStub stub) {
+        for (RangeRead read : stub.getRangeReads()) {
+            if (!read.isUnchanged(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object[] arguments(final Method method, final Context ctx, final List<String> args) {
+        Class<?>[] types = method.getParameterTypes();
+        if (types.length != args.size() + 1) {
+            throw new IllegalArgumentException(String.format("%1$s takes %2$d arguments, %3$d given",
+                    method.getName(), types.length - 1, args.size()));
+        }
+
+        Object[] values = new Object[types.length];
+        values[0] = ctx;
+        for (int i = 1; i < types.length; i++) {
+            values[i] = convert(types[i], args.get(i - 1));
+        }
+        return values;
+    }
+
+    private static Object convert(final Class<?> type, final String arg) {
+        if (type == String.class) {
+            return arg;
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.valueOf(arg);
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.valueOf(arg);
+        }
+        if (type == double.class || type == Double.class) {
+            return Double.valueOf(arg);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.valueOf(arg);
+        }
+        throw new IllegalArgumentException("Unsupported parameter type " + type.getName());
+    }
+
+    private static String describe(final Throwable error) {
+        if (error instanceof ChaincodeException && ((ChaincodeException) error).getPayload() != null) {
+            return new String(((ChaincodeException) error).getPayload(), StandardCharsets.UTF_8);
+        }
+        return error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+    }
+
+    private static Endorsement await(final Future<Endorsement> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while endorsing a block", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Endorsement failed", e.getCause());
+        }
+    }
+
+    private static final class Endorsement {
+
+        private final Proposal proposal;
+
+        private final InMemoryChaincodeStub stub;
+
+        private final Object result;
+
+        private final String error;
+
+        Endorsement(final Proposal proposal, final InMemoryChaincodeStub stub, final Object result, final String error) {
+            this.proposal = proposal;
+            this.stub = stub;
+            this.result = result;
+            this.error = error;
+        }
+    }
+}
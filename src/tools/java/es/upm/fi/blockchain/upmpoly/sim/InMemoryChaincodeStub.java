@@ -0,0 +1,507 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Chaincode stub simulating one transaction against a {@link WorldState}.
+ *
+ * Reads go to the committed state and are recorded in the read set with the
+ * version they returned; scans are recorded as {@link RangeRead}s. Writes are
+ * only recorded in the write set, so, as on a peer, a transaction does not see
+ * its own writes and nothing reaches the state until the transaction is
+ * validated and committed by the {@link BlockSimulator}.
+ *
+ * The creator is a fixed Org1MSP client with a self-signed certificate, which
+ * is enough for the contract API to build the client identity of a context.
+ * Private data, rich queries and chaincode to chaincode calls are not simulated.
+ */
+public final class InMemoryChaincodeStub implements ChaincodeStub {
+
+    public static final String CHANNEL = "mychannel";
+
+    public static final String MSP_ID = "Org1MSP";
+
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+
+    private static final String CLIENT_CERTIFICATE = "-----BEGIN CERTIFICATE-----\n"
+            + "MIIB4DCCAYWgAwIBAgIUak3XNpz2O6hspenDMPwX1HDZG0UwCgYIKoZIzj0EAwIw\n"
+            + "RDELMAkGA1UEBhMCRVMxEDAOBgNVBAoMB3VwbXBvbHkxDzANBgNVBAsMBmNsaWVu\n"
+            + "dDESMBAGA1UEAwwJc2ltdWxhdG9yMCAXDTI2MTAxNzIxMjUwMFoYDzIxMjYwOTIz\n"
+            + "MjEyNTAwWjBEMQswCQYDVQQGEwJFUzEQMA4GA1UECgwHdXBtcG9seTEPMA0GA1UE\n"
+            + "CwwGY2xpZW50MRIwEAYDVQQDDAlzaW11bGF0b3IwWTATBgcqhkjOPQIBBggqhkjO\n"
+            + "PQMBBwNCAATBXNEfUwxkM5hEV8RI/z9sm5kiqSBiQ28iyJ+hD0Vq+fGmw2z1tqjj\n"
+            + "iMHbd2ShKwK6PjM/TaLm5koO6cvHw/Pko1MwUTAdBgNVHQ4EFgQU7ElxmBebYkfU\n"
+            + "NsAcv/BY2XfVN70wHwYDVR0jBBgwFoAU7ElxmBebYkfUNsAcv/BY2XfVN70wDwYD\n"
+            + "VR0TAQH/BAUwAwEB/zAKBggqhkjOPQQDAgNJADBGAiEA2u4CBuYoAtw9SXE6nC2g\n"
+            + "Y/KVB7/K1ujHR4Vre+R15DkCIQCI7t8TmczLbfFcXIKqutyujnujH/FqLna9bhvo\n"
+            + "pQNQHw==\n"
+            + "-----END CERTIFICATE-----\n";
+
+    private static final byte[] CREATOR = SerializedIdentity.newBuilder()
+            .setMspid(MSP_ID)
+            .setIdBytes(ByteString.copyFromUtf8(CLIENT_CERTIFICATE))
+            .build()
+            .toByteArray();
+
+    private final WorldState state;
+
+    private final String txId;
+
+    private final List<byte[]> args;
+
+    private final Instant timestamp;
+
+    private final Map<String, byte[]> transientData = new HashMap<String, byte[]>();
+
+    private final Map<String, Version> readSet = new LinkedHashMap<String, Version>();
+
+    private final List<RangeRead> rangeReads = new ArrayList<RangeRead>();
+
+    private final TreeMap<String, byte[]> writeSet = new TreeMap<String, byte[]>();
+
+    private ChaincodeEvent event;
+
+    /**
+     * @param state the committed state the transaction runs against
+     * @param txId the id of the transaction
+     * @param function the name of the transaction function
+     * @param parameters the arguments of the transaction function
+     */
+    public InMemoryChaincodeStub(final WorldState state, final String txId, final String function, final List<String> parameters) {
+        this.state = state;
+        this.txId = txId;
+        this.timestamp = Instant.now();
+
+        List<byte[]> arguments = new ArrayList<byte[]>(parameters.size() + 1);
+        arguments.add(function.getBytes(StandardCharsets.UTF_8));
+        for (String parameter : parameters) {
+            arguments.add(parameter.getBytes(StandardCharsets.UTF_8));
+        }
+        this.args = Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * @param key the key of the transient entry
+     * @param value the value of the transient entry
+     */
+    public void putTransient(final String key, final byte[] value) {
+        transientData.put(key, value);
+    }
+
+    /**
+     * @return the committed version of every key read, null for keys that did not exist
+     */
+    public Map<String, Version> getReadSet() {
+        return readSet;
+    }
+
+    /**
+     * @return the scans run by the transaction
+     */
+    public List<RangeRead> getRangeReads() {
+        return rangeReads;
+    }
+
+    /**
+     * @return the value written to every key in key order, null for deleted keys
+     */
+    public Map<String, byte[]> getWriteSet() {
+        return writeSet;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> strings = new ArrayList<String>(args.size());
+        for (byte[] arg : args) {
+            strings.add(new String(arg, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    @Override
+    public String getFunction() {
+        return getStringArgs().get(0);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        List<String> strings = getStringArgs();
+        return strings.subList(1, strings.size());
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    @Override
+    public String getChannelId() {
+        return CHANNEL;
+    }
+
+    @Override
+    public Chaincode.Response invokeChaincode(final String chaincodeName, final List<byte[]> arguments, final String channel) {
+        throw new UnsupportedOperationException("Chaincode to chaincode calls are not simulated");
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        VersionedValue value = state.get(key);
+        if (!readSet.containsKey(key)) {
+            readSet.put(key, value == null ? null : value.getVersion());
+        }
+        return value == null ? new byte[0] : value.getValue();
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        throw new UnsupportedOperationException("Key level endorsement is not simulated");
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        validateKey(key);
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        writeSet.put(key, value);
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw new UnsupportedOperationException("Key level endorsement is not simulated");
+    }
+
+    @Override
+    public void delState(final String key) {
+        validateKey(key);
+        writeSet.put(key, null);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        CompositeKey.validateSimpleKeys(startKey, endKey);
+        return scan(startOf(startKey), endOf(endKey), null);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey,
+            final int pageSize, final String bookmark) {
+        CompositeKey.validateSimpleKeys(startKey, endKey);
+        String start = bookmark == null || bookmark.isEmpty() ? startOf(startKey) : bookmark;
+        return page(start, endOf(endKey), null, pageSize);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return getStateByPartialCompositeKey(parsePartialKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        return getStateByPartialCompositeKey(new CompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        String prefix = compositeKey.toString();
+        return scan(prefix, null, prefix);
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey,
+            final int pageSize, final String bookmark) {
+        String prefix = compositeKey.toString();
+        String start = bookmark == null || bookmark.isEmpty() ? prefix : bookmark;
+        return page(start, null, prefix, pageSize);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        throw new UnsupportedOperationException("Rich queries are not simulated");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize,
+            final String bookmark) {
+        throw new UnsupportedOperationException("Rich queries are not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return new ListIterator<KeyModification>(state.history(key));
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType,
+            final String... attributes) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw new UnsupportedOperationException("Private data is not simulated");
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("event name can not be nil string");
+        }
+        event = ChaincodeEvent.newBuilder()
+                .setTxId(txId)
+                .setEventName(name)
+                .setPayload(payload == null ? ByteString.EMPTY : ByteString.copyFrom(payload))
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        throw new UnsupportedOperationException("Proposals are not simulated");
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return CREATOR;
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return transientData;
+    }
+
+    @Override
+    public byte[] getBinding() {
+        throw new UnsupportedOperationException("Proposals are not simulated");
+    }
+
+    @Override
+    public String getMspId() {
+        return MSP_ID;
+    }
+
+    private static void validateKey(final String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be null or empty");
+        }
+    }
+
+    private static String startOf(final String startKey) {
+        return startKey == null || startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey;
+    }
+
+    private static String endOf(final String endKey) {
+        return endKey == null || endKey.isEmpty() ? null : endKey;
+    }
+
+    private static CompositeKey parsePartialKey(final String compositeKey) {
+        if (compositeKey != null && compositeKey.startsWith(CompositeKey.NAMESPACE)) {
+            return CompositeKey.parseCompositeKey(compositeKey);
+        }
+        return new CompositeKey(compositeKey);
+    }
+
+    private QueryResultsIterator<KeyValue> scan(final String startKey, final String endKey, final String prefix) {
+        RangeRead read = new RangeRead(startKey, endKey, prefix);
+        rangeReads.add(read);
+        return new ScanIterator(state.scan(startKey, endKey, prefix), read);
+    }
+
+    private QueryResultsIteratorWithMetadata<KeyValue> page(final String startKey, final String endKey, final String prefix,
+            final int pageSize) {
+        RangeRead read = new RangeRead(startKey, endKey, prefix);
+        rangeReads.add(read);
+
+        Iterator<Map.Entry<String, VersionedValue>> entries = state.scan(startKey, endKey, prefix);
+        List<KeyValue> records = new ArrayList<KeyValue>();
+        while (records.size() < pageSize && entries.hasNext()) {
+            Map.Entry<String, VersionedValue> entry = entries.next();
+            read.read(entry.getKey(), entry.getValue().getVersion());
+            records.add(new LedgerEntry(entry.getKey(), entry.getValue().getValue(), null, null));
+        }
+
+        String bookmark = "";
+        if (entries.hasNext()) {
+            bookmark = entries.next().getKey();
+        } else {
+            read.exhaust();
+        }
+
+        QueryResponseMetadata metadata = QueryResponseMetadata.newBuilder()
+                .setBookmark(bookmark)
+                .setFetchedRecordsCount(records.size())
+                .build();
+        return new ListIterator<KeyValue>(records, metadata);
+    }
+
+    /**
+     * Scan over the committed state recording every key handed to the transaction.
+     */
+    private static final class ScanIterator implements QueryResultsIterator<KeyValue>, Iterator<KeyValue> {
+
+        private final Iterator<Map.Entry<String, VersionedValue>> entries;
+
+        private final RangeRead read;
+
+        ScanIterator(final Iterator<Map.Entry<String, VersionedValue>> entries, final RangeRead read) {
+            this.entries = entries;
+            this.read = read;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (entries.hasNext()) {
+                return true;
+            }
+            read.exhaust();
+            return false;
+        }
+
+        @Override
+        public KeyValue next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, VersionedValue> entry = entries.next();
+            read.read(entry.getKey(), entry.getValue().getVersion());
+            return new LedgerEntry(entry.getKey(), entry.getValue().getValue(), null, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class ListIterator<T> implements QueryResultsIteratorWithMetadata<T>, QueryResultsIterator<T> {
+
+        private final List<T> results;
+
+        private final QueryResponseMetadata metadata;
+
+        ListIterator(final List<T> results) {
+            this(results, null);
+        }
+
+        ListIterator(final List<T> results, final QueryResponseMetadata metadata) {
+            this.results = results;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return results.iterator();
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Key/value pair handed out by the in-memory ledger, both for scans and for key history.
+ */
+final class LedgerEntry implements KeyValue, KeyModification {
+
+    private final String key;
+
+    private final byte[] value;
+
+    private final String txId;
+
+    private final Instant timestamp;
+
+    LedgerEntry(final String key, final byte[] value, final String txId, final Instant timestamp) {
+        this.key = key;
+        this.value = value;
+        this.txId = txId;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public byte[] getValue() {
+        return value == null ? new byte[0] : value;
+    }
+
+    @Override
+    public String getStringValue() {
+        return new String(getValue(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    @Override
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return value == null;
+    }
+}
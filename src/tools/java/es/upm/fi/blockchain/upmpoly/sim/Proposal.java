@@ -0,0 +1,55 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transaction proposal sent to the simulator: a function of the contract and its arguments.
+ */
+public final class Proposal {
+
+    private final String function;
+
+    private final List<String> args;
+
+    private final Map<String, byte[]> transientData = new HashMap<String, byte[]>();
+
+    public Proposal(final String function, final String... args) {
+        this(function, Arrays.asList(args));
+    }
+
+    public Proposal(final String function, final List<String> args) {
+        this.function = function;
+        this.args = Collections.unmodifiableList(args);
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public List<String> getArgs() {
+        return args;
+    }
+
+    public Map<String, byte[]> getTransient() {
+        return transientData;
+    }
+
+    /**
+     * @param key the key of the transient entry
+     * @param value the value of the transient entry
+     * @return this proposal
+     */
+    public Proposal withTransient(final String key, final byte[] value) {
+        transientData.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return function + args;
+    }
+}
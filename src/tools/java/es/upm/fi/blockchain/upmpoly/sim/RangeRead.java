@@ -0,0 +1,83 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keys and versions returned by one scan of a transaction, kept to detect phantom reads.
+ *
+ * A scan is valid if running it again on the state at commit time returns the
+ * same keys with the same versions, up to the last key the transaction read.
+ * If the transaction read the scan to its end, no key may have been added after
+ * that last key either.
+ */
+public final class RangeRead {
+
+    private final String startKey;
+
+    private final String endKey;
+
+    private final String prefix;
+
+    private final List<String> keys = new ArrayList<String>();
+
+    private final List<Version> versions = new ArrayList<Version>();
+
+    private boolean exhausted;
+
+    RangeRead(final String startKey, final String endKey, final String prefix) {
+        this.startKey = startKey;
+        this.endKey = endKey;
+        this.prefix = prefix;
+    }
+
+    public String getStartKey() {
+        return startKey;
+    }
+
+    public String getEndKey() {
+        return endKey;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    void read(final String key, final Version version) {
+        keys.add(key);
+        versions.add(version);
+    }
+
+    void exhaust() {
+        exhausted = true;
+    }
+
+    /**
+     * @param state the state to run the scan again on
+     * @return true if the scan returns the same results it returned to the transaction
+     */
+    boolean isUnchanged(final WorldState state) {
+        Iterator<Map.Entry<String, VersionedValue>> current = state.scan(startKey, endKey, prefix);
+        for (int i = 0; i < keys.size(); i++) {
+            if (!current.hasNext()) {
+                return false;
+            }
+            Map.Entry<String, VersionedValue> entry = current.next();
+            if (!entry.getKey().equals(keys.get(i)) || !Objects.equals(entry.getValue().getVersion(), versions.get(i))) {
+                return false;
+            }
+        }
+        return !exhausted || !current.hasNext();
+    }
+}
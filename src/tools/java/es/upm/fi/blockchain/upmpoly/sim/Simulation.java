@@ -0,0 +1,185 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import es.upm.fi.blockchain.upmpoly.AssetBatch;
+import es.upm.fi.blockchain.upmpoly.AssetCodec;
+import es.upm.fi.blockchain.upmpoly.BulkImport;
+import es.upm.fi.blockchain.upmpoly.BulkLimits;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.LedgerKeys;
+import es.upm.fi.blockchain.upmpoly.Player;
+import es.upm.fi.blockchain.upmpoly.UpmPoly;
+import es.upm.fi.blockchain.upmpoly.UpmPolyContext;
+import es.upm.fi.blockchain.upmpoly.projection.GameProjection;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the throughput and conflict rate of a game played on the simulator.
+ *
+ * Creates the players and faculties of every game with BulkCreate transactions,
+ * split by {@link BulkImport} and resubmitted when they conflict, then runs
+ * blocks of buyFaculty and payRental moves between random players and faculties
+ * of random games and prints the totals of the game blocks. A single game is
+ * played in the default game, several games are created first. The change
+ * events of every valid transaction feed a {@link GameProjection} of the first
+ * game, which is checked against its records in the final world state.
+ *
+ * <pre>
+ * Simulation [players] [faculties] [blocks] [block size] [endorsing threads] [games]
+ * </pre>
+ */
+public final class Simulation {
+
+    private static final int START_CREDIT = 1000000;
+
+    private static final int SALE_PRICE = 1000;
+
+    private static final int RENTAL_FEE = 100;
+
+    private Simulation() {
+    }
+
+    public static void main(final String[] args) {
+        int players = argument(args, 0, 1000);
+        int faculties = argument(args, 1, 100);
+        int blocks = argument(args, 2, 100);
+        int blockSize = argument(args, 3, 100);
+        int threads = argument(args, 4, Runtime.getRuntime().availableProcessors());
+        int games = argument(args, 5, 1);
+
+        List<String> gameIds = new ArrayList<String>();
+        for (int i = 0; i < games; i++) {
+            gameIds.add(games == 1 ? UpmPolyContext.DEFAULT_GAME : "game" + i);
+        }
+
+        GameProjection projection = new GameProjection(gameIds.get(0));
+
+        try (BlockSimulator simulator = new BlockSimulator(new UpmPoly(), new WorldState(false), threads)) {
+            List<Player> newPlayers = new ArrayList<Player>();
+            for (int i = 0; i < players; i++) {
+                newPlayers.add(new Player("player" + i, "Player " + i, START_CREDIT, false));
+            }
+            List<Faculty> newFaculties = new ArrayList<Faculty>();
+            for (int i = 0; i < faculties; i++) {
+                newFaculties.add(new Faculty("faculty" + i, "Faculty " + i, SALE_PRICE, RENTAL_FEE, null));
+            }
+            List<Proposal> setup = new ArrayList<Proposal>();
+            for (String gameId : gameIds) {
+                if (!UpmPolyContext.DEFAULT_GAME.equals(gameId)) {
+                    submitAll(simulator, Collections.singletonList(new Proposal("CreateGame", gameId, "Game " + gameId)), blockSize, projection);
+                }
+                for (AssetBatch batch : new BulkImport(BulkLimits.fromEnvironment()).split(new AssetBatch(newPlayers, newFaculties))) {
+                    setup.add(inGame(new Proposal("BulkCreate", batch.encode()), gameId));
+                }
+            }
+            submitAll(simulator, setup, blockSize, projection);
+            System.out.println(String.format("Setup: %s", simulator.getStats()));
+
+            BlockSimulator game = new BlockSimulator(new UpmPoly(), simulator.getState(), threads);
+            try {
+                Random random = new Random(blocks);
+                for (int block = 0; block < blocks; block++) {
+                    List<Proposal> proposals = new ArrayList<Proposal>(blockSize);
+                    for (int i = 0; i < blockSize; i++) {
+                        String gameId = gameIds.get(random.nextInt(games));
+                        String player = "player" + random.nextInt(players);
+                        String faculty = "faculty" + random.nextInt(faculties);
+                        proposals.add(inGame(random.nextBoolean()
+                                ? new Proposal("buyFaculty", player, faculty)
+                                : new Proposal("payRental", faculty, player), gameId));
+                    }
+                    project(projection, game.submit(proposals));
+                }
+                System.out.println(String.format("Game: %s", game.getStats()));
+                System.out.println(String.format("Projection: %1$d events, %2$d players, %3$d faculties, matches the world state: %4$b",
+                        projection.getAppliedEvents(), projection.getPlayers().size(), projection.getFaculties().size(),
+                        matches(projection, game.getState())));
+            } finally {
+                game.close();
+            }
+        }
+    }
+
+    /**
+     * Submits the proposals in blocks, resubmitting the ones invalidated by a
+     * conflict as a client would, until every proposal is valid or rejected.
+     */
+    private static void submitAll(final BlockSimulator simulator, final List<Proposal> proposals, final int blockSize,
+                                  final GameProjection projection) {
+        List<Proposal> pending = proposals;
+        while (!pending.isEmpty()) {
+            List<Proposal> conflicting = new ArrayList<Proposal>();
+            for (int from = 0; from < pending.size(); from += blockSize) {
+                BlockResult block = simulator.submit(pending.subList(from, Math.min(from + blockSize, pending.size())));
+                project(projection, block);
+                for (TxOutcome outcome : block.getOutcomes()) {
+                    if (outcome.getCode() == ValidationCode.MVCC_READ_CONFLICT || outcome.getCode() == ValidationCode.PHANTOM_READ_CONFLICT) {
+                        conflicting.add(outcome.getProposal());
+                    }
+                }
+            }
+            pending = conflicting;
+        }
+    }
+
+    private static Proposal inGame(final Proposal proposal, final String gameId) {
+        return proposal.withTransient(UpmPolyContext.GAME_ID, gameId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Applies the events of the valid transactions of the block, as the chaincode event stream delivers them.
+     */
+    private static void project(final GameProjection projection, final BlockResult block) {
+        for (TxOutcome outcome : block.getOutcomes()) {
+            ChaincodeEvent event = outcome.getEvent();
+            if (outcome.isValid() && event != null) {
+                projection.apply(block.getBlockNumber(), outcome.getTxId(), event.getEventName(), event.getPayload().toByteArray());
+            }
+        }
+    }
+
+    private static boolean matches(final GameProjection projection, final WorldState state) {
+        AssetCodec codec = new AssetCodec(AssetCodec.Format.JSON);
+
+        // pending credit deltas count towards the credit of their player, as getMoney reports it
+        Map<String, Integer> pending = new HashMap<String, Integer>();
+        String prefix = new CompositeKey(LedgerKeys.CREDIT_DELTA, projection.getGameId()).toString();
+        for (Iterator<Map.Entry<String, VersionedValue>> it = state.scan(prefix, null, prefix); it.hasNext();) {
+            Map.Entry<String, VersionedValue> delta = it.next();
+            String playerId = CompositeKey.parseCompositeKey(delta.getKey()).getAttributes().get(1);
+            pending.merge(playerId, Integer.parseInt(new String(delta.getValue().getValue(), StandardCharsets.UTF_8)), Integer::sum);
+        }
+
+        List<Player> players = new ArrayList<Player>();
+        prefix = new CompositeKey(LedgerKeys.PLAYER, projection.getGameId()).toString();
+        for (Iterator<Map.Entry<String, VersionedValue>> it = state.scan(prefix, null, prefix); it.hasNext();) {
+            Player player = codec.decodePlayer(it.next().getValue().getValue());
+            int credit = player.getCredit() + pending.getOrDefault(player.getPlayerID(), 0);
+            players.add(new Player(player.getPlayerID(), player.getName(), credit, player.getIsEliminated()));
+        }
+
+        List<Faculty> faculties = new ArrayList<Faculty>();
+        prefix = new CompositeKey(LedgerKeys.CATALOG, projection.getGameId()).toString();
+        for (Iterator<Map.Entry<String, VersionedValue>> it = state.scan(prefix, null, prefix); it.hasNext();) {
+            Faculty entry = codec.decodeFaculty(it.next().getValue().getValue());
+            byte[] ownership = state.get(new CompositeKey(LedgerKeys.FACULTY, projection.getGameId(), entry.getFacultyID()).toString()).getValue();
+            faculties.add(new Faculty(entry.getFacultyID(), entry.getName(), entry.getSalePrice(), entry.getRentalFee(),
+                    AssetCodec.decodeOwner(ownership)));
+        }
+
+        return players.equals(projection.getPlayers()) && faculties.equals(projection.getFaculties());
+    }
+
+    private static int argument(final String[] args, final int index, final int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
@@ -0,0 +1,87 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Totals of the blocks run by a {@link BlockSimulator}.
+ *
+ * The throughput only counts valid transactions and the time spent endorsing
+ * and validating blocks; the conflict rate is the share of the endorsed
+ * transactions that failed MVCC or phantom read validation.
+ */
+public final class SimulationStats {
+
+    private final Map<ValidationCode, Long> counts = new EnumMap<ValidationCode, Long>(ValidationCode.class);
+
+    private long blocks;
+
+    private long endorseNanos;
+
+    private long validateNanos;
+
+    public SimulationStats() {
+        for (ValidationCode code : ValidationCode.values()) {
+            counts.put(code, 0L);
+        }
+    }
+
+    synchronized void add(final BlockResult block) {
+        blocks++;
+        endorseNanos += block.getEndorseNanos();
+        validateNanos += block.getValidateNanos();
+        for (TxOutcome outcome : block.getOutcomes()) {
+            counts.put(outcome.getCode(), counts.get(outcome.getCode()) + 1);
+        }
+    }
+
+    public synchronized long getBlocks() {
+        return blocks;
+    }
+
+    public synchronized long getTransactions() {
+        long transactions = 0;
+        for (long count : counts.values()) {
+            transactions += count;
+        }
+        return transactions;
+    }
+
+    public synchronized long getCount(final ValidationCode code) {
+        return counts.get(code);
+    }
+
+    public synchronized long getEndorseNanos() {
+        return endorseNanos;
+    }
+
+    public synchronized long getValidateNanos() {
+        return validateNanos;
+    }
+
+    /**
+     * @return valid transactions per second of block processing
+     */
+    public synchronized double getThroughput() {
+        long nanos = endorseNanos + validateNanos;
+        return nanos == 0 ? 0 : counts.get(ValidationCode.VALID) * 1e9 / nanos;
+    }
+
+    /**
+     * @return the share of endorsed transactions invalidated by a conflict
+     */
+    public synchronized double getConflictRate() {
+        long endorsed = getTransactions() - counts.get(ValidationCode.ENDORSEMENT_FAILURE);
+        long conflicts = counts.get(ValidationCode.MVCC_READ_CONFLICT) + counts.get(ValidationCode.PHANTOM_READ_CONFLICT);
+        return endorsed == 0 ? 0 : (double) conflicts / endorsed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%1$d blocks, %2$d transactions: %3$d valid, %4$d MVCC conflicts, %5$d phantom reads, "
+                + "%6$d endorsement failures; %7$.1f TPS, %8$.2f%% conflict rate (endorse %9$d ms, validate %10$d ms)",
+                blocks, getTransactions(), counts.get(ValidationCode.VALID), counts.get(ValidationCode.MVCC_READ_CONFLICT),
+                counts.get(ValidationCode.PHANTOM_READ_CONFLICT), counts.get(ValidationCode.ENDORSEMENT_FAILURE),
+                getThroughput(), getConflictRate() * 100, endorseNanos / 1000000, validateNanos / 1000000);
+    }
+}
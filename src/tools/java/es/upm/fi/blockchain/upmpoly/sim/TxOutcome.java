@@ -0,0 +1,73 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+
+/**
+ * Result of one transaction of a simulated block.
+ */
+public final class TxOutcome {
+
+    private final String txId;
+
+    private final Proposal proposal;
+
+    private final ValidationCode code;
+
+    private final Object result;
+
+    private final String error;
+
+    private final ChaincodeEvent event;
+
+    TxOutcome(final String txId, final Proposal proposal, final ValidationCode code, final Object result, final String error,
+            final ChaincodeEvent event) {
+        this.txId = txId;
+        this.proposal = proposal;
+        this.code = code;
+        this.result = result;
+        this.error = error;
+        this.event = event;
+    }
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public Proposal getProposal() {
+        return proposal;
+    }
+
+    public ValidationCode getCode() {
+        return code;
+    }
+
+    public boolean isValid() {
+        return code == ValidationCode.VALID;
+    }
+
+    /**
+     * @return the value returned by the transaction function, null if the endorsement failed
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the message, or the error code, of a failed endorsement
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the event set by the transaction, null if it set none
+     */
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public String toString() {
+        return txId + " " + proposal + " " + code + (error == null ? "" : " " + error);
+    }
+}
@@ -0,0 +1,11 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+/**
+ * Outcome of a simulated transaction, named after the peer's validation codes.
+ */
+public enum ValidationCode {
+    VALID,
+    MVCC_READ_CONFLICT,
+    PHANTOM_READ_CONFLICT,
+    ENDORSEMENT_FAILURE
+}
@@ -0,0 +1,51 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import java.util.Objects;
+
+/**
+ * Height of the transaction that last wrote a key, as used by Fabric's MVCC validation.
+ */
+public final class Version {
+
+    private final long blockNumber;
+
+    private final int txNumber;
+
+    public Version(final long blockNumber, final int txNumber) {
+        this.blockNumber = blockNumber;
+        this.txNumber = txNumber;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public int getTxNumber() {
+        return txNumber;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+
+        Version other = (Version) obj;
+
+        return getBlockNumber() == other.getBlockNumber() && getTxNumber() == other.getTxNumber();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getBlockNumber(), getTxNumber());
+    }
+
+    @Override
+    public String toString() {
+        return blockNumber + ":" + txNumber;
+    }
+}
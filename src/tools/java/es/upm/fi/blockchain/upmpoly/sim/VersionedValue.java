@@ -0,0 +1,24 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+/**
+ * Committed value of a key together with the version that wrote it.
+ */
+public final class VersionedValue {
+
+    private final byte[] value;
+
+    private final Version version;
+
+    public VersionedValue(final byte[] value, final Version version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,191 @@
+package es.upm.fi.blockchain.upmpoly.sim;
+
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Committed world state of the simulated channel.
+ *
+ * Keys are kept sorted, so range and partial composite key scans walk them in
+ * order like the peer does. Keys are ordered as Java strings, which is the
+ * peer's UTF-8 byte order for every key without supplementary characters.
+ *
+ * The state is only changed by {@link #commit} and {@link #put}. A single
+ * commit is not atomic: a reader running at the same time may see some writes
+ * of a block and not others. The {@link BlockSimulator} endorses the proposals
+ * of a block before committing it, and commits under a write lock that the
+ * evaluations wait for, so both read the state of the last block. Other
+ * readers must not run alongside commits.
+ */
+public final class WorldState {
+
+    private static final Version GENESIS = new Version(0, 0);
+
+    private final ConcurrentSkipListMap<String, VersionedValue> state = new ConcurrentSkipListMap<String, VersionedValue>();
+
+    private final Map<String, List<LedgerEntry>> history;
+
+    private long height;
+
+    public WorldState() {
+        this(true);
+    }
+
+    /**
+     * @param keepHistory whether to keep the values written to every key, needed by getHistoryForKey
+     */
+    public WorldState(final boolean keepHistory) {
+        this.history = keepHistory ? new ConcurrentHashMap<String, List<LedgerEntry>>() : null;
+    }
+
+    /**
+     * @return the number of blocks committed so far
+     */
+    public synchronized long getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of keys in the state
+     */
+    public int size() {
+        return state.size();
+    }
+
+    /**
+     * @param key the key to read
+     * @return the committed value of the key, null if the key does not exist
+     */
+    public VersionedValue get(final String key) {
+        return state.get(key);
+    }
+
+    /**
+     * Loads a value outside of any block, as the genesis state of the channel.
+     *
+     * @param key the key to write
+     * @param value the value to write
+     */
+    public void put(final String key, final byte[] value) {
+        state.put(key, new VersionedValue(value, GENESIS));
+    }
+
+    /**
+     * Scans the keys from startKey on, stopping before endKey and at the first
+     * key outside of prefix.
+     *
+     * @param startKey the first key of the scan
+     * @param endKey the key ending the scan, null to scan to the end of the state
+     * @param prefix the prefix of every key of the scan, null for any key
+     * @return the keys of the scan with their committed values, in key order
+     */
+    public Iterator<Map.Entry<String, VersionedValue>> scan(final String startKey, final String endKey, final String prefix) {
+        NavigableMap<String, VersionedValue> range = endKey == null
+                ? state.tailMap(startKey, true)
+                : state.subMap(startKey, true, endKey, false);
+        if (prefix == null) {
+            return range.entrySet().iterator();
+        }
+        return new PrefixIterator(range.entrySet().iterator(), prefix);
+    }
+
+    /**
+     * @param key the key
+     * @return the values written to the key, newest first
+     */
+    public List<KeyModification> history(final String key) {
+        if (history == null) {
+            throw new UnsupportedOperationException("The world state keeps no history");
+        }
+
+        List<LedgerEntry> modifications = history.get(key);
+        if (modifications == null) {
+            return Collections.emptyList();
+        }
+
+        List<KeyModification> newestFirst = new ArrayList<KeyModification>(modifications);
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * @return the number of the block being built, one past the committed height
+     */
+    synchronized long nextBlock() {
+        return height + 1;
+    }
+
+    /**
+     * Applies the write set of a valid transaction. Like on the peer, writing an
+     * empty value deletes the key.
+     */
+    void commit(final Map<String, byte[]> writes, final Version version, final String txId, final Instant timestamp) {
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            byte[] value = write.getValue();
+            boolean delete = value == null || value.length == 0;
+            if (delete) {
+                state.remove(write.getKey());
+            } else {
+                state.put(write.getKey(), new VersionedValue(value, version));
+            }
+
+            if (history != null) {
+                history.computeIfAbsent(write.getKey(), key -> new ArrayList<LedgerEntry>())
+                        .add(new LedgerEntry(write.getKey(), delete ? null : value, txId, timestamp));
+            }
+        }
+    }
+
+    synchronized void endBlock(final long blockNumber) {
+        height = blockNumber;
+    }
+
+    private static final class PrefixIterator implements Iterator<Map.Entry<String, VersionedValue>> {
+
+        private final Iterator<Map.Entry<String, VersionedValue>> entries;
+
+        private final String prefix;
+
+        private Map.Entry<String, VersionedValue> next;
+
+        private boolean done;
+
+        PrefixIterator(final Iterator<Map.Entry<String, VersionedValue>> entries, final String prefix) {
+            this.entries = entries;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done && entries.hasNext()) {
+                Map.Entry<String, VersionedValue> entry = entries.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    next = entry;
+                } else {
+                    done = true;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, VersionedValue> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, VersionedValue> result = next;
+            next = null;
+            return result;
+        }
+    }
+}
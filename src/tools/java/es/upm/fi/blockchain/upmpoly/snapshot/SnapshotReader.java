@@ -0,0 +1,257 @@
+package es.upm.fi.blockchain.upmpoly.snapshot;
+
+import es.upm.fi.blockchain.upmpoly.AssetCodec;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotWriter}.
+ *
+ * The file is mapped read only, so opening it costs the same whatever its size
+ * and the pages are only read when used. A lookup binary searches the index,
+ * comparing the ids in place; values are handed out as slices of the mapping,
+ * or decoded into assets. The mapping is released once the reader is garbage
+ * collected. Files of 2 GB or more can not be mapped at once and are rejected.
+ *
+ * A reader only uses absolute reads of the mapping, so it can be shared by threads.
+ */
+public final class SnapshotReader {
+
+    private final ByteBuffer buffer;
+
+    private final AssetCodec codec = new AssetCodec(AssetCodec.Format.BINARY);
+
+    private final String gameId;
+
+    private final int players;
+
+    private final int faculties;
+
+    private final int playersIndex;
+
+    private final int facultiesIndex;
+
+    /**
+     * @param file the snapshot file
+     * @throws IOException if the file can not be read or is not a snapshot
+     */
+    public SnapshotReader(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot files of 2 GB or more are not supported: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < SnapshotWriter.HEADER_BYTES) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        byte[] magic = bytes(0, SnapshotWriter.MAGIC.length);
+        if (!Arrays.equals(magic, SnapshotWriter.MAGIC) || buffer.getInt(magic.length) != SnapshotWriter.VERSION) {
+            throw new IOException("Not a snapshot file of version " + SnapshotWriter.VERSION + ": " + file);
+        }
+
+        players = buffer.getInt(magic.length + 4);
+        faculties = buffer.getInt(magic.length + 8);
+        long playersAt = buffer.getLong(magic.length + 16);
+        long facultiesAt = buffer.getLong(magic.length + 24);
+        if (players < 0 || faculties < 0 || playersAt + 8L * players > facultiesAt || facultiesAt + 8L * faculties != buffer.capacity()) {
+            throw new IOException("Truncated snapshot file: " + file);
+        }
+        playersIndex = (int) playersAt;
+        facultiesIndex = (int) facultiesAt;
+        gameId = readId(SnapshotWriter.HEADER_BYTES);
+    }
+
+    /**
+     * @return the id of the game of the assets
+     */
+    public String getGameId() {
+        return gameId;
+    }
+
+    public int getPlayerCount() {
+        return players;
+    }
+
+    public int getFacultyCount() {
+        return faculties;
+    }
+
+    /**
+     * @param playerId the id of the player
+     * @return the player, null if the snapshot does not hold it
+     */
+    public Player getPlayer(final String playerId) {
+        int record = find(playersIndex, players, playerId);
+        return record < 0 ? null : codec.decodePlayer(value(record));
+    }
+
+    /**
+     * @param facultyId the id of the faculty
+     * @return the faculty with its owner, null if the snapshot does not hold it
+     */
+    public Faculty getFaculty(final String facultyId) {
+        int record = find(facultiesIndex, faculties, facultyId);
+        return record < 0 ? null : codec.decodeFaculty(value(record));
+    }
+
+    /**
+     * @param playerId the id of the player
+     * @return the binary encoding of the player, a read only view of the file, null if the snapshot does not hold it
+     */
+    public ByteBuffer getPlayerValue(final String playerId) {
+        int record = find(playersIndex, players, playerId);
+        return record < 0 ? null : slice(record);
+    }
+
+    /**
+     * @param facultyId the id of the faculty
+     * @return the binary encoding of the faculty, a read only view of the file, null if the snapshot does not hold it
+     */
+    public ByteBuffer getFacultyValue(final String facultyId) {
+        int record = find(facultiesIndex, faculties, facultyId);
+        return record < 0 ? null : slice(record);
+    }
+
+    /**
+     * @return the players, in the order of their ids
+     */
+    public Iterable<Player> players() {
+        return () -> new Records<Player>(playersIndex, players) {
+            @Override
+            Player read(final int record) {
+                return codec.decodePlayer(value(record));
+            }
+        };
+    }
+
+    /**
+     * @return the faculties with their owner, in the order of their ids
+     */
+    public Iterable<Faculty> faculties() {
+        return () -> new Records<Faculty>(facultiesIndex, faculties) {
+            @Override
+            Faculty read(final int record) {
+                return codec.decodeFaculty(value(record));
+            }
+        };
+    }
+
+    /**
+     *
+     * binary searches an index, comparing the UTF-8 bytes of the ids in the mapping
+     *
+     * @param index the offset of the index
+     * @param count the number of records of the index
+     * @param id the id to look for
+     * @return the offset of the record of the id, -1 if the index does not hold it
+     */
+    private int find(final int index, final int count, final String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = record(index, middle);
+            int difference = compareId(record, key);
+            if (difference < 0) {
+                low = middle + 1;
+            } else if (difference > 0) {
+                high = middle - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private int compareId(final int record, final byte[] key) {
+        int length = buffer.getShort(record) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(record + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private int record(final int index, final int position) {
+        return (int) buffer.getLong(index + 8 * position);
+    }
+
+    private String readId(final int record) {
+        return new String(bytes(record + 2, buffer.getShort(record) & 0xFFFF), StandardCharsets.UTF_8);
+    }
+
+    private int valueOffset(final int record) {
+        return record + 2 + (buffer.getShort(record) & 0xFFFF) + 4;
+    }
+
+    private byte[] value(final int record) {
+        int offset = valueOffset(record);
+        return bytes(offset, buffer.getInt(offset - 4));
+    }
+
+    private ByteBuffer slice(final int record) {
+        int offset = valueOffset(record);
+        return view(offset, buffer.getInt(offset - 4)).slice().asReadOnlyBuffer();
+    }
+
+    private byte[] bytes(final int offset, final int length) {
+        byte[] bytes = new byte[length];
+        view(offset, length).get(bytes);
+        return bytes;
+    }
+
+    private ByteBuffer view(final int offset, final int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view;
+    }
+
+    /**
+     * Walks the records of an index in order.
+     */
+    private abstract class Records<T> implements Iterator<T> {
+
+        private final int index;
+
+        private final int count;
+
+        private int position;
+
+        Records(final int index, final int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        abstract T read(int record);
+
+        @Override
+        public final boolean hasNext() {
+            return position < count;
+        }
+
+        @Override
+        public final T next() {
+            if (position >= count) {
+                throw new NoSuchElementException();
+            }
+            return read(record(index, position++));
+        }
+    }
+}
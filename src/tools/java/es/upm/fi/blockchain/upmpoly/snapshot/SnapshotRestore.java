@@ -0,0 +1,92 @@
+package es.upm.fi.blockchain.upmpoly.snapshot;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.AssetCodec;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Game;
+import es.upm.fi.blockchain.upmpoly.LedgerKeys;
+import es.upm.fi.blockchain.upmpoly.Player;
+import es.upm.fi.blockchain.upmpoly.UpmPolyContext;
+import es.upm.fi.blockchain.upmpoly.sim.InMemoryChaincodeStub;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Loads a snapshot into an in-memory world state, ready for the block simulator.
+ *
+ * Every key is written straight into the state as a genesis value of the
+ * channel, in the format of the given codec, the way the contract lays it out:
+ * the players with their active index entry, leaderboard entry and active
+ * counter shards, and the catalog entries, ownerships and owner index of the
+ * faculties. This is the state a MigrateLedger transaction leaves behind, built
+ * without running one: the contract would read and write every key of the game
+ * again in a single transaction. A game other than the default game is created
+ * if the state does not have it yet.
+ *
+ * The keys of the assets are appended to the partial key of their namespace
+ * with {@link LedgerKeys#append} instead of being built by the shim, which
+ * compiles a regular expression to check every attribute.
+ *
+ * The state is expected to hold none of the assets of the game: restoring over
+ * them would leave the owner index entries of their previous owners behind.
+ */
+public final class SnapshotRestore {
+
+    private SnapshotRestore() {
+    }
+
+    /**
+     * @param snapshot the snapshot to load
+     * @param state the world state to load it into
+     * @param codec the codec writing the values, as the contract is configured
+     * @return the number of restored assets
+     */
+    public static int restore(final SnapshotReader snapshot, final WorldState state, final AssetCodec codec) {
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(state, "restore", "restore", Collections.<String>emptyList());
+        String gameId = snapshot.getGameId();
+        int restored = 0;
+
+        String gameKey = LedgerKeys.game(stub, gameId);
+        if (!UpmPolyContext.DEFAULT_GAME.equals(gameId) && state.get(gameKey) == null) {
+            state.put(gameKey, new Genson().serialize(new Game(gameId, gameId)).getBytes(StandardCharsets.UTF_8));
+        }
+
+        CompositeKey players = LedgerKeys.allPlayers(stub, gameId);
+        CompositeKey activePlayers = LedgerKeys.activePlayers(stub, gameId);
+        CompositeKey leaderboard = LedgerKeys.leaderboard(stub, gameId);
+        int[] counts = new int[LedgerKeys.COUNTER_SHARDS];
+        for (Player player : snapshot.players()) {
+            String playerId = player.getPlayerID();
+            state.put(LedgerKeys.append(players, playerId), codec.encodePlayer(player));
+            if (!player.getIsEliminated()) {
+                byte[] entry = LedgerKeys.activeEntry(player.getName());
+                state.put(LedgerKeys.append(activePlayers, playerId), entry);
+                state.put(LedgerKeys.append(leaderboard, LedgerKeys.invertedCredit(player.getCredit()), playerId), entry);
+                counts[LedgerKeys.counterShard(playerId)]++;
+            }
+            restored++;
+        }
+        for (int shard = 0; shard < counts.length; shard++) {
+            state.put(LedgerKeys.activePlayerCount(stub, gameId, shard), Integer.toString(counts[shard]).getBytes(StandardCharsets.UTF_8));
+        }
+
+        CompositeKey faculties = LedgerKeys.allFaculties(stub, gameId);
+        CompositeKey catalog = LedgerKeys.wholeCatalog(stub, gameId);
+        CompositeKey ownedFaculties = LedgerKeys.allOwnedFaculties(stub, gameId);
+        for (Faculty faculty : snapshot.faculties()) {
+            String facultyId = faculty.getFacultyID();
+            Faculty entry = new Faculty(facultyId, faculty.getName(), faculty.getSalePrice(), faculty.getRentalFee(), null);
+            state.put(LedgerKeys.append(catalog, facultyId), codec.encodeFaculty(entry));
+            state.put(LedgerKeys.append(faculties, facultyId), codec.encodeOwnership(faculty.getOwner()));
+            if (faculty.getOwner() != null) {
+                state.put(LedgerKeys.append(ownedFaculties, faculty.getOwner(), facultyId), LedgerKeys.indexEntry());
+            }
+            restored++;
+        }
+
+        return restored;
+    }
+}
@@ -0,0 +1,98 @@
+package es.upm.fi.blockchain.upmpoly.snapshot;
+
+import com.owlike.genson.Genson;
+import es.upm.fi.blockchain.upmpoly.AssetCodec;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.Player;
+import es.upm.fi.blockchain.upmpoly.UpmPoly;
+import es.upm.fi.blockchain.upmpoly.UpmPolyContext;
+import es.upm.fi.blockchain.upmpoly.sim.BlockSimulator;
+import es.upm.fi.blockchain.upmpoly.sim.Proposal;
+import es.upm.fi.blockchain.upmpoly.sim.TxOutcome;
+import es.upm.fi.blockchain.upmpoly.sim.WorldState;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates, inspects and restores snapshot files.
+ *
+ * <pre>
+ * SnapshotTool generate &lt;file&gt; &lt;players&gt; &lt;faculties&gt; [game]
+ * SnapshotTool info &lt;file&gt;
+ * SnapshotTool get &lt;file&gt; &lt;id&gt;
+ * SnapshotTool restore &lt;file&gt;
+ * </pre>
+ *
+ * generate writes a synthetic game in which every other faculty is owned by a
+ * player; get prints the player or faculty with the given id; restore loads the
+ * snapshot into an in-memory world state, in the format configured with
+ * UPMPOLY_STATE_FORMAT, and prints how long it took and the summary of the game.
+ */
+public final class SnapshotTool {
+
+    private static final int CREDIT = 1000000;
+
+    private static final int SALE_PRICE = 1000;
+
+    private static final int RENTAL_FEE = 100;
+
+    private static final Genson GENSON = new Genson();
+
+    private SnapshotTool() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: SnapshotTool generate|info|get|restore <file> [arguments]");
+        }
+        Path file = Paths.get(args[1]);
+
+        if ("generate".equals(args[0]) && args.length >= 4) {
+            generate(file, Integer.parseInt(args[2]), Integer.parseInt(args[3]), args.length > 4 ? args[4] : UpmPolyContext.DEFAULT_GAME);
+        } else if ("info".equals(args[0])) {
+            SnapshotReader snapshot = new SnapshotReader(file);
+            System.out.println(String.format("Game %1$s: %2$d players, %3$d faculties",
+                    snapshot.getGameId(), snapshot.getPlayerCount(), snapshot.getFacultyCount()));
+        } else if ("get".equals(args[0]) && args.length >= 3) {
+            SnapshotReader snapshot = new SnapshotReader(file);
+            Player player = snapshot.getPlayer(args[2]);
+            Faculty faculty = player == null ? snapshot.getFaculty(args[2]) : null;
+            System.out.println(player != null ? GENSON.serialize(player) : faculty != null ? GENSON.serialize(faculty) : "Not found: " + args[2]);
+        } else if ("restore".equals(args[0])) {
+            restore(new SnapshotReader(file));
+        } else {
+            throw new IllegalArgumentException("Unknown command or missing arguments: " + String.join(" ", args));
+        }
+    }
+
+    private static void generate(final Path file, final int players, final int faculties, final String gameId) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(file, gameId)) {
+            for (int i = 0; i < players; i++) {
+                writer.add(new Player("player" + i, "Player " + i, CREDIT, false));
+            }
+            for (int i = 0; i < faculties; i++) {
+                String owner = i % 2 == 0 && players > 0 ? "player" + (i % players) : null;
+                writer.add(new Faculty("faculty" + i, "Faculty " + i, SALE_PRICE, RENTAL_FEE, owner));
+            }
+        }
+    }
+
+    private static void restore(final SnapshotReader snapshot) {
+        WorldState state = new WorldState(false);
+        long start = System.nanoTime();
+        int restored = SnapshotRestore.restore(snapshot, state, AssetCodec.fromEnvironment());
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("Restored %1$d assets into %2$d keys in %3$d ms",
+                restored, state.size(), TimeUnit.NANOSECONDS.toMillis(elapsed)));
+
+        try (BlockSimulator simulator = new BlockSimulator(new UpmPoly(), state, 1)) {
+            TxOutcome summary = simulator.evaluate(new Proposal("GetGameSummary")
+                    .withTransient(UpmPolyContext.GAME_ID, snapshot.getGameId().getBytes(StandardCharsets.UTF_8)));
+            System.out.println(summary.isValid() ? summary.getResult() : summary);
+        }
+    }
+}
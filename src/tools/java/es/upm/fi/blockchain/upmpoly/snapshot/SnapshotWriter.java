@@ -0,0 +1,249 @@
+package es.upm.fi.blockchain.upmpoly.snapshot;
+
+import es.upm.fi.blockchain.upmpoly.AssetCodec;
+import es.upm.fi.blockchain.upmpoly.Faculty;
+import es.upm.fi.blockchain.upmpoly.LedgerKeys;
+import es.upm.fi.blockchain.upmpoly.Log;
+import es.upm.fi.blockchain.upmpoly.Player;
+import es.upm.fi.blockchain.upmpoly.ScanJoin;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the players and faculties of a game to a snapshot file, read back by {@link SnapshotReader}.
+ *
+ * The file starts with a fixed header, followed by the id of the game, the
+ * records, and one index per asset type:
+ *
+ * <pre>
+ * header   magic "UPMSNAP1", version, player count, faculty count, 0,
+ *          offset of the player index, offset of the faculty index
+ * game     u16 length, UTF-8 id of the game
+ * record   u16 id length, UTF-8 id, int value length, value
+ * index    long offset of every record of the type, sorted by the UTF-8 bytes of the id
+ * </pre>
+ *
+ * All numbers are big endian. Values are the binary {@link AssetCodec}
+ * encodings of whole assets, a faculty holding its owner. Records are streamed
+ * to the file as they are added, in any order; only the ids and offsets are
+ * kept to sort the indexes, which are written when the writer is closed.
+ */
+public final class SnapshotWriter implements AutoCloseable {
+
+    static final byte[] MAGIC = "UPMSNAP1".getBytes(StandardCharsets.US_ASCII);
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = MAGIC.length + 4 + 4 + 4 + 4 + 8 + 8;
+
+    static final int MAX_ID_BYTES = 0xFFFF;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final AssetCodec codec = new AssetCodec(AssetCodec.Format.BINARY);
+
+    private final FileChannel channel;
+
+    private final DataOutputStream out;
+
+    private final List<IndexEntry> players = new ArrayList<IndexEntry>();
+
+    private final List<IndexEntry> faculties = new ArrayList<IndexEntry>();
+
+    private long position;
+
+    /**
+     * @param file the snapshot file, replaced if it exists
+     * @param gameId the id of the game of the assets
+     * @throws IOException if the file can not be written
+     */
+    public SnapshotWriter(final Path file, final String gameId) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES));
+        out.write(new byte[HEADER_BYTES]);
+        writeId(gameId);
+        position = out.size();
+    }
+
+    /**
+     * Writes the players and faculties of a game as the contract stores them.
+     *
+     * The pending credit deltas of a player are folded into its credit, and the
+     * owner of a faculty into its catalog entry. The deltas and the catalog sort
+     * by asset id like the assets themselves, so both are joined by walking their
+     * scan side by side with the scan of the assets. An ownership whose catalog
+     * entry is missing can not be written as a faculty; it is logged and counted
+     * instead.
+     *
+     * @param stub the stub to read the state through
+     * @param gameId the id of the game
+     * @param file the snapshot file, replaced if it exists
+     * @return the number of faculties left out for a missing catalog entry
+     * @throws IOException if the file can not be written
+     */
+    public static int export(final ChaincodeStub stub, final String gameId, final Path file) throws IOException {
+        AssetCodec codec = new AssetCodec(AssetCodec.Format.JSON);
+        int missing = 0;
+        try (SnapshotWriter writer = new SnapshotWriter(file, gameId)) {
+            try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(LedgerKeys.allPlayers(stub, gameId));
+                    QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(LedgerKeys.allCreditDeltas(stub, gameId))) {
+                ScanJoin pending = new ScanJoin(stub, deltas);
+                for (KeyValue result : results) {
+                    Player player = codec.decodePlayer(result.getValue());
+                    if (player == null) {
+                        continue;
+                    }
+
+                    int credit = player.getCredit();
+                    for (KeyValue delta = pending.next(player.getPlayerID()); delta != null; delta = pending.next(player.getPlayerID())) {
+                        credit += Integer.parseInt(delta.getStringValue());
+                    }
+                    writer.add(credit == player.getCredit() ? player : new Player(player.getPlayerID(), player.getName(), credit, player.getIsEliminated()));
+                }
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Could not close the state scan", e);
+            }
+
+            try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(LedgerKeys.allFaculties(stub, gameId));
+                    QueryResultsIterator<KeyValue> catalog = stub.getStateByPartialCompositeKey(LedgerKeys.wholeCatalog(stub, gameId))) {
+                ScanJoin entries = new ScanJoin(stub, catalog);
+                for (KeyValue result : results) {
+                    Faculty faculty;
+                    if (AssetCodec.isOwnership(result.getValue())) {
+                        String facultyId = stub.splitCompositeKey(result.getKey()).getAttributes().get(1);
+                        KeyValue entry = entries.next(facultyId);
+                        Faculty catalogEntry = entry == null ? null : codec.decodeFaculty(entry.getValue());
+                        faculty = catalogEntry == null ? null : new Faculty(catalogEntry.getFacultyID(), catalogEntry.getName(),
+                                catalogEntry.getSalePrice(), catalogEntry.getRentalFee(), AssetCodec.decodeOwner(result.getValue()));
+                        if (faculty == null) {
+                            Log.getInstance().log(Log.Level.WARN, "Faculty %s left out of the snapshot, its catalog entry is missing", facultyId);
+                            missing++;
+                        }
+                    } else {
+                        // faculties written whole before the catalog split
+                        faculty = codec.decodeFaculty(result.getValue());
+                    }
+                    if (faculty != null) {
+                        writer.add(faculty);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Could not close the state scan", e);
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * @param player the player to add
+     * @throws IOException if the file can not be written
+     */
+    public void add(final Player player) throws IOException {
+        players.add(writeRecord(player.getPlayerID(), codec.encodePlayer(player)));
+    }
+
+    /**
+     * @param faculty the faculty to add
+     * @throws IOException if the file can not be written
+     */
+    public void add(final Faculty faculty) throws IOException {
+        faculties.add(writeRecord(faculty.getFacultyID(), codec.encodeFaculty(faculty)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long playersIndex = position;
+            writeIndex(players, "player");
+            long facultiesIndex = position;
+            writeIndex(faculties, "faculty");
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC).putInt(VERSION).putInt(players.size()).putInt(faculties.size()).putInt(0);
+            header.putLong(playersIndex).putLong(facultiesIndex);
+            header.flip();
+            long at = 0;
+            while (header.hasRemaining()) {
+                at += channel.write(header, at);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private IndexEntry writeRecord(final String id, final byte[] value) throws IOException {
+        IndexEntry entry = new IndexEntry(id.getBytes(StandardCharsets.UTF_8), position);
+        writeId(id);
+        out.writeInt(value.length);
+        out.write(value);
+        position += 2 + entry.id.length + 4 + value.length;
+        return entry;
+    }
+
+    private void writeId(final String id) throws IOException {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Id longer than " + MAX_ID_BYTES + " bytes: " + id);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeIndex(final List<IndexEntry> index, final String type) throws IOException {
+        Collections.sort(index, (first, second) -> compareIds(first.id, second.id));
+        for (int i = 0; i < index.size(); i++) {
+            if (i > 0 && compareIds(index.get(i - 1).id, index.get(i).id) == 0) {
+                throw new IllegalArgumentException(String.format("The %1$s %2$s is added twice", type,
+                        new String(index.get(i).id, StandardCharsets.UTF_8)));
+            }
+            out.writeLong(index.get(i).offset);
+        }
+        position += 8L * index.size();
+    }
+
+    /**
+     * Orders ids by their UTF-8 bytes, unsigned, which is the order of the peer's keys.
+     */
+    static int compareIds(final byte[] first, final byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static final class IndexEntry {
+
+        private final byte[] id;
+
+        private final long offset;
+
+        IndexEntry(final byte[] id, final long offset) {
+            this.id = id;
+            this.offset = offset;
+        }
+    }
+}
@@ -11,18 +11,32 @@ export CORE_PEER_TLS_ROOTCERT_FILE=${PWD}/organizations/peerOrganizations/org1.e
 export CORE_PEER_MSPCONFIGPATH=${PWD}/organizations/peerOrganizations/org1.example.com/users/Admin@org1.example.com/msp
 export CORE_PEER_ADDRESS=localhost:7051
 
+# the game to play in, the default game if GAME_ID is not set
+GAME=()
+if [[ -n "${GAME_ID}" ]]; then
+  GAME=(--transient "{\"gameId\":\"$(echo -n "${GAME_ID}" | base64)\"}")
+fi
+
 # initialize the blockchain with some initial values
 function invokeChaincode() {
   f="{\"function\":\"$1\",\"Args\":[\"$2\",\"$3\",\"$4\",\"$5\"]}"
   echo $f
-  peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls --cafile ${PWD}/organizations/ordererOrganizations/example.com/orderers/orderer.example.com/msp/tlscacerts/tlsca.example.com-cert.pem -C mychannel -n upmpoly --peerAddresses localhost:7051 --tlsRootCertFiles ${PWD}/organizations/peerOrganizations/org1.example.com/peers/peer0.org1.example.com/tls/ca.crt --peerAddresses localhost:9051 --tlsRootCertFiles ${PWD}/organizations/peerOrganizations/org2.example.com/peers/peer0.org2.example.com/tls/ca.crt -c $f
+  peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls --cafile ${PWD}/organizations/ordererOrganizations/example.com/orderers/orderer.example.com/msp/tlscacerts/tlsca.example.com-cert.pem -C mychannel -n upmpoly --peerAddresses localhost:7051 --tlsRootCertFiles ${PWD}/organizations/peerOrganizations/org1.example.com/peers/peer0.org1.example.com/tls/ca.crt --peerAddresses localhost:9051 --tlsRootCertFiles ${PWD}/organizations/peerOrganizations/org2.example.com/peers/peer0.org2.example.com/tls/ca.crt "${GAME[@]}" -c $f
   sleep 5
 }
 
 function readChaincode() {
   f="{\"Args\":[\"$1\"]}"
   echo $f
-  peer chaincode query -C mychannel -n upmpoly -c $f
+  peer chaincode query -C mychannel -n upmpoly "${GAME[@]}" -c $f
+  sleep 5
+}
+
+# evaluate a query taking arguments on a single peer
+function queryChaincode() {
+  f="{\"function\":\"$1\",\"Args\":[\"$2\",\"$3\",\"$4\",\"$5\",\"$6\"]}"
+  echo $f
+  peer chaincode query -C mychannel -n upmpoly "${GAME[@]}" -c $f
   sleep 5
 }
 
@@ -65,6 +79,12 @@ fi
 
 if [ "${MODE}" == "InitLedger" ]; then
   invokeChaincode InitLedger
+elif [ "${MODE}" == "CreateGame" ]; then
+  invokeChaincode CreateGame $1 $2
+elif [ "${MODE}" == "InitGameLedger" ]; then
+  invokeChaincode InitGameLedger $1
+elif [ "${MODE}" == "GetAllGames" ]; then
+  readChaincode GetAllGames
 elif [ "${MODE}" == "Player" ]; then
   invokeChaincode Player $1 $2 $3
 elif [ "${MODE}" == "Faculty" ]; then
@@ -83,6 +103,35 @@ elif [ "${MODE}" == "isEliminated" ]; then
   invokeChaincode isEliminated $1 $2 $3
 elif [ "${MODE}" == "getPlayers" ]; then
   invokeChaincode getPlayers $1 $2 $3
+elif [ "${MODE}" == "getPlayersWithPagination" ]; then
+  invokeChaincode getPlayersWithPagination $1 $2
+elif [ "${MODE}" == "GetAllPlayersWithPagination" ]; then
+  invokeChaincode GetAllPlayersWithPagination $1 $2
+elif [ "${MODE}" == "GetAllFacultiesWithPagination" ]; then
+  invokeChaincode GetAllFacultiesWithPagination $1 $2
+elif [ "${MODE}" == "GetFacultiesByOwner" ]; then
+  invokeChaincode GetFacultiesByOwner $1
+elif [ "${MODE}" == "consolidateCredit" ]; then
+  invokeChaincode consolidateCredit $1
+elif [ "${MODE}" == "BulkCreate" ]; then
+  # one transaction per line of the file written by ./gradlew -q bulkImport
+  while read -r payload; do
+    invokeChaincode BulkCreate "$payload"
+  done < "$1"
+elif [ "${MODE}" == "MigrateLedger" ]; then
+  invokeChaincode MigrateLedger
+elif [ "${MODE}" == "GetTopPlayers" ]; then
+  invokeChaincode GetTopPlayers $1
+elif [ "${MODE}" == "GetActivePlayerCount" ]; then
+  readChaincode GetActivePlayerCount
+elif [ "${MODE}" == "GetGameSummary" ]; then
+  readChaincode GetGameSummary
+elif [ "${MODE}" == "GetPlayerHistory" ]; then
+  queryChaincode GetPlayerHistory $1 $2 "$3" "$4" "$5"
+elif [ "${MODE}" == "GetFacultyHistory" ]; then
+  queryChaincode GetFacultyHistory $1 $2 "$3" "$4" "$5"
+elif [ "${MODE}" == "GetMetrics" ]; then
+  readChaincode GetMetrics
 elif [ "${MODE}" == "" ]; then
   echo No specific mode!
 else